@@ -0,0 +1,223 @@
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/******************************************************************************
+ *  Compilation:  javac ALTIndex.java
+ *  Execution:    java ALTIndex network.txt landmarks [queries]
+ *  Dependencies: CompactDigraph.java SearchWorkspace.java ALTSearch.java
+ *                EdgeWeightedDigraph.java NetworkSnapshot.java In.java StdOut.java
+ *
+ *  Landmark distances for goal-directed point-to-point shortest path
+ *  queries (ALT: A*, landmarks and the triangle inequality).
+ *
+ *  % java ALTIndex network_data2.txt 4 1000
+ *  4 landmarks in 5.5 ms
+ *  1000 queries: 2.9 vertices settled on average, against 5.0 for Dijkstra
+ *
+ ******************************************************************************/
+
+/**
+ *  The {@code ALTIndex} class holds the preprocessing of the ALT algorithm of
+ *  Goldberg and Harrelson: a handful of <em>landmark</em> switches, and the
+ *  latency from every switch to every landmark and back. By the triangle
+ *  inequality, dist(<em>v</em>, <em>t</em>) is at least
+ *  dist(<em>v</em>, <em>L</em>) - dist(<em>t</em>, <em>L</em>) and at least
+ *  dist(<em>L</em>, <em>t</em>) - dist(<em>L</em>, <em>v</em>) for every
+ *  landmark <em>L</em>, which gives {@link ALTSearch} a lower bound on the
+ *  remaining latency to direct its A* search towards the target.
+ *  <p>
+ *  Landmarks are picked by the <em>farthest</em> heuristic: each new
+ *  landmark is the switch farthest from the landmarks so far, by the round
+ *  trip latency, starting from the switch farthest from switch 0, and a
+ *  switch that no landmark reaches comes first, so that every part of a
+ *  partitioned network gets one. Landmarks on the edge of the network give
+ *  the tightest bounds. The preprocessing is two searches per landmark, one
+ *  forward and one backward, which run in parallel on a {@link ForkJoinPool}.
+ *  Unlike contraction hierarchies, nothing depends on the shape of
+ *  shortest paths, so rebuilding the index after the network changes costs
+ *  no more than that.
+ *  <p>
+ *  The distances are stored by switch, the distances of one switch to all
+ *  landmarks side by side, as a search reads them; the index takes
+ *  16<em>k</em> bytes per switch for <em>k</em> landmarks. It is immutable
+ *  once built and can be shared by the searches of any number of threads.
+ *
+ *  @author Runyuan Yan
+ */
+public class ALTIndex {
+    private final CompactDigraph G;
+    private final int[] landmarks;
+    private final double[] fromLandmark;    // fromLandmark[v*k + i] = dist(landmark i, v)
+    private final double[] toLandmark;      // toLandmark[v*k + i] = dist(v, landmark i)
+
+    /**
+     * Picks {@code k} landmarks in {@code G} and computes their distances on
+     * the common {@link ForkJoinPool}.
+     *
+     * @param  G the network snapshot
+     * @param  k the number of landmarks
+     * @throws IllegalArgumentException unless {@code 1 <= k <= V}
+     */
+    public ALTIndex(CompactDigraph G, int k) {
+        this(G, k, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Picks {@code k} landmarks in {@code G} and computes their distances on {@code pool}.
+     *
+     * @param  G the network snapshot
+     * @param  k the number of landmarks
+     * @param  pool the pool to run the searches on
+     * @throws IllegalArgumentException unless {@code 1 <= k <= V}
+     */
+    public ALTIndex(CompactDigraph G, int k, ForkJoinPool pool) {
+        int V = G.V();
+        if (k < 1 || k > V) throw new IllegalArgumentException("number of landmarks must be between 1 and " + V);
+        this.G = G;
+        landmarks = new int[k];
+        fromLandmark = new double[V * k];
+        toLandmark = new double[V * k];
+        ThreadLocal<SearchWorkspace> workspace = ThreadLocal.withInitial(() -> new SearchWorkspace(G));
+
+        // the first landmark is the switch farthest from switch 0
+        double[] nearest = new double[V];           // round trip to the nearest landmark so far
+        SearchWorkspace ws = workspace.get();
+        ws.run(0, -1);
+        for (int v = 0; v < V; v++) nearest[v] = ws.distTo(v);
+
+        for (int i = 0; i < k; i++) {
+            int farthest = 0;
+            for (int v = 1; v < V; v++) {
+                if (nearest[v] > nearest[farthest]) farthest = v;
+            }
+            landmarks[i] = farthest;
+            pool.invoke(new Distances(workspace, i, 0, 2));
+            for (int v = 0; v < V; v++)
+                nearest[v] = Math.min(i == 0 ? Double.POSITIVE_INFINITY : nearest[v],
+                                      fromLandmark[v*k + i] + toLandmark[v*k + i]);
+        }
+    }
+
+    // the forward (0) and backward (1) searches from landmark i
+    private class Distances extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+        private final ThreadLocal<SearchWorkspace> workspace;
+        private final int i, lo, hi;
+
+        Distances(ThreadLocal<SearchWorkspace> workspace, int i, int lo, int hi) {
+            this.workspace = workspace;
+            this.i = i;
+            this.lo = lo;
+            this.hi = hi;
+        }
+
+        @Override
+        protected void compute() {
+            if (hi - lo > 1) {
+                int mid = (lo + hi) >>> 1;
+                invokeAll(new Distances(workspace, i, lo, mid), new Distances(workspace, i, mid, hi));
+                return;
+            }
+            SearchWorkspace ws = workspace.get();
+            int k = landmarks.length;
+            double[] distances = lo == 0 ? fromLandmark : toLandmark;
+            if (lo == 0) ws.run(landmarks[i], -1);
+            else         ws.runReverse(landmarks[i]);
+            for (int v = 0; v < G.V(); v++)
+                distances[v*k + i] = ws.distTo(v);
+        }
+    }
+
+    /**
+     * Returns the network snapshot the index was built for.
+     *
+     * @return the network snapshot
+     */
+    public CompactDigraph graph() {
+        return G;
+    }
+
+    /**
+     * Returns the number of landmarks.
+     *
+     * @return the number of landmarks
+     */
+    public int landmarks() {
+        return landmarks.length;
+    }
+
+    /**
+     * Returns the {@code i}-th landmark.
+     *
+     * @param  i the landmark number, between 0 and {@code landmarks() - 1}
+     * @return the switch
+     */
+    public int landmark(int i) {
+        return landmarks[i];
+    }
+
+    /**
+     * Returns the latency from the {@code i}-th landmark to {@code v}.
+     *
+     * @param  i the landmark number
+     * @param  v the switch
+     * @return the latency; {@code Double.POSITIVE_INFINITY} if {@code v} is unreachable
+     */
+    public double fromLandmark(int i, int v) {
+        return fromLandmark[v*landmarks.length + i];
+    }
+
+    /**
+     * Returns the latency from {@code v} to the {@code i}-th landmark.
+     *
+     * @param  i the landmark number
+     * @param  v the switch
+     * @return the latency; {@code Double.POSITIVE_INFINITY} if the landmark is unreachable
+     */
+    public double toLandmark(int i, int v) {
+        return toLandmark[v*landmarks.length + i];
+    }
+
+    // the distances of v, for ALTSearch: landmark i at v*k + i
+    double[] fromLandmarks() {
+        return fromLandmark;
+    }
+
+    double[] toLandmarks() {
+        return toLandmark;
+    }
+
+    /**
+     * Builds an index and compares the vertices that random queries settle
+     * with {@link ALTSearch} and with Dijkstra's algorithm.
+     *
+     * @param args the command-line arguments
+     */
+    public static void main(String[] args) {
+        EdgeWeightedDigraph network = NetworkSnapshot.isSnapshot(args[0])
+                                    ? NetworkSnapshot.read(args[0])
+                                    : new EdgeWeightedDigraph(new In(args[0]));
+        int k = Integer.parseInt(args[1]);
+        int queries = args.length > 2 ? Integer.parseInt(args[2]) : 1000;
+        CompactDigraph G = new CompactDigraph(network);
+        long start = System.nanoTime();
+        ALTIndex index = new ALTIndex(G, k);
+        StdOut.printf("%d landmarks in %.1f ms%n", k, (System.nanoTime() - start) / 1e6);
+
+        ALTSearch search = new ALTSearch(index);
+        SearchWorkspace ws = new SearchWorkspace(G);
+        Random random = new Random(1);
+        long alt = 0, dijkstra = 0;
+        for (int q = 0; q < queries; q++) {
+            int s = random.nextInt(G.V()), t = random.nextInt(G.V());
+            search.run(s, t);
+            alt += search.settled();
+            dijkstra += ws.run(s, t);
+            if (search.distTo() != ws.distTo(t) && Math.abs(search.distTo() - ws.distTo(t)) > 1e-9 * ws.distTo(t))
+                throw new IllegalStateException("distances differ from " + s + " to " + t);
+        }
+        StdOut.printf("%d queries: %.1f vertices settled on average, against %.1f for Dijkstra%n",
+                      queries, (double) alt / queries, (double) dijkstra / queries);
+    }
+}
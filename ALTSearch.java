@@ -0,0 +1,249 @@
+import java.util.Arrays;
+
+/******************************************************************************
+ *
+ *  A* point-to-point shortest path search with landmark lower bounds.
+ *
+ ******************************************************************************/
+
+/**
+ *  The {@code ALTSearch} class answers point-to-point lowest-latency queries
+ *  with an A* search guided by the landmark distances of an {@link ALTIndex}.
+ *  A vertex is keyed by its distance from the source plus a lower bound on
+ *  its distance to the target, the largest bound any landmark gives, so the
+ *  search heads for the target and settles a fraction of the vertices
+ *  Dijkstra's algorithm would. The landmark bounds are consistent in exact
+ *  arithmetic; in floating point each is lowered by a relative slack of
+ *  10<sup>-12</sup>, so that rounding errors in the landmark distances cannot
+ *  make it overestimate. The bounds are then admissible, and consistent up
+ *  to that slack: every vertex is settled once, and the target with its
+ *  exact distance, unless a shorter path is shorter only by a rounding
+ *  error. A bound is computed the first
+ *  time a query reaches a vertex, in time proportional to the number of
+ *  landmarks, and kept for the rest of the query. A landmark also proves a
+ *  vertex cannot reach the target when the landmark reaches the vertex but
+ *  not the target, or the target reaches the landmark but the vertex does
+ *  not; such vertices are never queued.
+ *  <p>
+ *  Like {@link SearchWorkspace}, a search allocates its arrays once and
+ *  resets them in constant time between queries. An instance is not
+ *  thread-safe; the index can be shared.
+ *
+ *  @author Runyuan Yan
+ */
+public class ALTSearch {
+    private static final double EPSILON = 1e-12;    // relative slack that keeps bounds below rounding errors
+
+    private final CompactDigraph G;
+    private final int k;
+    private final double[] fromLandmark;
+    private final double[] toLandmark;
+    private final double[] fromTarget;      // fromTarget[i] = dist(landmark i, t) for the current query
+    private final double[] toTarget;        // toTarget[i] = dist(t, landmark i)
+
+    private final double[] distTo;
+    private final double[] key;             // distTo plus the lower bound
+    private final double[] bound;
+    private final int[] edgeTo;
+    private final int[] stamp;
+    private final int[] heap;
+    private final int[] heapIndex;
+    private int heapSize;
+    private int epoch;
+    private int source, target;
+    private int settled;
+
+    /**
+     * Creates a search over the network of {@code index}.
+     *
+     * @param  index the landmark distances
+     */
+    public ALTSearch(ALTIndex index) {
+        G = index.graph();
+        k = index.landmarks();
+        fromLandmark = index.fromLandmarks();
+        toLandmark = index.toLandmarks();
+        fromTarget = new double[k];
+        toTarget = new double[k];
+        int V = G.V();
+        distTo = new double[V];
+        key = new double[V];
+        bound = new double[V];
+        edgeTo = new int[V];
+        stamp = new int[V];
+        heap = new int[V];
+        heapIndex = new int[V];
+        target = -1;
+    }
+
+    /**
+     * Computes a lowest-latency path from {@code s} to {@code t}.
+     *
+     * @param  s the source
+     * @param  t the target
+     * @return {@code true} if {@code t} is reachable from {@code s}
+     * @throws IllegalArgumentException unless {@code 0 <= s < V} and {@code 0 <= t < V}
+     */
+    public boolean run(int s, int t) {
+        validateVertex(s);
+        validateVertex(t);
+        if (++epoch == 0) {
+            Arrays.fill(stamp, 0);
+            epoch = 1;
+        }
+        source = s;
+        target = t;
+        settled = 0;
+        heapSize = 0;
+        for (int i = 0; i < k; i++) {
+            fromTarget[i] = fromLandmark[t*k + i];
+            toTarget[i] = toLandmark[t*k + i];
+        }
+
+        double h = lowerBound(s);
+        if (h == Double.POSITIVE_INFINITY) return false;
+        reach(s, 0.0, h, -1);
+        while (heapSize > 0) {
+            int v = removeMin();
+            settled++;
+            if (v == t) return true;
+            double d = distTo[v];
+            for (int e = G.begin(v); e < G.end(v); e++) {
+                int w = G.to(e);
+                double dw = d + G.latency(e);
+                if (stamp[w] != epoch) {
+                    double hw = lowerBound(w);
+                    if (hw == Double.POSITIVE_INFINITY) {
+                        stamp[w] = epoch;           // cannot reach t: never queue it
+                        heapIndex[w] = -1;
+                        distTo[w] = Double.POSITIVE_INFINITY;
+                        continue;
+                    }
+                    reach(w, dw, hw, e);
+                }
+                else if (heapIndex[w] >= 0 && dw < distTo[w]) {
+                    distTo[w] = dw;
+                    key[w] = dw + bound[w];
+                    edgeTo[w] = e;
+                    siftUp(heapIndex[w]);
+                }
+            }
+        }
+        return false;
+    }
+
+    // the largest lower bound on dist(v, t) from any landmark
+    private double lowerBound(int v) {
+        double h = 0.0;
+        int at = v*k;
+        for (int i = 0; i < k; i++) {
+            double vl = toLandmark[at + i], tl = toTarget[i];
+            double lv = fromLandmark[at + i], lt = fromTarget[i];
+            if (tl < Double.POSITIVE_INFINITY) {
+                if (vl == Double.POSITIVE_INFINITY) return Double.POSITIVE_INFINITY;
+                h = Math.max(h, vl - tl - EPSILON * vl);
+            }
+            if (lv < Double.POSITIVE_INFINITY) {
+                if (lt == Double.POSITIVE_INFINITY) return Double.POSITIVE_INFINITY;
+                h = Math.max(h, lt - lv - EPSILON * lt);
+            }
+        }
+        return h;
+    }
+
+    /**
+     * Returns the latency of the path found by the last query.
+     *
+     * @return the latency; {@code Double.POSITIVE_INFINITY} if the target is unreachable
+     * @throws IllegalStateException if no query has run
+     */
+    public double distTo() {
+        if (target < 0) throw new IllegalStateException("no query has run");
+        return stamp[target] == epoch && heapIndex[target] < 0 ? distTo[target] : Double.POSITIVE_INFINITY;
+    }
+
+    /**
+     * Returns the path found by the last query.
+     *
+     * @return the path; {@code null} if the target is unreachable
+     * @throws IllegalStateException if no query has run
+     */
+    public NetworkPath path() {
+        if (distTo() == Double.POSITIVE_INFINITY) return null;
+        int n = 0;
+        for (int e = edgeTo[target]; e >= 0; e = edgeTo[G.from(e)]) n++;
+        int[] edges = new int[n];
+        for (int e = edgeTo[target]; e >= 0; e = edgeTo[G.from(e)]) edges[--n] = e;
+        return new NetworkPath(G, source, edges);
+    }
+
+    /**
+     * Returns the number of vertices the last query settled.
+     *
+     * @return the number of vertices settled
+     */
+    public int settled() {
+        return settled;
+    }
+
+    private void reach(int v, double d, double h, int e) {
+        stamp[v] = epoch;
+        distTo[v] = d;
+        bound[v] = h;
+        key[v] = d + h;
+        edgeTo[v] = e;
+        heap[heapSize] = v;
+        heapIndex[v] = heapSize;
+        siftUp(heapSize++);
+    }
+
+    private int removeMin() {
+        int min = heap[0];
+        heapIndex[min] = -1;
+        int last = heap[--heapSize];
+        if (heapSize > 0) {
+            heap[0] = last;
+            heapIndex[last] = 0;
+            siftDown(0);
+        }
+        return min;
+    }
+
+    private void siftUp(int i) {
+        int v = heap[i];
+        double d = key[v];
+        while (i > 0) {
+            int p = (i - 1) >>> 1;
+            int u = heap[p];
+            if (key[u] <= d) break;
+            heap[i] = u;
+            heapIndex[u] = i;
+            i = p;
+        }
+        heap[i] = v;
+        heapIndex[v] = i;
+    }
+
+    private void siftDown(int i) {
+        int v = heap[i];
+        double d = key[v];
+        while (true) {
+            int c = 2*i + 1;
+            if (c >= heapSize) break;
+            if (c + 1 < heapSize && key[heap[c+1]] < key[heap[c]]) c++;
+            int u = heap[c];
+            if (key[u] >= d) break;
+            heap[i] = u;
+            heapIndex[u] = i;
+            i = c;
+        }
+        heap[i] = v;
+        heapIndex[v] = i;
+    }
+
+    // throw an IllegalArgumentException unless {@code 0 <= v < V}
+    private void validateVertex(int v) {
+        if (v < 0 || v >= G.V())
+            throw new IllegalArgumentException("vertex " + v + " is not between 0 and " + (G.V()-1));
+    }
+}
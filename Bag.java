@@ -40,7 +40,8 @@ import java.util.NoSuchElementException;
  *  textbook that uses a non-static nested class.
  *  See {@link ResizingArrayBag} for a version that uses a resizing array.
  *  The <em>add</em>, <em>isEmpty</em>, and <em>size</em> operations
- *  take constant time. Iteration takes time proportional to the number of items.
+ *  take constant time. Iteration takes time proportional to the number of items,
+ *  and so does <em>remove</em>.
  *  <p>
  *  For additional documentation, see <a href="https://algs4.cs.princeton.edu/13stacks">Section 1.3</a> of
  *  <i>Algorithms, 4th Edition</i> by Robert Sedgewick and Kevin Wayne.
@@ -100,6 +101,29 @@ public class Bag<Item> implements Iterable<Item> {
         n++;
     }
 
+    /**
+     * Removes one occurrence of the item from this bag.
+     * Items are compared by reference, so the caller must pass the
+     * same object that was added.
+     *
+     * @param  item the item to remove from this bag
+     * @return {@code true} if the item was found and removed;
+     *         {@code false} otherwise
+     */
+    public boolean remove(Item item) {
+        Node<Item> prev = null;
+        for (Node<Item> x = first; x != null; x = x.next) {
+            if (x.item == item) {
+                if (prev == null) first = x.next;
+                else              prev.next = x.next;
+                n--;
+                return true;
+            }
+            prev = x;
+        }
+        return false;
+    }
+
 
     /**
      * Returns an iterator that iterates over the items in this bag in arbitrary order.
@@ -0,0 +1,459 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/******************************************************************************
+ *  Compilation:  javac Betweenness.java
+ *  Execution:    java Betweenness network.txt [-samples k] [-seed n] [-top m]
+ *  Dependencies: CompactDigraph.java ShortestPathDAG.java EdgeWeightedDigraph.java
+ *                NetworkSnapshot.java In.java StdOut.java
+ *
+ *  Betweenness centrality of the switches by latency, exact or sampled,
+ *  with Brandes' algorithm.
+ *
+ *  % java Betweenness network_data2.txt -top 3
+ *  exact from 9 sources in 17.0 ms
+ *  switch 5: 26.00 (normalized 0.4643)
+ *  switch 6: 26.00 (normalized 0.4643)
+ *  switch 2: 8.00 (normalized 0.1429)
+ *
+ *  % java Betweenness network_data2.txt -samples 4 -top 3
+ *  sampled from 4 of 9 sources in 14.5 ms, all within 0.9650 normalized (95%)
+ *  switch 5: 29.25 (normalized 0.5223, 95% CI 20.95 .. 37.55)
+ *  switch 6: 24.75 (normalized 0.4420, 95% CI 7.32 .. 42.18)
+ *  switch 2: 4.50 (normalized 0.0804, 95% CI 1.65 .. 7.35)
+ *
+ ******************************************************************************/
+
+/**
+ *  The {@code Betweenness} class finds the switches that carry the most
+ *  shortest paths. The betweenness of a switch <em>v</em> is the sum, over
+ *  all ordered pairs of other switches <em>s</em> and <em>t</em>, of the
+ *  fraction of the lowest-latency paths from <em>s</em> to <em>t</em> that
+ *  pass through <em>v</em>; equal-latency paths share the traffic, as they do
+ *  under ECMP. Divided by (<em>V</em> - 1)(<em>V</em> - 2), it is the
+ *  fraction of all pairs' paths that a switch would take down with it.
+ *  <p>
+ *  Brandes' algorithm computes, from each source <em>s</em>, the
+ *  <em>dependency</em> of <em>s</em> on every switch, its share of the paths
+ *  from <em>s</em> to all targets, with one Dijkstra search that counts the
+ *  shortest paths to each switch and one pass back over the switches in
+ *  reverse order; the betweenness is the sum of the dependencies over all
+ *  sources, in time proportional to <em>V E</em> log <em>V</em>. As in
+ *  {@link ShortestPathDAG}, latencies are compared exactly, in integer
+ *  units of 1/23 ns, so that equal-latency paths are all found. The
+ *  sources are split across a {@link ForkJoinPool}; each worker thread adds
+ *  its dependencies into its own arrays, reused from source to source, and
+ *  the arrays are summed at the end, so the workers never contend. The
+ *  floating-point sums are then added in an order that depends on the
+ *  schedule and can differ in the last bits from run to run.
+ *  <p>
+ *  On large networks, a sample of <em>k</em> sources drawn without
+ *  replacement, scaled up by <em>V</em>/<em>k</em>, estimates the
+ *  betweenness in <em>k</em>/<em>V</em> of the time (Brandes and Pich). Each
+ *  switch gets a 95% confidence interval from the variance of its
+ *  dependencies over the sample, with the finite population correction,
+ *  and {@code uniformError()} bounds the error in the normalized
+ *  betweenness of all switches at once with probability at least 95%, by
+ *  Hoeffding's inequality and the union bound: sqrt(ln(40<em>V</em>) /
+ *  (2<em>k</em>)), times <em>V</em>/(<em>V</em> - 1). The ranking of the
+ *  top switches is usually right long before their values are precise.
+ *
+ *  @author Runyuan Yan
+ */
+public class Betweenness {
+    private static final double Z = 1.959964;       // two-sided 95% normal quantile
+    private static final double ALPHA = 0.05;       // 1 - confidence of uniformError()
+
+    private final CompactDigraph G;
+    private final long[] weight;                    // exact latencies, in units of 1/23 ns
+    private final int[] sources;
+    private final double[] centrality;
+    private final double[] halfWidth;               // of the 95% confidence interval
+    private final ArrayList<Worker> workers = new ArrayList<Worker>();
+    private final ThreadLocal<Worker> local = ThreadLocal.withInitial(this::register);
+
+    /**
+     * Computes the exact betweenness of every switch of {@code G} on the
+     * common {@link ForkJoinPool}.
+     *
+     * @param  G the network
+     */
+    public Betweenness(EdgeWeightedDigraph G) {
+        this(new CompactDigraph(G), ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Computes the exact betweenness of every switch of {@code G} on {@code pool}.
+     *
+     * @param  G the network snapshot
+     * @param  pool the pool to run the sources on
+     */
+    public Betweenness(CompactDigraph G, ForkJoinPool pool) {
+        this(G, G.V(), 0, pool);
+    }
+
+    /**
+     * Estimates the betweenness of every switch of {@code G} from
+     * {@code samples} sources drawn at random, on {@code pool}.
+     *
+     * @param  G the network snapshot
+     * @param  samples the number of sources; {@code V} gives the exact betweenness
+     * @param  seed the seed of the sample
+     * @param  pool the pool to run the sources on
+     * @throws IllegalArgumentException unless {@code 0 < samples <= V}
+     */
+    public Betweenness(CompactDigraph G, int samples, long seed, ForkJoinPool pool) {
+        int V = G.V();
+        if (samples <= 0 || samples > V)
+            throw new IllegalArgumentException("samples must be between 1 and " + V);
+        this.G = G;
+        weight = ShortestPathDAG.exactLatencies(G);
+
+        // partial Fisher-Yates shuffle: the first samples switches are a uniform sample
+        int[] all = new int[V];
+        for (int v = 0; v < V; v++) all[v] = v;
+        if (samples < V) {
+            SplittableRandom random = new SplittableRandom(seed);
+            for (int i = 0; i < samples; i++) {
+                int j = i + random.nextInt(V - i);
+                int swap = all[i];
+                all[i] = all[j];
+                all[j] = swap;
+            }
+        }
+        sources = Arrays.copyOf(all, samples);
+        Arrays.sort(sources);
+
+        pool.invoke(new Sources(0, samples));
+        double[] sum = new double[V];
+        double[] sumSquares = new double[V];
+        for (Worker w : workers) {
+            for (int v = 0; v < V; v++) {
+                sum[v] += w.sum[v];
+                sumSquares[v] += w.sumSquares[v];
+            }
+        }
+
+        // scale the sample mean up to all V sources
+        centrality = new double[V];
+        halfWidth = new double[V];
+        int k = samples;
+        for (int v = 0; v < V; v++) {
+            double mean = sum[v] / k;
+            centrality[v] = V * mean;
+            if (k < V && k > 1) {
+                double variance = Math.max(0.0, (sumSquares[v] - k * mean * mean) / (k - 1));
+                double correction = (double) (V - k) / (V - 1);
+                halfWidth[v] = Z * V * Math.sqrt(variance / k * correction);
+            }
+            else if (k < V) halfWidth[v] = Double.POSITIVE_INFINITY;
+        }
+    }
+
+    // the per-thread search arrays and dependency sums
+    private static class Worker {
+        final long[] distTo;
+        final double[] sigma;                   // number of shortest paths from the source
+        final double[] delta;                   // dependency of the source
+        final int[] position;                   // position in the settle order, in this search
+        final int[] stamp;
+        final int[] order;
+        final int[] heap;
+        final int[] heapIndex;
+        final double[] sum;
+        final double[] sumSquares;
+        int epoch;
+
+        Worker(int V) {
+            distTo = new long[V];
+            sigma = new double[V];
+            delta = new double[V];
+            position = new int[V];
+            stamp = new int[V];
+            order = new int[V];
+            heap = new int[V];
+            heapIndex = new int[V];
+            sum = new double[V];
+            sumSquares = new double[V];
+        }
+    }
+
+    private Worker register() {
+        Worker w = new Worker(G.V());
+        synchronized (workers) {
+            workers.add(w);
+        }
+        return w;
+    }
+
+    // the dependencies of sources[lo..hi-1]
+    private class Sources extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+        private final int lo, hi;
+
+        Sources(int lo, int hi) {
+            this.lo = lo;
+            this.hi = hi;
+        }
+
+        @Override
+        protected void compute() {
+            if (hi - lo > 1) {
+                int mid = (lo + hi) >>> 1;
+                invokeAll(new Sources(lo, mid), new Sources(mid, hi));
+                return;
+            }
+            Worker w = local.get();
+            for (int i = lo; i < hi; i++)
+                accumulate(w, sources[i]);
+        }
+    }
+
+    // Brandes' algorithm from s: add the dependency of s on every switch to w.sum
+    private void accumulate(Worker w, int s) {
+        if (++w.epoch == 0) {
+            Arrays.fill(w.stamp, 0);
+            w.epoch = 1;
+        }
+        int epoch = w.epoch;
+        long[] distTo = w.distTo;
+        double[] sigma = w.sigma;
+        int[] position = w.position;
+        int[] stamp = w.stamp;
+        int[] heap = w.heap;
+        int[] heapIndex = w.heapIndex;
+
+        // Dijkstra's algorithm, counting the shortest paths; an edge counts
+        // only into a switch not yet settled, so zero-latency ties form no cycle
+        int n = 0, heapSize = 0;
+        stamp[s] = epoch;
+        distTo[s] = 0;
+        sigma[s] = 1.0;
+        heap[heapSize++] = s;
+        heapIndex[s] = 0;
+        while (heapSize > 0) {
+            int v = heap[0];
+            heapIndex[v] = -1;
+            if (--heapSize > 0) {
+                heap[0] = heap[heapSize];
+                heapIndex[heap[0]] = 0;
+                siftDown(distTo, heap, heapIndex, heapSize, 0);
+            }
+            position[v] = n;
+            w.order[n++] = v;
+            w.delta[v] = 0.0;
+            for (int e = G.begin(v); e < G.end(v); e++) {
+                int x = G.to(e);
+                long d = distTo[v] + weight[e];
+                if (stamp[x] != epoch) {
+                    stamp[x] = epoch;
+                    distTo[x] = d;
+                    sigma[x] = sigma[v];
+                    heapIndex[x] = heapSize;
+                    heap[heapSize++] = x;
+                    siftUp(distTo, heap, heapIndex, heapIndex[x]);
+                }
+                else if (heapIndex[x] >= 0) {
+                    if (d < distTo[x]) {
+                        distTo[x] = d;
+                        sigma[x] = sigma[v];
+                        siftUp(distTo, heap, heapIndex, heapIndex[x]);
+                    }
+                    else if (d == distTo[x]) sigma[x] += sigma[v];
+                }
+            }
+        }
+
+        // dependencies in reverse order, over the tied edges into each switch
+        double[] delta = w.delta;
+        for (int i = n - 1; i > 0; i--) {
+            int x = w.order[i];
+            double share = (1.0 + delta[x]) / sigma[x];
+            for (int j = G.rbegin(x); j < G.rend(x); j++) {
+                int e = G.redge(j);
+                int v = G.from(e);
+                if (stamp[v] != epoch || position[v] >= i) continue;
+                if (distTo[v] + weight[e] == distTo[x]) delta[v] += sigma[v] * share;
+            }
+            w.sum[x] += delta[x];
+            w.sumSquares[x] += delta[x] * delta[x];
+        }
+    }
+
+    private static void siftUp(long[] distTo, int[] heap, int[] heapIndex, int i) {
+        int v = heap[i];
+        long d = distTo[v];
+        while (i > 0) {
+            int p = (i - 1) >>> 1;
+            int u = heap[p];
+            if (distTo[u] <= d) break;
+            heap[i] = u;
+            heapIndex[u] = i;
+            i = p;
+        }
+        heap[i] = v;
+        heapIndex[v] = i;
+    }
+
+    private static void siftDown(long[] distTo, int[] heap, int[] heapIndex, int size, int i) {
+        int v = heap[i];
+        long d = distTo[v];
+        while (true) {
+            int c = 2*i + 1;
+            if (c >= size) break;
+            if (c + 1 < size && distTo[heap[c+1]] < distTo[heap[c]]) c++;
+            int u = heap[c];
+            if (distTo[u] >= d) break;
+            heap[i] = u;
+            heapIndex[u] = i;
+            i = c;
+        }
+        heap[i] = v;
+        heapIndex[v] = i;
+    }
+
+    /**
+     * Returns the number of sources the betweenness was computed from.
+     *
+     * @return the number of sources; {@code V} if it is exact
+     */
+    public int samples() {
+        return sources.length;
+    }
+
+    /**
+     * Is the betweenness exact, computed from every source?
+     *
+     * @return {@code true} if it is, {@code false} if it is an estimate
+     */
+    public boolean isExact() {
+        return sources.length == G.V();
+    }
+
+    /**
+     * Returns the betweenness of {@code v}, or its estimate.
+     *
+     * @param  v the switch
+     * @return the sum over pairs of other switches of the fraction of their
+     *         shortest paths through {@code v}
+     * @throws IllegalArgumentException unless {@code 0 <= v < V}
+     */
+    public double centrality(int v) {
+        validateVertex(v);
+        return centrality[v];
+    }
+
+    /**
+     * Returns the betweenness of {@code v} divided by the number of pairs of
+     * other switches.
+     *
+     * @param  v the switch
+     * @return the normalized betweenness, between 0 and 1 when exact
+     * @throws IllegalArgumentException unless {@code 0 <= v < V}
+     */
+    public double normalized(int v) {
+        validateVertex(v);
+        long pairs = (long) (G.V() - 1) * (G.V() - 2);
+        return pairs == 0 ? 0.0 : centrality[v] / pairs;
+    }
+
+    /**
+     * Returns the lower end of the 95% confidence interval of {@code centrality(v)}.
+     *
+     * @param  v the switch
+     * @return the lower confidence limit; {@code centrality(v)} if it is exact
+     * @throws IllegalArgumentException unless {@code 0 <= v < V}
+     */
+    public double lower(int v) {
+        validateVertex(v);
+        return Math.max(0.0, centrality[v] - halfWidth[v]);
+    }
+
+    /**
+     * Returns the upper end of the 95% confidence interval of {@code centrality(v)}.
+     *
+     * @param  v the switch
+     * @return the upper confidence limit; {@code centrality(v)} if it is exact
+     * @throws IllegalArgumentException unless {@code 0 <= v < V}
+     */
+    public double upper(int v) {
+        validateVertex(v);
+        return centrality[v] + halfWidth[v];
+    }
+
+    /**
+     * Returns a bound that the error in {@code normalized(v)} stays within
+     * for all switches at once, with probability at least 95%.
+     *
+     * @return the bound; 0 if the betweenness is exact
+     */
+    public double uniformError() {
+        int V = G.V();
+        if (isExact() || V < 2) return 0.0;
+        return (double) V / (V - 1) * Math.sqrt(Math.log(2.0 * V / ALPHA) / (2.0 * sources.length));
+    }
+
+    /**
+     * Returns the {@code k} switches of highest betweenness.
+     *
+     * @param  k the number of switches
+     * @return the switches in decreasing order of betweenness, ties by number
+     * @throws IllegalArgumentException unless {@code 0 <= k <= V}
+     */
+    public int[] top(int k) {
+        if (k < 0 || k > G.V()) throw new IllegalArgumentException("k must be between 0 and " + G.V());
+        Integer[] byCentrality = new Integer[G.V()];
+        for (int v = 0; v < G.V(); v++) byCentrality[v] = v;
+        Arrays.sort(byCentrality, (a, b) -> centrality[a] != centrality[b]
+                                            ? Double.compare(centrality[b], centrality[a])
+                                            : Integer.compare(a, b));
+        int[] top = new int[k];
+        for (int i = 0; i < k; i++) top[i] = byCentrality[i];
+        return top;
+    }
+
+    // throw an IllegalArgumentException unless {@code 0 <= v < V}
+    private void validateVertex(int v) {
+        if (v < 0 || v >= G.V())
+            throw new IllegalArgumentException("vertex " + v + " is not between 0 and " + (G.V()-1));
+    }
+
+    /**
+     * Prints the switches of highest betweenness.
+     *
+     * @param args the command-line arguments
+     */
+    public static void main(String[] args) {
+        EdgeWeightedDigraph network = NetworkSnapshot.isSnapshot(args[0])
+                                    ? NetworkSnapshot.read(args[0])
+                                    : new EdgeWeightedDigraph(new In(args[0]));
+        CompactDigraph G = new CompactDigraph(network);
+        int samples = G.V();
+        long seed = 1501;
+        int top = 10;
+        for (int i = 1; i + 1 < args.length; i += 2) {
+            if      (args[i].equals("-samples")) samples = Integer.parseInt(args[i+1]);
+            else if (args[i].equals("-seed"))    seed = Long.parseLong(args[i+1]);
+            else if (args[i].equals("-top"))     top = Integer.parseInt(args[i+1]);
+            else throw new IllegalArgumentException("unknown option " + args[i]);
+        }
+        long start = System.nanoTime();
+        Betweenness b = new Betweenness(G, Math.min(samples, G.V()), seed, ForkJoinPool.commonPool());
+        double ms = (System.nanoTime() - start) / 1e6;
+        if (b.isExact())
+            StdOut.printf("exact from %d sources in %.1f ms%n", G.V(), ms);
+        else
+            StdOut.printf("sampled from %d of %d sources in %.1f ms, all within %.4f normalized (95%%)%n",
+                          b.samples(), G.V(), ms, b.uniformError());
+        for (int v : b.top(Math.min(top, G.V()))) {
+            if (b.isExact())
+                StdOut.printf("switch %d: %.2f (normalized %.4f)%n", v, b.centrality(v), b.normalized(v));
+            else
+                StdOut.printf("switch %d: %.2f (normalized %.4f, 95%% CI %.2f .. %.2f)%n",
+                              v, b.centrality(v), b.normalized(v), b.lower(v), b.upper(v));
+        }
+    }
+}
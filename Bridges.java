@@ -0,0 +1,247 @@
+import java.util.ArrayList;
+
+/******************************************************************************
+ *  Compilation:  javac Bridges.java
+ *  Execution:    java Bridges network.txt
+ *  Dependencies: CompactDigraph.java EdgeWeightedDigraph.java In.java StdOut.java
+ *
+ *  Finds the cables whose failure alone disconnects the network, and labels
+ *  the 2-edge-connected components.
+ *
+ *  % java Bridges network_data2.txt
+ *  0 bridges, 1 2-edge-connected components
+ *  ...
+ *
+ ******************************************************************************/
+
+/**
+ *  The {@code Bridges} class finds the <em>bridges</em> of a network, the
+ *  cables that are single points of failure: taking one down splits its
+ *  connected component in two. It also labels the <em>2-edge-connected
+ *  components</em>, the maximal sets of switches that stay connected after
+ *  any one cable fails; the bridges are exactly the cables between different
+ *  components.
+ *  <p>
+ *  Each duplex cable, stored in the digraph as two directed edges, is one
+ *  undirected edge here, as paired by {@link CompactDigraph#twin(int)}; a
+ *  one-way edge is an undirected edge of its own. Parallel cables between the
+ *  same two switches are distinct edges, so neither of them is a bridge.
+ *  Self-loops are never bridges.
+ *  <p>
+ *  This implementation uses Tarjan's lowpoint algorithm with an explicit
+ *  stack, so deep networks do not overflow the call stack, and skips the
+ *  cable it entered a vertex by rather than the parent vertex, which is what
+ *  handles parallel cables. The constructor takes time proportional to
+ *  <em>V</em> + <em>E</em> on a {@link CompactDigraph}; each other method
+ *  takes constant time, except {@code bridges()}.
+ *  <p>
+ *  For additional documentation, see <a href="https://algs4.cs.princeton.edu/41graph">Section 4.1</a>
+ *  of <i>Algorithms, 4th Edition</i> by Robert Sedgewick and Kevin Wayne.
+ *
+ *  @author Runyuan Yan
+ */
+public class Bridges {
+    private final CompactDigraph G;
+    private final boolean[] bridge;     // bridge[e] = is the cable of edge e a bridge?
+    private final int[] component;      // component[v] = 2-edge-connected component of v
+    private int components;
+    private int bridges;
+
+    /**
+     * Finds the bridges of the network {@code G}.
+     *
+     * @param  G the network
+     */
+    public Bridges(EdgeWeightedDigraph G) {
+        this(new CompactDigraph(G));
+    }
+
+    /**
+     * Finds the bridges of the network snapshot {@code G}.
+     *
+     * @param  G the network snapshot
+     */
+    public Bridges(CompactDigraph G) {
+        this.G = G;
+        int V = G.V();
+        bridge = new boolean[G.E()];
+        component = new int[V];
+
+        int[] pre = new int[V];           // pre[v] = preorder number of v, 0 if unvisited
+        int[] low = new int[V];           // low[v] = lowest preorder reachable by one back edge from v's subtree
+        int[] entry = new int[V];         // entry[v] = edge v was entered by, -1 for a root
+        int[] next = new int[V];          // next[v] = next neighbour position to scan
+        int[] dfs = new int[V];           // DFS path
+        int[] open = new int[V];          // vertices not yet assigned a component
+        int counter = 0, openSize = 0;
+
+        for (int root = 0; root < V; root++) {
+            if (pre[root] != 0) continue;
+            int top = 0;
+            dfs[top++] = root;
+            pre[root] = low[root] = ++counter;
+            entry[root] = -1;
+            next[root] = 0;
+            open[openSize++] = root;
+
+            while (top > 0) {
+                int v = dfs[top - 1];
+                int e = neighbour(v, next[v]);
+                if (e >= 0) {
+                    next[v]++;
+                    if (e == Integer.MAX_VALUE) continue;         // not an undirected edge at v
+                    int w = G.from(e) == v ? G.to(e) : G.from(e);
+                    if (w == v || sameCable(e, entry[v])) continue;
+                    if (pre[w] == 0) {
+                        pre[w] = low[w] = ++counter;
+                        entry[w] = e;
+                        next[w] = 0;
+                        dfs[top++] = w;
+                        open[openSize++] = w;
+                    }
+                    else {
+                        low[v] = Math.min(low[v], pre[w]);
+                    }
+                    continue;
+                }
+
+                // v is finished
+                top--;
+                if (top > 0) {
+                    int u = dfs[top - 1];
+                    low[u] = Math.min(low[u], low[v]);
+                }
+                if (low[v] == pre[v]) {
+                    // v heads a 2-edge-connected component; the edge above it is a bridge
+                    if (entry[v] >= 0) {
+                        bridge[entry[v]] = true;
+                        int f = G.twin(entry[v]);
+                        if (f >= 0) bridge[f] = true;
+                        bridges++;
+                    }
+                    int x;
+                    do {
+                        x = open[--openSize];
+                        component[x] = components;
+                    } while (x != v);
+                    components++;
+                }
+            }
+        }
+    }
+
+    // the i-th undirected edge at v: its out-edges, then the one-way edges into it;
+    // -1 when there are no more, Integer.MAX_VALUE for an in-edge that is not one-way
+    private int neighbour(int v, int i) {
+        int out = G.end(v) - G.begin(v);
+        if (i < out) return G.begin(v) + i;
+        int j = G.rbegin(v) + i - out;
+        if (j >= G.rend(v)) return -1;
+        int e = G.redge(j);
+        return G.twin(e) < 0 ? e : Integer.MAX_VALUE;
+    }
+
+    // are edges e and f the same cable?
+    private boolean sameCable(int e, int f) {
+        return f >= 0 && (e == f || e == G.twin(f));
+    }
+
+    /**
+     * Returns the number of bridges.
+     *
+     * @return the number of cables whose failure alone disconnects the network
+     */
+    public int count() {
+        return bridges;
+    }
+
+    /**
+     * Returns true if the cable of edge {@code e} is a bridge.
+     *
+     * @param  e edge number in the {@link CompactDigraph}
+     * @return {@code true} if the cable of {@code e} is a bridge; {@code false} otherwise
+     * @throws IllegalArgumentException unless {@code 0 <= e < E}
+     */
+    public boolean isBridge(int e) {
+        if (e < 0 || e >= bridge.length)
+            throw new IllegalArgumentException("edge " + e + " is not between 0 and " + (bridge.length-1));
+        return bridge[e];
+    }
+
+    /**
+     * Returns true if the cable of edge {@code e} is a bridge.
+     *
+     * @param  e an edge of the network
+     * @return {@code true} if the cable of {@code e} is a bridge; {@code false} otherwise
+     * @throws IllegalArgumentException if {@code e} is not an edge of the network
+     */
+    public boolean isBridge(DirectedEdge e) {
+        int id = G.indexOf(e);
+        if (id < 0) throw new IllegalArgumentException("edge " + e + " is not in the network");
+        return bridge[id];
+    }
+
+    /**
+     * Returns the bridges, one directed edge per cable.
+     *
+     * @return the bridges
+     */
+    public ArrayList<DirectedEdge> bridges() {
+        ArrayList<DirectedEdge> list = new ArrayList<DirectedEdge>(bridges);
+        for (int e = 0; e < bridge.length; e++) {
+            int f = G.twin(e);
+            if (bridge[e] && (f < 0 || e < f)) list.add(G.edge(e));
+        }
+        return list;
+    }
+
+    /**
+     * Returns the number of 2-edge-connected components.
+     *
+     * @return the number of 2-edge-connected components
+     */
+    public int components() {
+        return components;
+    }
+
+    /**
+     * Returns the 2-edge-connected component containing vertex {@code v}.
+     *
+     * @param  v vertex
+     * @return the component of {@code v}, between 0 and {@code components() - 1}
+     * @throws IllegalArgumentException unless {@code 0 <= v < V}
+     */
+    public int component(int v) {
+        if (v < 0 || v >= component.length)
+            throw new IllegalArgumentException("vertex " + v + " is not between 0 and " + (component.length-1));
+        return component[v];
+    }
+
+    /**
+     * Returns true if vertices {@code v} and {@code w} stay connected after any one cable fails.
+     *
+     * @param  v one vertex
+     * @param  w the other vertex
+     * @return {@code true} if {@code v} and {@code w} are in the same 2-edge-connected component
+     * @throws IllegalArgumentException unless {@code 0 <= v < V} and {@code 0 <= w < V}
+     */
+    public boolean twoEdgeConnected(int v, int w) {
+        return component(v) == component(w);
+    }
+
+    /**
+     * Prints the bridges and the 2-edge-connected components of a network.
+     *
+     * @param args the command-line arguments
+     */
+    public static void main(String[] args) {
+        In in = new In(args[0]);
+        EdgeWeightedDigraph G = new EdgeWeightedDigraph(in);
+        Bridges b = new Bridges(G);
+        StdOut.println(b.count() + " bridges, " + b.components() + " 2-edge-connected components");
+        for (DirectedEdge e : b.bridges())
+            StdOut.println("bridge " + e.from() + "-" + e.to());
+        for (int v = 0; v < G.V(); v++)
+            StdOut.println(v + ": " + b.component(v));
+    }
+}
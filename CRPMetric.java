@@ -0,0 +1,128 @@
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/******************************************************************************
+ *
+ *  The metric-dependent half of customizable route planning: edge costs and
+ *  clique weights of a CRPOverlay.
+ *
+ ******************************************************************************/
+
+/**
+ *  The {@code CRPMetric} class holds the customization of a
+ *  {@link CRPOverlay} for one {@link CRPOverlay.Metric}: the cost of every
+ *  edge and, for every cell at every level, the cost of the cheapest path
+ *  inside the cell from each of its entries to each of its exits.
+ *  <p>
+ *  The cliques are computed bottom up. At level 1, a search from each entry
+ *  of a cell over the edges inside the cell reaches its exits; at each
+ *  level above, the search runs over the cliques of the subcells and the
+ *  edges between them, so it settles only their boundary switches. The
+ *  searches of a level are independent and run in parallel on a
+ *  {@link ForkJoinPool}, split by entry so that a few large cells still
+ *  keep every thread busy. The result is immutable and can be shared by
+ *  the {@link CRPSearch} queries of any number of threads; customizing for
+ *  another metric leaves it untouched.
+ *
+ *  @author Runyuan Yan
+ */
+public class CRPMetric {
+    private static final int GRAIN = 16;        // entries searched by one task
+
+    private final CRPOverlay overlay;
+    private final CRPOverlay.Metric metric;
+    private final double[] cost;                // cost[e] = cost of edge e
+    private final double[][] weight;            // weight[l] = cliques of the cells at level l+1, row by entry
+
+    // see CRPOverlay.customize()
+    CRPMetric(CRPOverlay overlay, CRPOverlay.Metric metric, ForkJoinPool pool) {
+        this.overlay = overlay;
+        this.metric = metric;
+        CompactDigraph G = overlay.graph();
+        cost = new double[G.E()];
+        for (int e = 0; e < G.E(); e++)
+            cost[e] = metric.cost(G, e);
+        int levels = overlay.levels();
+        weight = new double[levels][];
+        for (int l = 0; l < levels; l++) {
+            int[] cliqueStart = overlay.cliqueStart(l);
+            weight[l] = new double[cliqueStart[cliqueStart.length - 1]];
+        }
+
+        ThreadLocal<CRPSearch> search = ThreadLocal.withInitial(() -> new CRPSearch(overlay, cost, weight));
+        for (int l = 0; l < levels; l++)
+            pool.invoke(new Entries(search, l, 0, overlay.entries(l).length));
+    }
+
+    // the clique rows of entries lo..hi-1 at level l+1
+    private class Entries extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+        private final ThreadLocal<CRPSearch> search;
+        private final int l, lo, hi;
+
+        Entries(ThreadLocal<CRPSearch> search, int l, int lo, int hi) {
+            this.search = search;
+            this.l = l;
+            this.lo = lo;
+            this.hi = hi;
+        }
+
+        @Override
+        protected void compute() {
+            if (hi - lo > GRAIN) {
+                int mid = (lo + hi) >>> 1;
+                invokeAll(new Entries(search, l, lo, mid), new Entries(search, l, mid, hi));
+                return;
+            }
+            CRPSearch s = search.get();
+            int[] entries = overlay.entries(l);
+            int[] cellOf = overlay.cellOf(l);
+            int[] exitStart = overlay.exitStart(l);
+            for (int i = lo; i < hi; i++) {
+                int u = entries[i];
+                int c = cellOf[u];
+                int exits = exitStart[c + 1] - exitStart[c];
+                int row = overlay.cliqueStart(l)[c] + overlay.entryIndex(l)[u] * exits;
+                s.clique(l, u, weight[l], row);
+            }
+        }
+    }
+
+    /**
+     * Returns the overlay this is a customization of.
+     *
+     * @return the overlay
+     */
+    public CRPOverlay overlay() {
+        return overlay;
+    }
+
+    /**
+     * Returns the metric.
+     *
+     * @return the metric
+     */
+    public CRPOverlay.Metric metric() {
+        return metric;
+    }
+
+    /**
+     * Returns the number of clique weights at all levels.
+     *
+     * @return the number of weights
+     */
+    public long weights() {
+        long count = 0;
+        for (double[] w : weight) count += w.length;
+        return count;
+    }
+
+    // for CRPSearch
+    double[] costs() {
+        return cost;
+    }
+
+    double[][] cliqueWeights() {
+        return weight;
+    }
+}
@@ -0,0 +1,591 @@
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+/******************************************************************************
+ *  Compilation:  javac CRPOverlay.java
+ *  Execution:    java CRPOverlay network.txt [cellSize] [queries]
+ *  Dependencies: CompactDigraph.java CRPMetric.java CRPSearch.java
+ *                EdgeWeightedDigraph.java NetworkSnapshot.java In.java StdOut.java
+ *
+ *  Metric-independent multi-level partition of a network for customizable
+ *  route planning (CRP).
+ *
+ *  % java CRPOverlay network_data2.txt 4 1000
+ *  partitioned in 9.8 ms: level 1: 3 cells, 8 boundary switches
+ *  latency: customized in 15.0 ms; 11.3 us and 4.9 switches settled per query, against 5.0
+ *  length: customized in 5.1 ms; 0.8 us and 4.9 switches settled per query, against 5.0
+ *  hops: customized in 1.8 ms; 0.8 us and 4.9 switches settled per query, against 5.0
+ *  inverse-bandwidth: customized in 5.9 ms; 0.9 us and 4.9 switches settled per query, against 5.0
+ *
+ ******************************************************************************/
+
+/**
+ *  The {@code CRPOverlay} class is the metric-independent half of
+ *  customizable route planning (Delling, Goldberg, Pajor and Werneck). The
+ *  switches are partitioned into <em>cells</em> of at most a given number
+ *  of switches, the cells into larger cells, and so on, each level nested in
+ *  the next. A switch is an <em>entry</em> of its cell at some level if a
+ *  cable from another cell of that level ends at it, and an <em>exit</em> if
+ *  one leaves it. The overlay of a cell is a clique from each of its entries
+ *  to each of its exits; it is only a shape here, with no weights.
+ *  <p>
+ *  {@link #customize} fills in the weights for a {@link Metric}: the cost of
+ *  the cheapest path inside the cell from each entry to each exit. A search
+ *  ({@link CRPSearch}) then crosses every cell that contains neither end of
+ *  the query in one step per exit, using the highest level at which that is
+ *  true. The partition depends only on the topology, so it is computed once;
+ *  changing the metric costs only a customization, which reads each cell's
+ *  subcells, runs in parallel over the cells of a level and takes a fraction
+ *  of a second on networks with small cuts.
+ *  <p>
+ *  Cells are grown greedily, one at a time, from a switch not yet in a cell,
+ *  by the neighbouring switch with the most cables into the cell, until no
+ *  neighbour fits. Cells under half the limit then join the neighbouring
+ *  cell they have the most cables to, smallest first, while one fits.
+ *  Each level groups the cells of the level below in the same way. Metro
+ *  and regional networks have small cuts and few boundary switches per
+ *  cell; in scale-free and fabric topologies most switches end up on a
+ *  boundary and the overlay saves little.
+ *
+ *  @author Runyuan Yan
+ */
+public class CRPOverlay {
+    private static final int FANOUT = 16;       // growth of the default cell size from level to level
+
+    private final CompactDigraph G;
+    private final int levels;
+    private final int[] cells;                  // cells[l] = number of cells at level l+1
+    private final int[][] cellOf;               // cellOf[l][v] = cell of v at level l+1
+    private final int[][] entryStart;           // entries of cell c at level l+1 are
+    private final int[][] entries;              //   entries[l][entryStart[l][c] .. entryStart[l][c+1]-1]
+    private final int[][] exitStart;
+    private final int[][] exits;
+    private final int[][] entryIndex;           // entryIndex[l][v] = position of v among the entries of its cell, or -1
+    private final int[][] exitIndex;
+    private final int[][] cliqueStart;          // weights of cell c at level l+1 start at cliqueStart[l][c]
+
+    /**
+     * The cost of an edge under which paths are measured.
+     */
+    public enum Metric {
+        /** The latency, in nanoseconds. */
+        LATENCY,
+        /** The cable length, in meters. */
+        LENGTH,
+        /** One per edge, for the fewest hops. */
+        HOPS,
+        /** 100 Gbps divided by the bandwidth, as OSPF costs links; edges with no bandwidth are unusable. */
+        INVERSE_BANDWIDTH;
+
+        private static final double REFERENCE_BANDWIDTH = 100000.0;    // Mbps
+
+        /**
+         * Returns the cost of edge {@code e} of {@code G}.
+         *
+         * @param  G the network snapshot
+         * @param  e the edge number
+         * @return the cost; {@code Double.POSITIVE_INFINITY} if the edge cannot be used
+         */
+        public double cost(CompactDigraph G, int e) {
+            switch (this) {
+                case LATENCY: return G.latency(e);
+                case LENGTH:  return G.length(e);
+                case HOPS:    return 1.0;
+                default:      return G.bandwidth(e) > 0 ? REFERENCE_BANDWIDTH / G.bandwidth(e)
+                                                        : Double.POSITIVE_INFINITY;
+            }
+        }
+
+        @Override
+        public String toString() {
+            return name().toLowerCase().replace('_', '-');
+        }
+    }
+
+    /**
+     * Partitions {@code G} with cells of 256 switches at the first level,
+     * and 16 times as many at each level above, while a cell holds fewer
+     * switches than the network.
+     *
+     * @param  G the network snapshot
+     */
+    public CRPOverlay(CompactDigraph G) {
+        this(G, cellSizes(256, G.V()));
+    }
+
+    /**
+     * Partitions {@code G} into one level per entry of {@code cellSizes}.
+     *
+     * @param  G the network snapshot
+     * @param  cellSizes the largest number of switches in a cell at each
+     *         level, increasing; no levels at all make a search Dijkstra's algorithm
+     * @throws IllegalArgumentException unless the cell sizes are positive and increasing
+     * @throws IllegalArgumentException if the cells are too large for their cliques to be stored
+     */
+    public CRPOverlay(CompactDigraph G, int... cellSizes) {
+        for (int l = 0; l < cellSizes.length; l++) {
+            if (cellSizes[l] < 1 || l > 0 && cellSizes[l] <= cellSizes[l-1])
+                throw new IllegalArgumentException("cell sizes must be positive and increasing");
+        }
+        this.G = G;
+        int V = G.V();
+        levels = cellSizes.length;
+        cells = new int[levels];
+        cellOf = new int[levels][];
+        entryStart = new int[levels][];
+        entries = new int[levels][];
+        exitStart = new int[levels][];
+        exits = new int[levels][];
+        entryIndex = new int[levels][];
+        exitIndex = new int[levels][];
+        cliqueStart = new int[levels][];
+
+        // each level groups the cells of the level below, starting from the switches
+        int[] unit = new int[V];
+        int[] size = new int[V];
+        for (int v = 0; v < V; v++) {
+            unit[v] = v;
+            size[v] = 1;
+        }
+        int units = V;
+        for (int l = 0; l < levels; l++) {
+            int[] group = group(unit, units, size, cellSizes[l]);
+            int n = 0;
+            for (int g : group) n = Math.max(n, g + 1);
+            cellOf[l] = new int[V];
+            for (int v = 0; v < V; v++) cellOf[l][v] = group[unit[v]];
+            int[] groupSize = new int[n];
+            for (int u = 0; u < units; u++) groupSize[group[u]] += size[u];
+            cells[l] = n;
+            findBoundary(l);
+            unit = cellOf[l];
+            size = groupSize;
+            units = n;
+        }
+    }
+
+    // cellSize, FANOUT times that, and so on while a cell is smaller than the network
+    private static int[] cellSizes(int cellSize, int V) {
+        int levels = 0;
+        for (long size = cellSize; size < V; size *= FANOUT) levels++;
+        int[] sizes = new int[levels];
+        for (int l = 0; l < levels; l++)
+            sizes[l] = l == 0 ? cellSize : sizes[l-1] * FANOUT;
+        return sizes;
+    }
+
+   /***************************************************************************
+    * Partitioning.
+    ***************************************************************************/
+
+    // groups units 0..n-1, unit[v] being the unit of switch v, into groups of
+    // at most cap switches; returns the group of each unit, numbered from 0
+    private int[] group(int[] unit, int n, int[] size, int cap) {
+        // the units the cables join, one entry per cable end
+        int[] start = new int[n + 1];
+        for (int e = 0; e < G.E(); e++) {
+            int a = unit[G.from(e)], b = unit[G.to(e)];
+            if (a != b) {
+                start[a + 1]++;
+                start[b + 1]++;
+            }
+        }
+        for (int u = 0; u < n; u++) start[u + 1] += start[u];
+        int[] adj = new int[start[n]];
+        int[] next = Arrays.copyOf(start, n);
+        for (int e = 0; e < G.E(); e++) {
+            int a = unit[G.from(e)], b = unit[G.to(e)];
+            if (a != b) {
+                adj[next[a]++] = b;
+                adj[next[b]++] = a;
+            }
+        }
+
+        // seeds in breadth-first order, so that cells are started next to each other
+        int[] order = new int[n];
+        boolean[] marked = new boolean[n];
+        int head = 0, tail = 0;
+        for (int s = 0; s < n; s++) {
+            if (marked[s]) continue;
+            marked[s] = true;
+            order[tail++] = s;
+            while (head < tail) {
+                int u = order[head++];
+                for (int i = start[u]; i < start[u + 1]; i++) {
+                    if (!marked[adj[i]]) {
+                        marked[adj[i]] = true;
+                        order[tail++] = adj[i];
+                    }
+                }
+            }
+        }
+
+        // grow each group to half the limit, by the unit with the most cables into it
+        int grow = Math.max(cap / 2, 1);
+        int[] group = new int[n];
+        Arrays.fill(group, -1);
+        int[] total = new int[n];
+        GainHeap heap = new GainHeap(n);
+        int groups = 0;
+        for (int s : order) {
+            if (group[s] >= 0) continue;
+            int g = groups++;
+            heap.push(s);
+            while (!heap.isEmpty()) {
+                int u = heap.pop();
+                if (total[g] + size[u] > grow && total[g] > 0) continue;
+                group[u] = g;
+                total[g] += size[u];
+                for (int i = start[u]; i < start[u + 1]; i++) {
+                    if (group[adj[i]] < 0) heap.gain(adj[i]);
+                }
+            }
+            heap.clear();
+        }
+
+        // groups under half the limit join the neighbouring group they share
+        // the most cables with, smallest first, while one fits
+        int[] parent = new int[groups];
+        int[] first = new int[groups];          // members of a group, linked through link
+        int[] last = new int[groups];
+        int[] link = new int[n];
+        Arrays.fill(first, -1);
+        for (int g = 0; g < groups; g++) parent[g] = g;
+        for (int u = n - 1; u >= 0; u--) {
+            if (first[group[u]] < 0) last[group[u]] = u;
+            link[u] = first[group[u]];
+            first[group[u]] = u;
+        }
+        int[] shared = new int[groups];
+        Integer[] bySize = new Integer[groups];
+        for (int g = 0; g < groups; g++) bySize[g] = g;
+        boolean merged = true;
+        while (merged) {
+            merged = false;
+            Arrays.sort(bySize, (g, h) -> Integer.compare(total[g], total[h]));
+            for (int g : bySize) {
+                if (parent[g] != g || total[g] > cap / 2) continue;
+                int best = -1;
+                for (int u = first[g]; u >= 0; u = link[u]) {
+                    for (int i = start[u]; i < start[u + 1]; i++) {
+                        int h = find(parent, group[adj[i]]);
+                        if (h == g || total[h] + total[g] > cap) continue;
+                        shared[h]++;
+                        if (best < 0 || shared[h] > shared[best]
+                                     || shared[h] == shared[best] && total[h] < total[best]) best = h;
+                    }
+                }
+                for (int u = first[g]; u >= 0; u = link[u]) {
+                    for (int i = start[u]; i < start[u + 1]; i++)
+                        shared[find(parent, group[adj[i]])] = 0;
+                }
+                if (best < 0) continue;
+                parent[g] = best;
+                total[best] += total[g];
+                link[last[best]] = first[g];
+                last[best] = last[g];
+                merged = true;
+            }
+        }
+
+        // number the groups left from 0
+        int[] id = new int[groups];
+        Arrays.fill(id, -1);
+        int count = 0;
+        for (int u = 0; u < n; u++) {
+            int g = find(parent, group[u]);
+            if (id[g] < 0) id[g] = count++;
+            group[u] = id[g];
+        }
+        return group;
+    }
+
+    private static int find(int[] parent, int g) {
+        while (parent[g] != g) {
+            parent[g] = parent[parent[g]];
+            g = parent[g];
+        }
+        return g;
+    }
+
+    // indexed max-heap of units by the number of cables into the group being grown
+    private static class GainHeap {
+        private final int[] gain;
+        private final int[] heap;
+        private final int[] heapIndex;          // -1 if not in the heap
+        private final int[] touched;            // units whose gain is set
+        private int size, touchedSize;
+
+        GainHeap(int n) {
+            gain = new int[n];
+            heap = new int[n];
+            heapIndex = new int[n];
+            touched = new int[n];
+            Arrays.fill(heapIndex, -1);
+        }
+
+        boolean isEmpty() {
+            return size == 0;
+        }
+
+        void push(int u) {
+            touched[touchedSize++] = u;
+            heap[size] = u;
+            heapIndex[u] = size;
+            siftUp(size++);
+        }
+
+        // one more cable from u into the group
+        void gain(int u) {
+            if (heapIndex[u] < 0) {
+                if (gain[u] == 0) push(u);
+                else              return;      // popped already: it did not fit
+            }
+            gain[u]++;
+            siftUp(heapIndex[u]);
+        }
+
+        int pop() {
+            int max = heap[0];
+            heapIndex[max] = -1;
+            int last = heap[--size];
+            if (size > 0) {
+                heap[0] = last;
+                heapIndex[last] = 0;
+                siftDown(0);
+            }
+            gain[max] = Math.max(gain[max], 1);  // marks it popped
+            return max;
+        }
+
+        void clear() {
+            for (int i = 0; i < size; i++) heapIndex[heap[i]] = -1;
+            size = 0;
+            for (int i = 0; i < touchedSize; i++) gain[touched[i]] = 0;
+            touchedSize = 0;
+        }
+
+        private void siftUp(int i) {
+            int u = heap[i];
+            while (i > 0) {
+                int p = (i - 1) >>> 1;
+                if (gain[heap[p]] >= gain[u]) break;
+                heap[i] = heap[p];
+                heapIndex[heap[i]] = i;
+                i = p;
+            }
+            heap[i] = u;
+            heapIndex[u] = i;
+        }
+
+        private void siftDown(int i) {
+            int u = heap[i];
+            while (true) {
+                int c = 2*i + 1;
+                if (c >= size) break;
+                if (c + 1 < size && gain[heap[c+1]] > gain[heap[c]]) c++;
+                if (gain[heap[c]] <= gain[u]) break;
+                heap[i] = heap[c];
+                heapIndex[heap[i]] = i;
+                i = c;
+            }
+            heap[i] = u;
+            heapIndex[u] = i;
+        }
+    }
+
+    // the entries, exits and clique offsets of the cells at level l+1
+    private void findBoundary(int l) {
+        int V = G.V();
+        int n = cells[l];
+        int[] cell = cellOf[l];
+        boolean[] entry = new boolean[V];
+        boolean[] exit = new boolean[V];
+        for (int e = 0; e < G.E(); e++) {
+            if (cell[G.from(e)] != cell[G.to(e)]) {
+                exit[G.from(e)] = true;
+                entry[G.to(e)] = true;
+            }
+        }
+        entryIndex[l] = new int[V];
+        exitIndex[l] = new int[V];
+        entryStart[l] = new int[n + 1];
+        exitStart[l] = new int[n + 1];
+        for (int v = 0; v < V; v++) {
+            entryIndex[l][v] = entry[v] ? entryStart[l][cell[v] + 1]++ : -1;
+            exitIndex[l][v] = exit[v] ? exitStart[l][cell[v] + 1]++ : -1;
+        }
+        cliqueStart[l] = new int[n + 1];
+        for (int c = 0; c < n; c++) {
+            long clique = (long) entryStart[l][c + 1] * exitStart[l][c + 1];
+            if (cliqueStart[l][c] + clique > Integer.MAX_VALUE)
+                throw new IllegalArgumentException("cells at level " + (l+1) + " have too many boundary switches");
+            cliqueStart[l][c + 1] = cliqueStart[l][c] + (int) clique;
+            entryStart[l][c + 1] += entryStart[l][c];
+            exitStart[l][c + 1] += exitStart[l][c];
+        }
+        entries[l] = new int[entryStart[l][n]];
+        exits[l] = new int[exitStart[l][n]];
+        for (int v = 0; v < V; v++) {
+            if (entry[v]) entries[l][entryStart[l][cell[v]] + entryIndex[l][v]] = v;
+            if (exit[v])  exits[l][exitStart[l][cell[v]] + exitIndex[l][v]] = v;
+        }
+    }
+
+   /***************************************************************************
+    * Customization and accessors.
+    ***************************************************************************/
+
+    /**
+     * Computes the clique weights for {@code metric} on the common {@link ForkJoinPool}.
+     *
+     * @param  metric the cost of an edge
+     * @return the customized overlay
+     */
+    public CRPMetric customize(Metric metric) {
+        return new CRPMetric(this, metric, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Computes the clique weights for {@code metric} on {@code pool}.
+     *
+     * @param  metric the cost of an edge
+     * @param  pool the pool to customize the cells on
+     * @return the customized overlay
+     */
+    public CRPMetric customize(Metric metric, ForkJoinPool pool) {
+        return new CRPMetric(this, metric, pool);
+    }
+
+    /**
+     * Returns the network snapshot the overlay was built for.
+     *
+     * @return the network snapshot
+     */
+    public CompactDigraph graph() {
+        return G;
+    }
+
+    /**
+     * Returns the number of levels.
+     *
+     * @return the number of levels
+     */
+    public int levels() {
+        return levels;
+    }
+
+    /**
+     * Returns the number of cells at {@code level}.
+     *
+     * @param  level the level, between 1 and {@code levels()}
+     * @return the number of cells
+     * @throws IllegalArgumentException unless {@code 1 <= level <= levels()}
+     */
+    public int cells(int level) {
+        validateLevel(level);
+        return cells[level - 1];
+    }
+
+    /**
+     * Returns the cell of {@code v} at {@code level}.
+     *
+     * @param  level the level, between 1 and {@code levels()}
+     * @param  v the switch
+     * @return the cell, between 0 and {@code cells(level) - 1}
+     * @throws IllegalArgumentException unless {@code 1 <= level <= levels()} and {@code 0 <= v < V}
+     */
+    public int cell(int level, int v) {
+        validateLevel(level);
+        if (v < 0 || v >= G.V())
+            throw new IllegalArgumentException("vertex " + v + " is not between 0 and " + (G.V()-1));
+        return cellOf[level - 1][v];
+    }
+
+    /**
+     * Returns the number of switches that are an entry or an exit of their
+     * cell at {@code level}.
+     *
+     * @param  level the level, between 1 and {@code levels()}
+     * @return the number of boundary switches
+     * @throws IllegalArgumentException unless {@code 1 <= level <= levels()}
+     */
+    public int boundary(int level) {
+        validateLevel(level);
+        int count = 0;
+        for (int v = 0; v < G.V(); v++)
+            if (entryIndex[level - 1][v] >= 0 || exitIndex[level - 1][v] >= 0) count++;
+        return count;
+    }
+
+    // the arrays of level l+1, for CRPMetric and CRPSearch
+    int[] cellOf(int l)       { return cellOf[l]; }
+    int[] entryStart(int l)   { return entryStart[l]; }
+    int[] entries(int l)      { return entries[l]; }
+    int[] exitStart(int l)    { return exitStart[l]; }
+    int[] exits(int l)        { return exits[l]; }
+    int[] entryIndex(int l)   { return entryIndex[l]; }
+    int[] exitIndex(int l)    { return exitIndex[l]; }
+    int[] cliqueStart(int l)  { return cliqueStart[l]; }
+
+    private void validateLevel(int level) {
+        if (level < 1 || level > levels)
+            throw new IllegalArgumentException("level " + level + " is not between 1 and " + levels);
+    }
+
+    /**
+     * Partitions a network, customizes it for every metric and compares the
+     * switches that random queries settle with those Dijkstra's algorithm settles.
+     *
+     * @param args the command-line arguments
+     */
+    public static void main(String[] args) {
+        EdgeWeightedDigraph network = NetworkSnapshot.isSnapshot(args[0])
+                                    ? NetworkSnapshot.read(args[0])
+                                    : new EdgeWeightedDigraph(new In(args[0]));
+        CompactDigraph G = new CompactDigraph(network);
+        int queries = args.length > 2 ? Integer.parseInt(args[2]) : 1000;
+        long start = System.nanoTime();
+        int cellSize = args.length > 1 ? Integer.parseInt(args[1]) : 256;
+        CRPOverlay overlay = new CRPOverlay(G, cellSizes(cellSize, G.V()));
+        StdOut.printf("partitioned in %.1f ms:", (System.nanoTime() - start) / 1e6);
+        for (int level = 1; level <= overlay.levels(); level++)
+            StdOut.printf("%s level %d: %d cells, %d boundary switches", level > 1 ? ";" : "",
+                          level, overlay.cells(level), overlay.boundary(level));
+        StdOut.println();
+
+        CRPOverlay flat = new CRPOverlay(G, new int[0]);
+        for (Metric metric : Metric.values()) {
+            start = System.nanoTime();
+            CRPMetric customized = overlay.customize(metric);
+            double ms = (System.nanoTime() - start) / 1e6;
+            CRPSearch search = new CRPSearch(customized);
+            CRPSearch dijkstra = new CRPSearch(flat.customize(metric));
+            Random random = new Random(1);
+            int[] sources = new int[queries], targets = new int[queries];
+            for (int q = 0; q < queries; q++) {
+                sources[q] = random.nextInt(G.V());
+                targets[q] = random.nextInt(G.V());
+            }
+            long crp = 0, plain = 0;
+            double[] dist = new double[queries];
+            start = System.nanoTime();
+            for (int q = 0; q < queries; q++) {
+                search.run(sources[q], targets[q]);
+                crp += search.settled();
+                dist[q] = search.distTo();
+            }
+            double us = (System.nanoTime() - start) / 1e3 / queries;
+            for (int q = 0; q < queries; q++) {
+                dijkstra.run(sources[q], targets[q]);
+                plain += dijkstra.settled();
+                double d = dijkstra.distTo();
+                if (dist[q] != d && Math.abs(dist[q] - d) > 1e-9 * d)
+                    throw new IllegalStateException("distances differ from " + sources[q] + " to " + targets[q]);
+            }
+            StdOut.printf("%s: customized in %.1f ms; %.1f us and %.1f switches settled per query, against %.1f%n",
+                          metric, ms, us, (double) crp / queries, (double) plain / queries);
+        }
+    }
+}
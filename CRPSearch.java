@@ -0,0 +1,312 @@
+import java.util.Arrays;
+
+/******************************************************************************
+ *
+ *  Multi-level Dijkstra search over a customized CRP overlay.
+ *
+ ******************************************************************************/
+
+/**
+ *  The {@code CRPSearch} class answers point-to-point queries under the
+ *  metric of a {@link CRPMetric}. It is Dijkstra's algorithm on a graph that
+ *  changes with the query: a switch whose cell at level 1 holds the source
+ *  or the target relaxes its edges as usual, and any other switch uses the
+ *  highest level <em>l</em> at which its cell holds neither. There it
+ *  relaxes the clique of its cell, if it is an entry, and the edges that
+ *  leave its cell, so a search crosses the parts of the network far from
+ *  both ends a whole cell at a time and settles a few boundary switches
+ *  instead of every switch.
+ *  <p>
+ *  {@code path()} unpacks each clique arc with a search restricted to its
+ *  cell. The same restricted search, run from each entry of a cell over the
+ *  cliques of its subcells, computes the clique weights for
+ *  {@link CRPMetric}.
+ *  <p>
+ *  Like {@link SearchWorkspace}, a search allocates its arrays once and
+ *  resets them in constant time between queries. An instance is not
+ *  thread-safe; the metric can be shared.
+ *
+ *  @author Runyuan Yan
+ */
+public class CRPSearch {
+    private final CompactDigraph G;
+    private final CRPOverlay overlay;
+    private final int levels;
+    private final double[] cost;
+    private final double[][] weight;
+
+    private final double[] distTo;
+    private final int[] pred;               // pred[v] = previous switch on the best known path
+    private final int[] via;                // via[v] = edge from pred[v], or -l for a clique arc at level l
+    private final int[] stamp;
+    private final int[] heap;
+    private final int[] heapIndex;
+    private final int[] sourceCell;         // cells of the source and the target at each level
+    private final int[] targetCell;
+    private int heapSize;
+    private int epoch;
+    private int scanned;
+
+    private int source, target;
+    private double distance;
+    private int settled;
+    private NetworkPath path;
+
+    /**
+     * Creates a search under the metric of {@code metric}.
+     *
+     * @param  metric the customized overlay
+     */
+    public CRPSearch(CRPMetric metric) {
+        this(metric.overlay(), metric.costs(), metric.cliqueWeights());
+    }
+
+    // a search over weights that may still be being customized, level by level
+    CRPSearch(CRPOverlay overlay, double[] cost, double[][] weight) {
+        this.overlay = overlay;
+        this.cost = cost;
+        this.weight = weight;
+        G = overlay.graph();
+        levels = overlay.levels();
+        int V = G.V();
+        distTo = new double[V];
+        pred = new int[V];
+        via = new int[V];
+        stamp = new int[V];
+        heap = new int[V];
+        heapIndex = new int[V];
+        sourceCell = new int[levels];
+        targetCell = new int[levels];
+        target = -1;
+    }
+
+    /**
+     * Computes a cheapest path from {@code s} to {@code t}.
+     *
+     * @param  s the source
+     * @param  t the target
+     * @return {@code true} if {@code t} is reachable from {@code s}
+     * @throws IllegalArgumentException unless {@code 0 <= s < V} and {@code 0 <= t < V}
+     */
+    public boolean run(int s, int t) {
+        validateVertex(s);
+        validateVertex(t);
+        for (int l = 0; l < levels; l++) {
+            sourceCell[l] = overlay.cellOf(l)[s];
+            targetCell[l] = overlay.cellOf(l)[t];
+        }
+        source = s;
+        target = t;
+        path = null;
+        search(s, t, -1, -1, -1);
+        settled = scanned;
+        distance = reached(t) ? distTo[t] : Double.POSITIVE_INFINITY;
+        return distance < Double.POSITIVE_INFINITY;
+    }
+
+    /**
+     * Returns the cost of the path found by the last query.
+     *
+     * @return the cost; {@code Double.POSITIVE_INFINITY} if the target is unreachable
+     * @throws IllegalStateException if no query has run
+     */
+    public double distTo() {
+        if (target < 0) throw new IllegalStateException("no query has run");
+        return distance;
+    }
+
+    /**
+     * Returns the path found by the last query, with every clique arc unpacked.
+     *
+     * @return the path; {@code null} if the target is unreachable
+     * @throws IllegalStateException if no query has run
+     */
+    public NetworkPath path() {
+        if (distTo() == Double.POSITIVE_INFINITY) return null;
+        if (path != null) return path;
+
+        // the arcs of the overlay path, before the searches that unpack them overwrite it
+        int n = 0;
+        for (int v = target; v != source; v = pred[v]) n++;
+        int[] arcTo = new int[n];
+        int[] arcVia = new int[n];
+        for (int v = target, i = n; v != source; v = pred[v]) {
+            arcTo[--i] = v;
+            arcVia[i] = via[v];
+        }
+
+        int[] edges = new int[16];
+        int size = 0;
+        int from = source;
+        for (int i = 0; i < n; i++) {
+            if (arcVia[i] >= 0) {
+                if (size == edges.length) edges = Arrays.copyOf(edges, 2 * size);
+                edges[size++] = arcVia[i];
+            }
+            else {
+                int l = -arcVia[i] - 1;
+                search(from, arcTo[i], l, overlay.cellOf(l)[from], 0);
+                int m = 0;
+                for (int v = arcTo[i]; v != from; v = pred[v]) m++;
+                if (size + m > edges.length) edges = Arrays.copyOf(edges, Math.max(2 * edges.length, size + m));
+                for (int v = arcTo[i], j = size + m; v != from; v = pred[v]) edges[--j] = via[v];
+                size += m;
+            }
+            from = arcTo[i];
+        }
+        path = new NetworkPath(G, source, Arrays.copyOf(edges, size));
+        return path;
+    }
+
+    /**
+     * Returns the number of switches the last query settled.
+     *
+     * @return the number of switches settled
+     */
+    public int settled() {
+        return settled;
+    }
+
+    // the cost from entry u of its cell at level l+1 to each exit of the cell,
+    // into weight[l] from offset on
+    void clique(int l, int u, double[] row, int offset) {
+        int c = overlay.cellOf(l)[u];
+        search(u, -1, l, c, l);
+        int[] exitStart = overlay.exitStart(l);
+        int[] exits = overlay.exits(l);
+        for (int j = exitStart[c]; j < exitStart[c + 1]; j++) {
+            int x = exits[j];
+            row[offset++] = reached(x) ? distTo[x] : Double.POSITIVE_INFINITY;
+        }
+    }
+
+    // Dijkstra from s until t is settled, or to every exit of cell c at level
+    // l+1 if l >= 0, inside that cell; relaxing at level k (0 for the edges),
+    // or at the level of each switch for the query if k < 0
+    private void search(int s, int t, int l, int c, int k) {
+        if (++epoch == 0) {
+            Arrays.fill(stamp, 0);
+            epoch = 1;
+        }
+        heapSize = 0;
+        scanned = 0;
+        int[] restrict = l >= 0 ? overlay.cellOf(l) : null;
+        int remaining = l >= 0 && t < 0 ? overlay.exitStart(l)[c + 1] - overlay.exitStart(l)[c] : -1;
+        reach(s, 0.0, -1, -1);
+        while (heapSize > 0) {
+            int v = removeMin();
+            scanned++;
+            if (v == t) return;
+            if (remaining > 0 && overlay.exitIndex(l)[v] >= 0 && --remaining == 0) return;
+            int level = k >= 0 ? k : levelOf(v);
+            double d = distTo[v];
+
+            int[] cell = null;
+            if (level > 0) {
+                int lk = level - 1;
+                cell = overlay.cellOf(lk);
+                int i = overlay.entryIndex(lk)[v];
+                if (i >= 0) {
+                    int cv = cell[v];
+                    int first = overlay.exitStart(lk)[cv];
+                    int exits = overlay.exitStart(lk)[cv + 1] - first;
+                    int at = overlay.cliqueStart(lk)[cv] + i * exits;
+                    int[] exit = overlay.exits(lk);
+                    double[] w = weight[lk];
+                    for (int j = 0; j < exits; j++)
+                        relax(exit[first + j], d + w[at + j], v, -level);
+                }
+            }
+            for (int e = G.begin(v); e < G.end(v); e++) {
+                int w = G.to(e);
+                if (cell != null && cell[w] == cell[v]) continue;
+                if (restrict != null && restrict[w] != c) continue;
+                relax(w, d + cost[e], v, e);
+            }
+        }
+    }
+
+    // the highest level at which the cell of v holds neither the source nor the target
+    private int levelOf(int v) {
+        for (int l = levels - 1; l >= 0; l--) {
+            int c = overlay.cellOf(l)[v];
+            if (c != sourceCell[l] && c != targetCell[l]) return l + 1;
+        }
+        return 0;
+    }
+
+    private boolean reached(int v) {
+        return stamp[v] == epoch && heapIndex[v] < 0;
+    }
+
+    private void relax(int w, double d, int v, int arc) {
+        if (d == Double.POSITIVE_INFINITY) return;
+        if (stamp[w] != epoch) reach(w, d, v, arc);
+        else if (heapIndex[w] >= 0 && d < distTo[w]) {
+            distTo[w] = d;
+            pred[w] = v;
+            via[w] = arc;
+            siftUp(heapIndex[w]);
+        }
+    }
+
+    private void reach(int v, double d, int p, int arc) {
+        stamp[v] = epoch;
+        distTo[v] = d;
+        pred[v] = p;
+        via[v] = arc;
+        heap[heapSize] = v;
+        heapIndex[v] = heapSize;
+        siftUp(heapSize++);
+    }
+
+    private int removeMin() {
+        int min = heap[0];
+        heapIndex[min] = -1;
+        int last = heap[--heapSize];
+        if (heapSize > 0) {
+            heap[0] = last;
+            heapIndex[last] = 0;
+            siftDown(0);
+        }
+        return min;
+    }
+
+    private void siftUp(int i) {
+        int v = heap[i];
+        double d = distTo[v];
+        while (i > 0) {
+            int p = (i - 1) >>> 1;
+            int u = heap[p];
+            if (distTo[u] <= d) break;
+            heap[i] = u;
+            heapIndex[u] = i;
+            i = p;
+        }
+        heap[i] = v;
+        heapIndex[v] = i;
+    }
+
+    private void siftDown(int i) {
+        int v = heap[i];
+        double d = distTo[v];
+        while (true) {
+            int c = 2*i + 1;
+            if (c >= heapSize) break;
+            if (c + 1 < heapSize && distTo[heap[c+1]] < distTo[heap[c]]) c++;
+            int u = heap[c];
+            if (distTo[u] >= d) break;
+            heap[i] = u;
+            heapIndex[u] = i;
+            i = c;
+        }
+        heap[i] = v;
+        heapIndex[v] = i;
+    }
+
+    // throw an IllegalArgumentException unless {@code 0 <= v < V}
+    private void validateVertex(int v) {
+        if (v < 0 || v >= G.V())
+            throw new IllegalArgumentException("vertex " + v + " is not between 0 and " + (G.V()-1));
+    }
+}
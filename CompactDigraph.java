@@ -0,0 +1,316 @@
+/******************************************************************************
+ *
+ *  Immutable compressed (CSR) snapshot of an EdgeWeightedDigraph, for
+ *  algorithms that run many searches over the same network.
+ *
+ ******************************************************************************/
+
+/**
+ *  The {@code CompactDigraph} class represents a read-only snapshot of an
+ *  {@link EdgeWeightedDigraph} in compressed sparse row form. Edges are
+ *  numbered 0 through <em>E</em> - 1 so that the edges leaving vertex
+ *  <em>v</em> are {@code begin(v)} through {@code end(v) - 1}, sorted by
+ *  target; every per-edge attribute is a primitive array indexed by edge
+ *  number. The edges entering <em>v</em> are listed, as edge numbers, by
+ *  {@code redge(i)} for {@code rbegin(v) <= i < rend(v)}.
+ *  <p>
+ *  Each duplex cable is stored in the digraph as two directed edges. The
+ *  snapshot pairs them: {@code twin(e)} is the edge in the opposite direction
+ *  with the same material, bandwidth and length, or -1 if there is none.
+ *  Parallel cables are paired one to one.
+ *  <p>
+ *  Because the snapshot never changes, any number of threads can search it
+ *  at once, each with its own {@link SearchWorkspace}; a failure scenario is
+ *  a mask over the snapshot rather than a modified copy. Building it takes
+ *  time proportional to <em>E</em> log <em>E</em>.
+ *
+ *  @author Runyuan Yan
+ */
+public class CompactDigraph {
+    private final int V;
+    private final int E;
+    private final int[] first;          // edges out of v are first[v] .. first[v+1]-1
+    private final int[] from;
+    private final int[] to;
+    private final double[] latency;
+    private final int[] bandwidth;
+    private final int[] length;
+    private final boolean[] copper;
+    private final int[] twin;           // twin[e] = opposite edge of the same cable, or -1
+    private final int[] rfirst;         // edges into v are redge[rfirst[v]] .. redge[rfirst[v+1]-1]
+    private final int[] redge;
+    private final DirectedEdge[] edge;  // edge[e] = the original edge
+
+    /**
+     * Builds a snapshot of {@code G}.
+     *
+     * @param  G the edge-weighted digraph
+     */
+    public CompactDigraph(EdgeWeightedDigraph G) {
+        V = G.V();
+        E = G.E();
+        first = new int[V + 1];
+        rfirst = new int[V + 1];
+        from = new int[E];
+        to = new int[E];
+        latency = new double[E];
+        bandwidth = new int[E];
+        length = new int[E];
+        copper = new boolean[E];
+        twin = new int[E];
+        redge = new int[E];
+        edge = new DirectedEdge[E];
+
+        // count out- and in-degrees
+        for (int v = 0; v < V; v++) {
+            for (DirectedEdge e : G.adj(v)) {
+                first[e.from() + 1]++;
+                rfirst[e.to() + 1]++;
+            }
+        }
+        for (int v = 0; v < V; v++) {
+            first[v + 1] += first[v];
+            rfirst[v + 1] += rfirst[v];
+        }
+
+        // bucket the edges by target, then by source: out-edges end up sorted by target
+        DirectedEdge[] byTarget = new DirectedEdge[E];
+        int[] next = new int[V];
+        System.arraycopy(rfirst, 0, next, 0, V);
+        for (int v = 0; v < V; v++) {
+            for (DirectedEdge e : G.adj(v))
+                byTarget[next[e.to()]++] = e;
+        }
+        System.arraycopy(first, 0, next, 0, V);
+        for (DirectedEdge e : byTarget) {
+            int id = next[e.from()]++;
+            edge[id] = e;
+            from[id] = e.from();
+            to[id] = e.to();
+            latency[id] = e.latency();
+            bandwidth[id] = e.bandWidth();
+            length[id] = e.length();
+            copper[id] = e.material().equals("copper");
+        }
+
+        // edges into each vertex, in order of source
+        System.arraycopy(rfirst, 0, next, 0, V);
+        for (int e = 0; e < E; e++)
+            redge[next[to[e]]++] = e;
+
+        // pair each edge with an unpaired opposite edge of the same cable
+        for (int e = 0; e < E; e++)
+            twin[e] = -1;
+        for (int e = 0; e < E; e++) {
+            if (twin[e] >= 0) continue;
+            int v = from[e], w = to[e];
+            for (int f = lowerBound(w, v); f < first[w+1] && to[f] == v; f++) {
+                if (f != e && twin[f] < 0 && sameCable(e, f)) {
+                    twin[e] = f;
+                    twin[f] = e;
+                    break;
+                }
+            }
+        }
+    }
+
+    // first edge out of v with target >= w
+    private int lowerBound(int v, int w) {
+        int lo = first[v], hi = first[v+1];
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (to[mid] < w) lo = mid + 1;
+            else             hi = mid;
+        }
+        return lo;
+    }
+
+    private boolean sameCable(int e, int f) {
+        return copper[e] == copper[f] && bandwidth[e] == bandwidth[f] && length[e] == length[f];
+    }
+
+    /**
+     * Returns the number of vertices.
+     *
+     * @return the number of vertices
+     */
+    public int V() {
+        return V;
+    }
+
+    /**
+     * Returns the number of edges.
+     *
+     * @return the number of edges
+     */
+    public int E() {
+        return E;
+    }
+
+    /**
+     * Returns the first edge leaving {@code v}.
+     *
+     * @param  v vertex
+     * @return the number of the first edge leaving {@code v}
+     */
+    public int begin(int v) {
+        return first[v];
+    }
+
+    /**
+     * Returns one past the last edge leaving {@code v}.
+     *
+     * @param  v vertex
+     * @return one past the number of the last edge leaving {@code v}
+     */
+    public int end(int v) {
+        return first[v + 1];
+    }
+
+    /**
+     * Returns the first index into {@code redge()} of the edges entering {@code v}.
+     *
+     * @param  v vertex
+     * @return the first index of the edges entering {@code v}
+     */
+    public int rbegin(int v) {
+        return rfirst[v];
+    }
+
+    /**
+     * Returns one past the last index into {@code redge()} of the edges entering {@code v}.
+     *
+     * @param  v vertex
+     * @return one past the last index of the edges entering {@code v}
+     */
+    public int rend(int v) {
+        return rfirst[v + 1];
+    }
+
+    /**
+     * Returns the edge at index {@code i} of the incoming edge lists.
+     *
+     * @param  i the index, between {@code rbegin(v)} and {@code rend(v) - 1} for some {@code v}
+     * @return the edge number
+     */
+    public int redge(int i) {
+        return redge[i];
+    }
+
+    /**
+     * Returns the source of edge {@code e}.
+     *
+     * @param  e edge number
+     * @return the source of {@code e}
+     */
+    public int from(int e) {
+        return from[e];
+    }
+
+    /**
+     * Returns the target of edge {@code e}.
+     *
+     * @param  e edge number
+     * @return the target of {@code e}
+     */
+    public int to(int e) {
+        return to[e];
+    }
+
+    /**
+     * Returns the latency of edge {@code e}, in nanoseconds.
+     *
+     * @param  e edge number
+     * @return the latency of {@code e}
+     */
+    public double latency(int e) {
+        return latency[e];
+    }
+
+    /**
+     * Returns the bandwidth of edge {@code e}.
+     *
+     * @param  e edge number
+     * @return the bandwidth of {@code e}
+     */
+    public int bandwidth(int e) {
+        return bandwidth[e];
+    }
+
+    /**
+     * Returns the length of edge {@code e}, in meters.
+     *
+     * @param  e edge number
+     * @return the length of {@code e}
+     */
+    public int length(int e) {
+        return length[e];
+    }
+
+    /**
+     * Returns true if edge {@code e} is a copper cable.
+     *
+     * @param  e edge number
+     * @return {@code true} if {@code e} is copper; {@code false} if it is optical
+     */
+    public boolean isCopper(int e) {
+        return copper[e];
+    }
+
+    /**
+     * Returns the opposite edge of the same duplex cable.
+     *
+     * @param  e edge number
+     * @return the twin of {@code e}, or -1 if the cable is one-way
+     */
+    public int twin(int e) {
+        return twin[e];
+    }
+
+    /**
+     * Returns the {@link DirectedEdge} that edge {@code e} was built from.
+     *
+     * @param  e edge number
+     * @return the original edge
+     */
+    public DirectedEdge edge(int e) {
+        return edge[e];
+    }
+
+    /**
+     * Returns the number of the first edge from {@code v} to {@code w}.
+     *
+     * @param  v the source
+     * @param  w the target
+     * @return the number of an edge from {@code v} to {@code w}, or -1 if there is none
+     * @throws IllegalArgumentException unless {@code 0 <= v < V} and {@code 0 <= w < V}
+     */
+    public int edge(int v, int w) {
+        validateVertex(v);
+        validateVertex(w);
+        int e = lowerBound(v, w);
+        return e < first[v+1] && to[e] == w ? e : -1;
+    }
+
+    /**
+     * Returns the number of edge {@code e} in this snapshot.
+     *
+     * @param  e an edge of the digraph the snapshot was built from
+     * @return the number of {@code e}, or -1 if it is not in the snapshot
+     * @throws IllegalArgumentException if {@code e} is {@code null}
+     */
+    public int indexOf(DirectedEdge e) {
+        if (e == null) throw new IllegalArgumentException("argument is null");
+        if (e.from() >= V || e.to() >= V) return -1;
+        for (int f = lowerBound(e.from(), e.to()); f < first[e.from()+1] && to[f] == e.to(); f++) {
+            if (edge[f] == e) return f;
+        }
+        return -1;
+    }
+
+    // throw an IllegalArgumentException unless {@code 0 <= v < V}
+    private void validateVertex(int v) {
+        if (v < 0 || v >= V)
+            throw new IllegalArgumentException("vertex " + v + " is not between 0 and " + (V-1));
+    }
+}
@@ -32,6 +32,7 @@ public class DijkstraSP {
     private double[] distTo;          // distTo[v] = distance  of shortest s->v path
     private DirectedEdge[] edgeTo;    // edgeTo[v] = last edge on shortest s->v path
     private IndexMinPQ<Double> pq;    // priority queue of vertices
+    private long settled;             // number of vertices removed from pq
   
 
     /**
@@ -44,6 +45,36 @@ public class DijkstraSP {
      * @throws IllegalArgumentException unless {@code 0 <= s < V}
      */
     public DijkstraSP(EdgeWeightedDigraph G, int s) {
+        search(G, s, -1);
+
+        // check optimality conditions
+        assert check(G, s);
+    }
+
+    /**
+     * Computes a shortest path from the source vertex {@code s} to the target
+     * vertex {@code t}, stopping as soon as {@code t} is settled.
+     * Afterwards {@code distTo()}, {@code hasPathTo()} and {@code pathTo()} are
+     * exact for {@code t} and for every vertex on the path, but other
+     * vertices may only have upper bounds on their distance.
+     *
+     * @param  G the edge-weighted digraph
+     * @param  s the source vertex
+     * @param  t the target vertex
+     * @throws IllegalArgumentException if an edge weight is negative
+     * @throws IllegalArgumentException unless {@code 0 <= s < V} and {@code 0 <= t < V}
+     */
+    public DijkstraSP(EdgeWeightedDigraph G, int s, int t) {
+        if (t < 0 || t >= G.V())
+            throw new IllegalArgumentException("vertex " + t + " is not between 0 and " + (G.V()-1));
+        search(G, s, t);
+    }
+
+    // Dijkstra's algorithm from s, until t is settled or, if t is -1, until every reachable vertex is
+    private void search(EdgeWeightedDigraph G, int s, int t) {
+        long start = NetworkMetrics.Timer.DIJKSTRA.start();
+        NetworkEvents.ShortestPath event = new NetworkEvents.ShortestPath();
+        event.begin();
         for (DirectedEdge e : G.edges()) {
             if (e.latency() < 0)
                 throw new IllegalArgumentException("edge " + e + " has negative weight");
@@ -61,14 +92,35 @@ public class DijkstraSP {
         // relax vertices in order of distance from s
         pq = new IndexMinPQ<Double>(G.V());
         pq.insert(s, distTo[s]);
+        long relaxed = 0;
+        settled = 0;
         while (!pq.isEmpty()) {
             int v = pq.delMin();
-            for (DirectedEdge e : G.adj(v))
+            settled++;
+            if (v == t) break;
+            for (DirectedEdge e : G.adj(v)) {
                 relax(e);
+                relaxed++;
+            }
+        }
+        if (NetworkMetrics.ENABLED) {
+            NetworkMetrics.Counter.DIJKSTRA_SETTLED.add(settled);
+            NetworkMetrics.Counter.DIJKSTRA_RELAXED.add(relaxed);
+            pq.publishMetrics();
+            NetworkMetrics.Timer.DIJKSTRA.stop(start);
+        }
+        if (event.shouldCommit()) {
+            event.source = s;
+            event.target = t;
+            event.verticesSettled = settled;
+            if (t >= 0) {
+                for (DirectedEdge e = edgeTo[t]; e != null; e = edgeTo[e.from()]) event.resultSize++;
+            }
+            else {
+                for (int v = 0; v < G.V(); v++) if (distTo[v] < Double.POSITIVE_INFINITY) event.resultSize++;
+            }
+            event.commit();
         }
-
-        // check optimality conditions
-        assert check(G, s);
     }
 
     // relax edge e and update pq if changed
@@ -94,6 +146,15 @@ public class DijkstraSP {
         return distTo[v];
     }
     
+    /**
+     * Returns the number of vertices the search settled.
+     *
+     * @return the number of vertices settled
+     */
+    public long verticesSettled() {
+        return settled;
+    }
+
     /**
      * Returns true if there is a path from the source vertex {@code s} to vertex {@code v}.
      *
@@ -0,0 +1,299 @@
+import java.util.Arrays;
+
+/******************************************************************************
+ *  Compilation:  javac DisjointPaths.java
+ *  Execution:    java DisjointPaths network.txt s t
+ *  Dependencies: SearchWorkspace.java CompactDigraph.java NetworkPath.java
+ *                EdgeWeightedDigraph.java In.java StdOut.java
+ *
+ *  Minimum total-latency pair of cable-disjoint or switch-disjoint paths
+ *  (Suurballe's algorithm in Bhandari's form).
+ *
+ *  % java DisjointPaths network_data1.txt 0 1
+ *  cable-disjoint:  0->4->1 (69.57 ns, bandwidth 100)
+ *                   0->2->1 (100.00 ns, bandwidth 10000)
+ *  switch-disjoint: 0->4->1 (69.57 ns, bandwidth 100)
+ *                   0->2->1 (100.00 ns, bandwidth 10000)
+ *
+ ******************************************************************************/
+
+/**
+ *  The {@code DisjointPaths} class computes a primary and a backup path
+ *  between two switches that share no cable ({@code cableDisjoint()}) or no
+ *  switch other than the endpoints ({@code switchDisjoint()}), with the
+ *  smallest total latency of any such pair. Running Dijkstra again after
+ *  removing the first path can miss a pair that exists and is usually not
+ *  the cheapest pair; this is the algorithm of Suurballe and Tarjan, in the
+ *  form given by Bhandari.
+ *  <p>
+ *  The first search is an ordinary Dijkstra search in a
+ *  {@link SearchWorkspace}; its distances serve as potentials that make every
+ *  reduced edge latency nonnegative. The second search runs in the residual
+ *  graph: the edges of the first path are replaced by reversed edges of
+ *  latency 0, and the opposite direction of each of their cables is left
+ *  out, so the pair is disjoint by cable and not only by directed edge. For
+ *  switch-disjoint paths, every switch inside the first path is split into an
+ *  "in" and an "out" copy joined by the reversed path, which keeps the second
+ *  path from crossing it. The residual graph is not built; the second search
+ *  derives its edges from the snapshot as it goes. The edges the two paths
+ *  cancel are dropped and the rest are split into the two paths.
+ *  <p>
+ *  The two searches together cost about two Dijkstra runs. All arrays are
+ *  allocated once per instance and reset in constant time between queries,
+ *  as in the workspace, whose masks are honoured by both searches. An
+ *  instance is not thread-safe.
+ *
+ *  @author Runyuan Yan
+ */
+public class DisjointPaths {
+    private final CompactDigraph G;
+    private final SearchWorkspace ws;
+    private final int V;
+
+    // second search over states v (a vertex, or the out copy of a split vertex) and V+v (in copy)
+    private final double[] dist;
+    private final int[] stamp;
+    private final int[] predState;
+    private final int[] predEdge;         // real edge e, -(e+2) for the reversal of path edge e, -1 for in/out
+    private final int[] heap;
+    private final int[] heapIndex;
+    private int heapSize;
+
+    private final int[] pathIn;           // pathIn[v] = first-path edge into v, valid when pathStamp[v] == epoch
+    private final int[] pathStamp;
+    private final int[] edgeStamp;        // edgeStamp[e] == epoch: e is in the result
+    private final int[] blockStamp;       // blockStamp[e] == epoch: e or its cable is on the first path
+    private int epoch;
+
+    /**
+     * Creates a disjoint path finder over the snapshot of the workspace {@code ws}.
+     *
+     * @param  ws the workspace used for the first search
+     */
+    public DisjointPaths(SearchWorkspace ws) {
+        this.ws = ws;
+        this.G = ws.graph();
+        V = G.V();
+        dist = new double[2*V];
+        stamp = new int[2*V];
+        predState = new int[2*V];
+        predEdge = new int[2*V];
+        heap = new int[2*V];
+        heapIndex = new int[2*V];
+        pathIn = new int[V];
+        pathStamp = new int[V];
+        edgeStamp = new int[G.E()];
+        blockStamp = new int[G.E()];
+    }
+
+    /**
+     * Returns the pair of paths from {@code s} to {@code t} that share no cable
+     * and have the smallest total latency.
+     *
+     * @param  s the source
+     * @param  t the target
+     * @return the two paths, shorter first; {@code null} if there is no such pair
+     * @throws IllegalArgumentException unless {@code 0 <= s < V} and {@code 0 <= t < V}
+     * @throws IllegalArgumentException if {@code s == t}
+     */
+    public NetworkPath[] cableDisjoint(int s, int t) {
+        return find(s, t, false);
+    }
+
+    /**
+     * Returns the pair of paths from {@code s} to {@code t} that share no switch
+     * other than {@code s} and {@code t}, and have the smallest total latency.
+     *
+     * @param  s the source
+     * @param  t the target
+     * @return the two paths, shorter first; {@code null} if there is no such pair
+     * @throws IllegalArgumentException unless {@code 0 <= s < V} and {@code 0 <= t < V}
+     * @throws IllegalArgumentException if {@code s == t}
+     */
+    public NetworkPath[] switchDisjoint(int s, int t) {
+        return find(s, t, true);
+    }
+
+    private NetworkPath[] find(int s, int t, boolean splitVertices) {
+        validateVertex(s);
+        validateVertex(t);
+        if (s == t) throw new IllegalArgumentException("source equals target");
+        ws.run(s, -1);
+        if (!ws.hasPathTo(t)) return null;
+        nextEpoch();
+
+        // mark the first path
+        int[] first = ws.pathTo(t);
+        for (int e : first) {
+            pathIn[G.to(e)] = e;
+            pathStamp[G.to(e)] = epoch;
+            blockStamp[e] = epoch;
+            int f = G.twin(e);
+            if (f >= 0) blockStamp[f] = epoch;
+        }
+
+        // second search in the residual graph with reduced latencies
+        heapSize = 0;
+        reach(s, 0.0, -1, -1);
+        boolean found = false;
+        while (heapSize > 0) {
+            int x = removeMin();
+            if (x == t) {
+                found = true;
+                break;
+            }
+            boolean in = x >= V;
+            int v = in ? x - V : x;
+            boolean inner = splitVertices && v != s && v != t && pathStamp[v] == epoch;
+
+            // along a reversed first-path edge, at latency 0
+            if (pathStamp[v] == epoch && (in || !inner)) {
+                int p = pathIn[v];
+                relax(x, G.from(p), 0.0, -(p + 2));
+            }
+            if (in) continue;
+            // from the out copy to the in copy of a split vertex
+            if (inner) relax(x, V + v, 0.0, -1);
+            // along the edges not on the first path
+            double pv = ws.distTo(v);
+            for (int e = G.begin(v); e < G.end(v); e++) {
+                if (blockStamp[e] == epoch || ws.isExcludedEdge(e)) continue;
+                int w = G.to(e);
+                double reduced = Math.max(0.0, G.latency(e) + pv - ws.distTo(w));
+                boolean split = splitVertices && w != s && w != t && pathStamp[w] == epoch;
+                relax(x, split ? V + w : w, reduced, e);
+            }
+        }
+        if (!found) return null;
+
+        // first path plus second path, minus the edges the second path cancels
+        for (int e : first) edgeStamp[e] = epoch;
+        for (int x = t; x != s; x = predState[x]) {
+            int e = predEdge[x];
+            if (e >= 0)      edgeStamp[e] = epoch;
+            else if (e < -1) edgeStamp[-e - 2] = 0;
+        }
+        NetworkPath a = walk(s, t), b = walk(s, t);
+        return a.latency() <= b.latency() ? new NetworkPath[] { a, b } : new NetworkPath[] { b, a };
+    }
+
+    // follow and consume result edges from s to t
+    private NetworkPath walk(int s, int t) {
+        int n = 0;
+        int[] edges = new int[16];
+        for (int v = s; v != t; ) {
+            int next = -1;
+            for (int e = G.begin(v); e < G.end(v); e++) {
+                if (edgeStamp[e] == epoch) {
+                    next = e;
+                    break;
+                }
+            }
+            edgeStamp[next] = 0;
+            if (n == edges.length) edges = Arrays.copyOf(edges, 2*n);
+            edges[n++] = next;
+            v = G.to(next);
+        }
+        return new NetworkPath(G, s, Arrays.copyOf(edges, n));
+    }
+
+    private void relax(int x, int y, double latency, int edge) {
+        double d = dist[x] + latency;
+        if (stamp[y] != epoch) reach(y, d, x, edge);
+        else if (heapIndex[y] >= 0 && d < dist[y]) {
+            dist[y] = d;
+            predState[y] = x;
+            predEdge[y] = edge;
+            siftUp(heapIndex[y]);
+        }
+    }
+
+    private void nextEpoch() {
+        if (++epoch == 0) {
+            Arrays.fill(stamp, 0);
+            Arrays.fill(pathStamp, 0);
+            Arrays.fill(edgeStamp, 0);
+            Arrays.fill(blockStamp, 0);
+            epoch = 1;
+        }
+    }
+
+    private void reach(int x, double d, int pred, int edge) {
+        stamp[x] = epoch;
+        dist[x] = d;
+        predState[x] = pred;
+        predEdge[x] = edge;
+        heap[heapSize] = x;
+        heapIndex[x] = heapSize;
+        siftUp(heapSize++);
+    }
+
+    private int removeMin() {
+        int min = heap[0];
+        heapIndex[min] = -1;
+        int last = heap[--heapSize];
+        if (heapSize > 0) {
+            heap[0] = last;
+            heapIndex[last] = 0;
+            siftDown(0);
+        }
+        return min;
+    }
+
+    private void siftUp(int i) {
+        int x = heap[i];
+        double d = dist[x];
+        while (i > 0) {
+            int p = (i - 1) >>> 1;
+            int y = heap[p];
+            if (dist[y] <= d) break;
+            heap[i] = y;
+            heapIndex[y] = i;
+            i = p;
+        }
+        heap[i] = x;
+        heapIndex[x] = i;
+    }
+
+    private void siftDown(int i) {
+        int x = heap[i];
+        double d = dist[x];
+        while (true) {
+            int c = 2*i + 1;
+            if (c >= heapSize) break;
+            if (c + 1 < heapSize && dist[heap[c+1]] < dist[heap[c]]) c++;
+            int y = heap[c];
+            if (dist[y] >= d) break;
+            heap[i] = y;
+            heapIndex[y] = i;
+            i = c;
+        }
+        heap[i] = x;
+        heapIndex[x] = i;
+    }
+
+    // throw an IllegalArgumentException unless {@code 0 <= v < V}
+    private void validateVertex(int v) {
+        if (v < 0 || v >= V)
+            throw new IllegalArgumentException("vertex " + v + " is not between 0 and " + (V-1));
+    }
+
+    /**
+     * Prints the cable-disjoint and switch-disjoint pairs between two switches.
+     *
+     * @param args the command-line arguments
+     */
+    public static void main(String[] args) {
+        In in = new In(args[0]);
+        CompactDigraph G = new CompactDigraph(new EdgeWeightedDigraph(in));
+        int s = Integer.parseInt(args[1]);
+        int t = Integer.parseInt(args[2]);
+        DisjointPaths finder = new DisjointPaths(new SearchWorkspace(G));
+        NetworkPath[] cable = finder.cableDisjoint(s, t);
+        if (cable == null) StdOut.println("cable-disjoint:  none");
+        else StdOut.println("cable-disjoint:  " + cable[0] + "\n                 " + cable[1]);
+        NetworkPath[] node = finder.switchDisjoint(s, t);
+        if (node == null) StdOut.println("switch-disjoint: none");
+        else StdOut.println("switch-disjoint: " + node[0] + "\n                 " + node[1]);
+    }
+}
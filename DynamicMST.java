@@ -0,0 +1,279 @@
+import java.util.ArrayList;
+import java.util.HashMap;
+
+/******************************************************************************
+ *
+ *  Minimum spanning forest that is kept up to date while cables are added
+ *  or removed. Insertions use a link-cut tree to find the heaviest edge on
+ *  the cycle they close; deletions search the smaller side of the cut for
+ *  a replacement edge.
+ *
+ ******************************************************************************/
+
+/**
+ *  The {@code DynamicMST} class represents a data type for maintaining a
+ *  <em>minimum spanning forest</em> of an edge-weighted graph that changes
+ *  over time. Like {@link KruskalMST}, each {@link DirectedEdge} is treated as
+ *  an undirected edge weighted by its latency, so the two directions of a
+ *  duplex cable are two parallel candidate edges.
+ *  The {@code weight()} method returns the weight of the current forest and
+ *  the {@code edges()} method returns its edges.
+ *  <p>
+ *  The constructor builds the initial forest with {@link KruskalMST}.
+ *  Afterwards all changes to the network must go through {@code addEdge()},
+ *  {@code removeEdge()} and {@code updateEdge()}, which modify the underlying
+ *  {@link EdgeWeightedDigraph} and then repair the forest:
+ *  <ul>
+ *  <li> adding an edge {@code v-w} links the two trees if {@code v} and
+ *       {@code w} are disconnected; otherwise it replaces the heaviest edge
+ *       on the tree path from {@code v} to {@code w} if that edge is heavier.
+ *       This takes amortized logarithmic time.
+ *  <li> removing a non-tree edge only updates the bookkeeping.
+ *  <li> removing a tree edge splits its tree in two. The smaller half is
+ *       enumerated and the lightest edge leaving it, if any, reconnects the
+ *       halves. This takes time proportional to the number of edges incident
+ *       on the smaller half (times a logarithmic factor).
+ *  </ul>
+ *
+ *  @author Runyuan Yan
+ */
+public class DynamicMST {
+    private static final double FLOATING_POINT_EPSILON = 1E-9;
+
+    private final EdgeWeightedDigraph G;
+    private final LinkCutTree lct;                  // nodes 0..V-1 are vertices, V..2V-1 are tree edges
+    private final HashMap<DirectedEdge, Integer> nodeOf = new HashMap<DirectedEdge, Integer>();   // tree edge -> lct node
+    private final DirectedEdge[] edgeAt;            // edgeAt[x-V] = tree edge represented by lct node x
+    private final int[] freeNodes;                  // stack of unused edge nodes
+    private int freeCount;
+    private final Bag<DirectedEdge>[] incident;     // incident[v] = edges with v as an endpoint
+    private final Bag<DirectedEdge>[] treeAdj;      // treeAdj[v] = tree edges with v as an endpoint
+    private final int[] mark;                       // scratch marks for the replacement search
+    private double weight;                          // weight of the forest
+
+    /**
+     * Computes a minimum spanning forest of the edge-weighted graph {@code G}.
+     *
+     * @param G the edge-weighted graph
+     */
+    public DynamicMST(EdgeWeightedDigraph G) {
+        this.G = G;
+        int V = G.V();
+        lct = new LinkCutTree(2*V);
+        edgeAt = new DirectedEdge[V];
+        freeNodes = new int[V];
+        for (int x = 2*V - 1; x >= V; x--)
+            freeNodes[freeCount++] = x;
+        incident = bags(V);
+        treeAdj = bags(V);
+        mark = new int[V];
+        for (DirectedEdge e : G.edges()) {
+            incident[e.from()].add(e);
+            if (e.to() != e.from()) incident[e.to()].add(e);
+        }
+        for (DirectedEdge e : new KruskalMST(G).edges()) {
+            link(e);
+        }
+        assert check();
+    }
+
+    // an array of V empty bags of edges
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static Bag<DirectedEdge>[] bags(int V) {
+        Bag<DirectedEdge>[] bags = (Bag<DirectedEdge>[]) new Bag[V];
+        for (int v = 0; v < V; v++)
+            bags[v] = new Bag<DirectedEdge>();
+        return bags;
+    }
+
+    /**
+     * Adds the edge {@code e} to the graph and updates the spanning forest.
+     *
+     * @param  e the edge
+     * @throws IllegalArgumentException unless both endpoints are between {@code 0} and {@code V-1}
+     */
+    public void addEdge(DirectedEdge e) {
+        G.addEdge(e);
+        int v = e.from(), w = e.to();
+        incident[v].add(e);
+        if (w != v) incident[w].add(e);
+        insert(e);
+        assert check();
+    }
+
+    /**
+     * Removes the edge {@code e} from the graph and updates the spanning forest.
+     *
+     * @param  e the edge, as it was passed to {@code addEdge()}
+     * @return {@code true} if the edge was in the graph; {@code false} otherwise
+     * @throws IllegalArgumentException unless both endpoints are between {@code 0} and {@code V-1}
+     */
+    public boolean removeEdge(DirectedEdge e) {
+        if (!G.removeEdge(e)) return false;
+        int v = e.from(), w = e.to();
+        incident[v].remove(e);
+        if (w != v) incident[w].remove(e);
+        if (nodeOf.containsKey(e)) {
+            cut(e);
+            reconnect(v, w);
+        }
+        assert check();
+        return true;
+    }
+
+    /**
+     * Replaces the edge {@code e} by {@code updated} and updates the spanning forest.
+     *
+     * @param  e the edge currently in the graph
+     * @param  updated the edge that takes its place
+     * @return {@code true} if {@code e} was in the graph and has been replaced;
+     *         {@code false} otherwise
+     * @throws IllegalArgumentException if the two edges have different endpoints
+     */
+    public boolean updateEdge(DirectedEdge e, DirectedEdge updated) {
+        if (!G.updateEdge(e, updated)) return false;
+        int v = e.from(), w = e.to();
+        incident[v].remove(e);
+        incident[v].add(updated);
+        if (w != v) {
+            incident[w].remove(e);
+            incident[w].add(updated);
+        }
+        if (nodeOf.containsKey(e)) {
+            cut(e);
+            reconnect(v, w);
+        }
+        insert(updated);
+        assert check();
+        return true;
+    }
+
+    /**
+     * Returns the edges in the current minimum spanning tree (or forest).
+     * @return the edges in the current minimum spanning tree (or forest) as
+     *    an iterable of edges
+     */
+    public Iterable<DirectedEdge> edges() {
+        Bag<DirectedEdge> list = new Bag<DirectedEdge>();
+        for (DirectedEdge e : nodeOf.keySet()) {
+            list.add(e);
+        }
+        return list;
+    }
+
+    /**
+     * Returns the number of edges in the current minimum spanning tree (or forest).
+     * @return the number of edges in the current minimum spanning tree (or forest)
+     */
+    public int size() {
+        return nodeOf.size();
+    }
+
+    /**
+     * Returns the sum of the edge weights in the current minimum spanning tree (or forest).
+     * @return the sum of the edge weights in the current minimum spanning tree (or forest)
+     */
+    public double weight() {
+        return weight;
+    }
+
+    // offer e to the forest: link it, swap it for a heavier cycle edge, or ignore it
+    private void insert(DirectedEdge e) {
+        int v = e.from(), w = e.to();
+        if (v == w) return;
+        if (!lct.connected(v, w)) {
+            link(e);
+            return;
+        }
+        int x = lct.pathMax(v, w);
+        if (lct.weight(x) > e.latency()) {
+            cut(edgeAt[x - G.V()]);
+            link(e);
+        }
+    }
+
+    // v and w were split by a tree cut: find the lightest edge across and link it
+    private void reconnect(int v, int w) {
+        if (v == w) return;
+        // grow both halves in lockstep and stop as soon as the smaller one is exhausted
+        ArrayList<Integer> sideV = new ArrayList<Integer>();
+        ArrayList<Integer> sideW = new ArrayList<Integer>();
+        sideV.add(v);
+        sideW.add(w);
+        mark[v] = 1;
+        mark[w] = 2;
+        int iv = 0, iw = 0;
+        while (iv < sideV.size() && iw < sideW.size()) {
+            expand(sideV.get(iv++), 1, sideV);
+            expand(sideW.get(iw++), 2, sideW);
+        }
+        ArrayList<Integer> small = iv == sideV.size() ? sideV : sideW;
+        int label = small == sideV ? 1 : 2;
+
+        // every edge leaving the (complete) smaller side crosses the cut
+        DirectedEdge best = null;
+        for (int x : small) {
+            for (DirectedEdge f : incident[x]) {
+                int y = f.from() == x ? f.to() : f.from();
+                if (mark[y] == label) continue;
+                if (best == null || f.latency() < best.latency()) best = f;
+            }
+        }
+        for (int x : sideV) mark[x] = 0;
+        for (int x : sideW) mark[x] = 0;
+        if (best != null) link(best);
+    }
+
+    // breadth-first step over tree edges from x, labelling new vertices
+    private void expand(int x, int label, ArrayList<Integer> side) {
+        for (DirectedEdge f : treeAdj[x]) {
+            int y = f.from() == x ? f.to() : f.from();
+            if (mark[y] != label) {
+                mark[y] = label;
+                side.add(y);
+            }
+        }
+    }
+
+    private void link(DirectedEdge e) {
+        int v = e.from(), w = e.to();
+        int x = freeNodes[--freeCount];
+        lct.setWeight(x, e.latency());
+        lct.link(v, x);
+        lct.link(x, w);
+        nodeOf.put(e, x);
+        edgeAt[x - G.V()] = e;
+        treeAdj[v].add(e);
+        treeAdj[w].add(e);
+        weight += e.latency();
+    }
+
+    private void cut(DirectedEdge e) {
+        int v = e.from(), w = e.to();
+        int x = nodeOf.remove(e);
+        lct.cut(v, x);
+        lct.cut(x, w);
+        lct.setWeight(x, Double.NEGATIVE_INFINITY);
+        edgeAt[x - G.V()] = null;
+        freeNodes[freeCount++] = x;
+        treeAdj[v].remove(e);
+        treeAdj[w].remove(e);
+        weight -= e.latency();
+    }
+
+    // check that the forest has the weight and size of one computed from scratch
+    private boolean check() {
+        KruskalMST mst = new KruskalMST(G);
+        int size = 0;
+        for (DirectedEdge e : mst.edges()) size++;
+        if (size != nodeOf.size()) {
+            System.err.println("Forest has " + nodeOf.size() + " edges, expected " + size);
+            return false;
+        }
+        if (Math.abs(mst.weight() - weight) > FLOATING_POINT_EPSILON * Math.max(1.0, Math.abs(weight))) {
+            System.err.printf("Weight of forest does not equal weight(): %f vs. %f\n", mst.weight(), weight);
+            return false;
+        }
+        return true;
+    }
+}
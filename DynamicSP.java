@@ -0,0 +1,300 @@
+import java.util.ArrayList;
+import java.util.Stack;
+
+/******************************************************************************
+ *
+ *  Shortest-paths tree from a single source that is kept up to date while
+ *  cables are added, cut or changed, in the style of Ramalingam and Reps.
+ *  Assumes all weights are nonnegative.
+ *
+ ******************************************************************************/
+
+/**
+ *  The {@code DynamicSP} class represents a data type for solving the
+ *  single-source shortest paths problem in an edge-weighted digraph
+ *  that changes over time.
+ *  <p>
+ *  The constructor computes the tree with Dijkstra's algorithm, exactly like
+ *  {@link DijkstraSP}. Afterwards all changes to the network must go through
+ *  {@code addEdge()}, {@code removeEdge()} and {@code updateEdge()}; they
+ *  modify the underlying {@link EdgeWeightedDigraph} and then repair only
+ *  the part of the tree that is affected:
+ *  <ul>
+ *  <li> a new or shorter edge {@code v->w} runs Dijkstra's algorithm starting
+ *       at {@code w}, touching only the vertices whose distance decreases;
+ *  <li> removing or lengthening an edge that is not on the tree changes nothing;
+ *  <li> removing or lengthening a tree edge {@code v->w} invalidates the subtree
+ *       below {@code w}. Those vertices are seeded with their best incoming edge
+ *       from the rest of the tree and re-settled by Dijkstra's algorithm.
+ *  </ul>
+ *  Each repair takes time proportional to <em>E'</em> log <em>V'</em>, where
+ *  <em>V'</em> is the number of vertices whose distance changes and <em>E'</em>
+ *  the number of edges incident on them.
+ *  Each call to {@code distTo(int)} and {@code hasPathTo(int)} takes constant time;
+ *  each call to {@code pathTo(int)} takes time proportional to the number of
+ *  edges in the shortest path returned.
+ *
+ *  @author Runyuan Yan
+ */
+public class DynamicSP {
+    private final EdgeWeightedDigraph G;
+    private final int s;
+    private double[] distTo;                // distTo[v] = distance  of shortest s->v path
+    private DirectedEdge[] edgeTo;          // edgeTo[v] = last edge on shortest s->v path
+    private Bag<DirectedEdge>[] radj;       // radj[w] = edges pointing to w
+    private boolean[] affected;             // vertices invalidated by the current repair
+    private IndexMinPQ<Double> pq;          // priority queue of vertices
+
+    /**
+     * Computes a shortest-paths tree from the source vertex {@code s} to every other
+     * vertex in the edge-weighted digraph {@code G}.
+     *
+     * @param  G the edge-weighted digraph
+     * @param  s the source vertex
+     * @throws IllegalArgumentException if an edge weight is negative
+     * @throws IllegalArgumentException unless {@code 0 <= s < V}
+     */
+    public DynamicSP(EdgeWeightedDigraph G, int s) {
+        this.G = G;
+        this.s = s;
+        distTo = new double[G.V()];
+        edgeTo = new DirectedEdge[G.V()];
+        affected = new boolean[G.V()];
+        radj = bags(G.V());
+        validateVertex(s);
+
+        for (int v = 0; v < G.V(); v++)
+            distTo[v] = Double.POSITIVE_INFINITY;
+        for (DirectedEdge e : G.edges()) {
+            if (e.latency() < 0)
+                throw new IllegalArgumentException("edge " + e + " has negative weight");
+            radj[e.to()].add(e);
+        }
+        distTo[s] = 0.0;
+
+        pq = new IndexMinPQ<Double>(G.V());
+        pq.insert(s, distTo[s]);
+        settle();
+
+        assert check();
+    }
+
+    // an array of V empty bags of edges
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static Bag<DirectedEdge>[] bags(int V) {
+        Bag<DirectedEdge>[] bags = (Bag<DirectedEdge>[]) new Bag[V];
+        for (int v = 0; v < V; v++)
+            bags[v] = new Bag<DirectedEdge>();
+        return bags;
+    }
+
+    /**
+     * Adds the edge {@code e} to the digraph and repairs the shortest-paths tree.
+     *
+     * @param  e the edge
+     * @throws IllegalArgumentException if the edge weight is negative
+     * @throws IllegalArgumentException unless both endpoints are between {@code 0} and {@code V-1}
+     */
+    public void addEdge(DirectedEdge e) {
+        if (e.latency() < 0)
+            throw new IllegalArgumentException("edge " + e + " has negative weight");
+        G.addEdge(e);
+        radj[e.to()].add(e);
+        if (distTo[e.from()] + e.latency() < distTo[e.to()]) {
+            relax(e);
+            settle();
+        }
+        assert check();
+    }
+
+    /**
+     * Removes the edge {@code e} from the digraph and repairs the shortest-paths tree.
+     *
+     * @param  e the edge, as it was passed to {@code addEdge()}
+     * @return {@code true} if the edge was in the digraph; {@code false} otherwise
+     * @throws IllegalArgumentException unless both endpoints are between {@code 0} and {@code V-1}
+     */
+    public boolean removeEdge(DirectedEdge e) {
+        if (!G.removeEdge(e)) return false;
+        int w = e.to();
+        radj[w].remove(e);
+        if (edgeTo[w] == e) repairSubtree(w);
+        assert check();
+        return true;
+    }
+
+    /**
+     * Replaces the edge {@code e} by {@code updated} and repairs the shortest-paths tree.
+     *
+     * @param  e the edge currently in the digraph
+     * @param  updated the edge that takes its place
+     * @return {@code true} if {@code e} was in the digraph and has been replaced;
+     *         {@code false} otherwise
+     * @throws IllegalArgumentException if the two edges have different endpoints
+     * @throws IllegalArgumentException if the weight of {@code updated} is negative
+     */
+    public boolean updateEdge(DirectedEdge e, DirectedEdge updated) {
+        if (updated.latency() < 0)
+            throw new IllegalArgumentException("edge " + updated + " has negative weight");
+        if (!G.updateEdge(e, updated)) return false;
+        int v = e.from(), w = e.to();
+        radj[w].remove(e);
+        radj[w].add(updated);
+
+        if (edgeTo[w] != e) {
+            // only a decrease can pull updated into the tree
+            if (distTo[v] + updated.latency() < distTo[w]) {
+                relax(updated);
+                settle();
+            }
+        }
+        else if (updated.latency() <= e.latency()) {
+            // the whole subtree below w gets closer by the same amount
+            edgeTo[w] = updated;
+            distTo[w] = distTo[v] + updated.latency();
+            pq.insert(w, distTo[w]);
+            settle();
+        }
+        else {
+            repairSubtree(w);
+        }
+        assert check();
+        return true;
+    }
+
+    // the tree edge into w is gone or got longer: invalidate the subtree
+    // rooted at w, seed it from the unaffected vertices and re-settle it
+    private void repairSubtree(int w) {
+        Stack<Integer> stack = new Stack<Integer>();
+        ArrayList<Integer> subtree = new ArrayList<Integer>();
+        affected[w] = true;
+        stack.push(w);
+        while (!stack.isEmpty()) {
+            int x = stack.pop();
+            subtree.add(x);
+            for (DirectedEdge f : G.adj(x)) {
+                int y = f.to();
+                if (edgeTo[y] == f && !affected[y]) {
+                    affected[y] = true;
+                    stack.push(y);
+                }
+            }
+        }
+
+        for (int x : subtree) {
+            distTo[x] = Double.POSITIVE_INFINITY;
+            edgeTo[x] = null;
+        }
+        for (int x : subtree) {
+            for (DirectedEdge f : radj[x]) {
+                int u = f.from();
+                if (affected[u]) continue;
+                if (distTo[u] + f.latency() < distTo[x]) {
+                    distTo[x] = distTo[u] + f.latency();
+                    edgeTo[x] = f;
+                }
+            }
+            if (edgeTo[x] != null) pq.insert(x, distTo[x]);
+        }
+        for (int x : subtree) affected[x] = false;
+        settle();
+    }
+
+    // run Dijkstra's algorithm until the priority queue is empty
+    private void settle() {
+        while (!pq.isEmpty()) {
+            int v = pq.delMin();
+            for (DirectedEdge e : G.adj(v))
+                relax(e);
+        }
+        pq.publishMetrics();
+    }
+
+    // relax edge e and update pq if changed
+    private void relax(DirectedEdge e) {
+        int v = e.from(), w = e.to();
+        if (distTo[w] > distTo[v] + e.latency()) {
+            distTo[w] = distTo[v] + e.latency();
+            edgeTo[w] = e;
+            if (pq.contains(w)) pq.decreaseKey(w, distTo[w]);
+            else                pq.insert(w, distTo[w]);
+        }
+    }
+
+    /**
+     * Returns the source vertex of the shortest-paths tree.
+     *
+     * @return the source vertex
+     */
+    public int source() {
+        return s;
+    }
+
+    /**
+     * Returns the length of a shortest path from the source vertex {@code s} to vertex {@code v}.
+     * @param  v the destination vertex
+     * @return the length of a shortest path from the source vertex {@code s} to vertex {@code v};
+     *         {@code Double.POSITIVE_INFINITY} if no such path
+     * @throws IllegalArgumentException unless {@code 0 <= v < V}
+     */
+    public double distTo(int v) {
+        validateVertex(v);
+        return distTo[v];
+    }
+
+    /**
+     * Returns true if there is a path from the source vertex {@code s} to vertex {@code v}.
+     *
+     * @param  v the destination vertex
+     * @return {@code true} if there is a path from the source vertex
+     *         {@code s} to vertex {@code v}; {@code false} otherwise
+     * @throws IllegalArgumentException unless {@code 0 <= v < V}
+     */
+    public boolean hasPathTo(int v) {
+        validateVertex(v);
+        return distTo[v] < Double.POSITIVE_INFINITY;
+    }
+
+    /**
+     * Returns a shortest path from the source vertex {@code s} to vertex {@code v},
+     * last edge first, in the same order as {@link DijkstraSP#pathTo}.
+     *
+     * @param  v the destination vertex
+     * @return a shortest path from the source vertex {@code s} to vertex {@code v}
+     *         as a list of edges, and {@code null} if no such path
+     * @throws IllegalArgumentException unless {@code 0 <= v < V}
+     */
+    public ArrayList<DirectedEdge> pathTo(int v) {
+        validateVertex(v);
+        if (!hasPathTo(v)) return null;
+        ArrayList<DirectedEdge> path = new ArrayList<DirectedEdge>();
+        for (DirectedEdge e = edgeTo[v]; e != null; e = edgeTo[e.from()]) {
+            path.add(e);
+        }
+        return path;
+    }
+
+    // check that the repaired tree has the distances of a tree built from scratch
+    private boolean check() {
+        DijkstraSP sp = new DijkstraSP(G, s);
+        for (int v = 0; v < G.V(); v++) {
+            if (sp.distTo(v) != distTo[v]) {
+                System.err.println("distTo[" + v + "] = " + distTo[v] + ", expected " + sp.distTo(v));
+                return false;
+            }
+            DirectedEdge e = edgeTo[v];
+            if (e != null && distTo[e.from()] + e.latency() != distTo[v]) {
+                System.err.println("edge " + e + " on shortest path not tight");
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // throw an IllegalArgumentException unless {@code 0 <= v < V}
+    private void validateVertex(int v) {
+        int V = distTo.length;
+        if (v < 0 || v >= V)
+            throw new IllegalArgumentException("vertex " + v + " is not between 0 and " + (V-1));
+    }
+}
@@ -0,0 +1,187 @@
+import java.util.function.Predicate;
+
+/******************************************************************************
+ *  Compilation:  javac EdgeFilter.java
+ *  Execution:    java EdgeFilter network.txt s t [-copper] [-bandwidth b] [-exclude v,w,...]
+ *                                               [-latency max]
+ *  Dependencies: CompactDigraph.java SearchWorkspace.java NetworkPath.java
+ *                EdgeWeightedDigraph.java NetworkSnapshot.java In.java StdOut.java
+ *
+ *  Precomputed edge and switch masks for shortest-path queries restricted
+ *  by material, bandwidth or excluded switches, without copying the network.
+ *
+ *  % java EdgeFilter network_data1.txt 0 1 -bandwidth 1000
+ *  unfiltered: 0->4->1 (69.57 ns, bandwidth 100)
+ *  filtered:   0->2->1 (100.00 ns, bandwidth 10000)
+ *
+ ******************************************************************************/
+
+/**
+ *  The {@code EdgeFilter} class selects the part of a network a query may
+ *  use, such as "only cables of at least 10 Gbps" or "copper only, avoiding
+ *  switch 7". The conditions are combined by and, each evaluated once over
+ *  the edges of a {@link CompactDigraph} when it is added, into a bit mask
+ *  of the edges and switches it rules out. {@code applyTo()} ors the masks
+ *  into those of a {@link SearchWorkspace}, whose searches already test one
+ *  bit per edge they relax; a filtered search therefore costs the same as an
+ *  unfiltered one and allocates nothing, and no restricted copy of the
+ *  network is built. Searching with a distance limit, as in
+ *  {@code run(s, t, limit)}, adds a latency constraint on top of the filter.
+ *  <p>
+ *  A filter is built once and can be applied to any number of workspaces
+ *  over the same snapshot, from any number of threads once it is built. It
+ *  takes 1 bit per edge and 1 bit per switch.
+ *
+ *  @author Runyuan Yan
+ */
+public class EdgeFilter {
+    private final CompactDigraph G;
+    private final long[] vertexMask;    // set bit = switch ruled out
+    private final long[] edgeMask;      // set bit = edge ruled out
+
+    /**
+     * Creates a filter over {@code G} that accepts every edge and switch.
+     *
+     * @param  G the network snapshot
+     */
+    public EdgeFilter(CompactDigraph G) {
+        this.G = G;
+        vertexMask = new long[(G.V() + 63) >>> 6];
+        edgeMask = new long[(G.E() + 63) >>> 6];
+    }
+
+    /**
+     * Rules out every optical cable.
+     *
+     * @return this filter
+     */
+    public EdgeFilter copperOnly() {
+        for (int e = 0; e < G.E(); e++) {
+            if (!G.isCopper(e)) reject(e);
+        }
+        return this;
+    }
+
+    /**
+     * Rules out every cable of less than {@code bandwidth}.
+     *
+     * @param  bandwidth the smallest bandwidth accepted
+     * @return this filter
+     */
+    public EdgeFilter minBandwidth(int bandwidth) {
+        for (int e = 0; e < G.E(); e++) {
+            if (G.bandwidth(e) < bandwidth) reject(e);
+        }
+        return this;
+    }
+
+    /**
+     * Rules out switch {@code v} and every edge into or out of it.
+     *
+     * @param  v the switch
+     * @return this filter
+     * @throws IllegalArgumentException unless {@code 0 <= v < V}
+     */
+    public EdgeFilter excludeSwitch(int v) {
+        validateVertex(v);
+        vertexMask[v >>> 6] |= 1L << v;
+        return this;
+    }
+
+    /**
+     * Rules out every edge for which {@code accept} is false. The predicate is
+     * evaluated once per edge, now, and not during searches.
+     *
+     * @param  accept the condition an edge must satisfy
+     * @return this filter
+     */
+    public EdgeFilter where(Predicate<DirectedEdge> accept) {
+        for (int e = 0; e < G.E(); e++) {
+            if (!accept.test(G.edge(e))) reject(e);
+        }
+        return this;
+    }
+
+    private void reject(int e) {
+        edgeMask[e >>> 6] |= 1L << e;
+    }
+
+    /**
+     * Returns true if the filter accepts edge {@code e} and both its endpoints.
+     *
+     * @param  e edge number
+     * @return {@code true} if {@code e} may be used
+     */
+    public boolean accepts(int e) {
+        int v = G.from(e), w = G.to(e);
+        return (edgeMask[e >>> 6] & (1L << e)) == 0
+            && (vertexMask[v >>> 6] & (1L << v)) == 0
+            && (vertexMask[w >>> 6] & (1L << w)) == 0;
+    }
+
+    /**
+     * Returns the number of edges the filter accepts.
+     *
+     * @return the number of edges accepted
+     */
+    public int edges() {
+        int count = 0;
+        for (int e = 0; e < G.E(); e++) {
+            if (accepts(e)) count++;
+        }
+        return count;
+    }
+
+    /**
+     * Rules out, in {@code ws}, the edges and switches this filter rules out,
+     * in addition to those already excluded there. The searches of {@code ws}
+     * then honour the filter until its masks are cleared.
+     *
+     * @param  ws the workspace
+     * @throws IllegalArgumentException if {@code ws} searches a different snapshot
+     */
+    public void applyTo(SearchWorkspace ws) {
+        if (ws.graph() != G) throw new IllegalArgumentException("workspace searches a different network");
+        ws.exclude(vertexMask, edgeMask);
+    }
+
+    // throw an IllegalArgumentException unless {@code 0 <= v < V}
+    private void validateVertex(int v) {
+        if (v < 0 || v >= G.V())
+            throw new IllegalArgumentException("vertex " + v + " is not between 0 and " + (G.V()-1));
+    }
+
+    /**
+     * Prints the lowest-latency path between two switches with and without
+     * the filter given on the command line.
+     *
+     * @param args the command-line arguments
+     */
+    public static void main(String[] args) {
+        EdgeWeightedDigraph network = NetworkSnapshot.isSnapshot(args[0])
+                                    ? NetworkSnapshot.read(args[0])
+                                    : new EdgeWeightedDigraph(new In(args[0]));
+        int s = Integer.parseInt(args[1]);
+        int t = Integer.parseInt(args[2]);
+        CompactDigraph G = new CompactDigraph(network);
+        EdgeFilter filter = new EdgeFilter(G);
+        double limit = Double.POSITIVE_INFINITY;
+        for (int i = 3; i < args.length; i++) {
+            if      (args[i].equals("-copper"))    filter.copperOnly();
+            else if (args[i].equals("-bandwidth")) filter.minBandwidth(Integer.parseInt(args[++i]));
+            else if (args[i].equals("-exclude")) {
+                for (String v : args[++i].split(","))
+                    filter.excludeSwitch(Integer.parseInt(v));
+            }
+            else if (args[i].equals("-latency"))   limit = Double.parseDouble(args[++i]);
+            else throw new IllegalArgumentException("unknown option " + args[i]);
+        }
+
+        SearchWorkspace ws = new SearchWorkspace(G);
+        ws.run(s, t);
+        StdOut.println("unfiltered: " + (ws.hasPathTo(t) ? new NetworkPath(G, s, ws.pathTo(t)) : "none"));
+        filter.applyTo(ws);
+        ws.run(s, t, limit);
+        StdOut.println("filtered:   " + (ws.isSettled(t) ? new NetworkPath(G, s, ws.pathTo(t)) : "none"));
+    }
+}
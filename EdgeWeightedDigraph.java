@@ -24,8 +24,8 @@ import java.util.Stack;
  *  This implementation uses an adjacency-lists representation, which 
  *  is a vertex-indexed array of {@link Bag} objects.
  *  All operations take constant time (in the worst case) except
- *  iterating over the edges incident from a given vertex, which takes
- *  time proportional to the number of such edges.
+ *  iterating over the edges incident from a given vertex and removing or
+ *  updating an edge, which take time proportional to the number of such edges.
  *  <p>
  *  For additional documentation,
  *  see <a href="https://algs4.cs.princeton.edu/44sp">Section 4.4</a> of
@@ -43,7 +43,8 @@ public class EdgeWeightedDigraph {
     private int E;
     private Bag<DirectedEdge>[] adj;
     private int[] indegree;             // indegree[v] = indegree of vertex v
-    private boolean CopperOnlyConnection = true;
+    private int opticalEdges;           // number of optical cables, the graph is copper-only when 0
+    private int version;                // number of modifications, for caches of derived structures
     /**
      * Initializes an empty edge-weighted graph with {@code V} vertices and 0 edges.
      *
@@ -61,8 +62,49 @@ public class EdgeWeightedDigraph {
         }
     }
 
-    
 
+    /**
+     * Initializes an edge-weighted digraph from a network description.
+     * The format is the number of vertices <em>V</em>,
+     * followed by one line per cable: its two endpoints, its material
+     * ({@code copper} or {@code optical}), its bandwidth and its length.
+     * Each cable is full duplex and is added as two directed edges.
+     *
+     * @param  in the input stream
+     * @throws IllegalArgumentException if {@code in} is {@code null}
+     * @throws IllegalArgumentException if the endpoints of any edge are not in prescribed range
+     * @throws IllegalArgumentException if the number of vertices is negative
+     */
+    public EdgeWeightedDigraph(In in) {
+        this(readVertexCount(in));
+        long start = NetworkMetrics.Timer.LOAD.start();
+        NetworkEvents.GraphLoad event = new NetworkEvents.GraphLoad();
+        event.begin();
+        while (!in.isEmpty()) {
+            int v = in.readInt();
+            int w = in.readInt();
+            String material = in.readString();
+            int bandWidth = in.readInt();
+            int length = in.readInt();
+            addEdge(new DirectedEdge(v, w, material, length, bandWidth));
+            addEdge(new DirectedEdge(w, v, material, length, bandWidth));
+        }
+        if (NetworkMetrics.ENABLED) {
+            NetworkMetrics.Counter.EDGES_LOADED.add(E);
+            NetworkMetrics.Timer.LOAD.stop(start);
+        }
+        if (event.shouldCommit()) {
+            event.format = "text";
+            event.vertices = V;
+            event.edges = E;
+            event.commit();
+        }
+    }
+
+    private static int readVertexCount(In in) {
+        if (in == null) throw new IllegalArgumentException("argument is null");
+        return in.readInt();
+    }
 
     /**
      * Returns the number of vertices in this edge-weighted graph.
@@ -95,17 +137,75 @@ public class EdgeWeightedDigraph {
      * @throws IllegalArgumentException unless both endpoints are between {@code 0} and {@code V-1}
      */
     public void addEdge(DirectedEdge e) {
-    	if(e.material().equals("optical"))
-    	{
-    		CopperOnlyConnection = false;
-    	}
         int v = e.from();
         int w = e.to();
         validateVertex(v);
         validateVertex(w);
+    	if(e.material().equals("optical"))
+    	{
+    		opticalEdges++;
+    	}
         adj[v].add(e);
         indegree[w]++;
         E++;
+        version++;
+    }
+
+    /**
+     * Removes the directed edge {@code e} from this edge-weighted digraph.
+     * The edge is matched by reference, so {@code e} must be the object that
+     * was passed to {@link #addEdge}. A duplex cable is stored as two directed
+     * edges and each direction has to be removed on its own.
+     * This method takes time proportional to the outdegree of {@code e.from()}.
+     *
+     * @param  e the edge
+     * @return {@code true} if the edge was in the digraph; {@code false} otherwise
+     * @throws IllegalArgumentException unless both endpoints are between {@code 0} and {@code V-1}
+     */
+    public boolean removeEdge(DirectedEdge e) {
+        int v = e.from();
+        int w = e.to();
+        validateVertex(v);
+        validateVertex(w);
+        if (!adj[v].remove(e)) return false;
+    	if(e.material().equals("optical"))
+    	{
+    		opticalEdges--;
+    	}
+        indegree[w]--;
+        E--;
+        version++;
+        return true;
+    }
+
+    /**
+     * Replaces the directed edge {@code e} by {@code updated}, for example after a
+     * cable was re-routed (new length) or re-provisioned (new bandwidth or material).
+     * Both edges must connect the same two vertices in the same direction.
+     *
+     * @param  e the edge currently in the digraph
+     * @param  updated the edge that takes its place
+     * @return {@code true} if {@code e} was in the digraph and has been replaced;
+     *         {@code false} otherwise, in which case the digraph is unchanged
+     * @throws IllegalArgumentException if the two edges have different endpoints
+     */
+    public boolean updateEdge(DirectedEdge e, DirectedEdge updated) {
+        if (e.from() != updated.from() || e.to() != updated.to())
+            throw new IllegalArgumentException("edge " + updated + " does not have the endpoints of " + e);
+        if (!removeEdge(e)) return false;
+        addEdge(updated);
+        return true;
+    }
+
+    /**
+     * Returns the number of times edges have been added or removed. Structures
+     * derived from this digraph can cache their result and rebuild it when the
+     * version changes.
+     *
+     * @return the modification count
+     */
+    public int version() {
+        return version;
     }
 
     /**
@@ -161,34 +261,55 @@ public class EdgeWeightedDigraph {
         }
         return list;
     }
+    /**
+     * Returns true if every cable in the network is copper.
+     *
+     * @return {@code true} if the network has no optical cables; {@code false} otherwise
+     */
+    public boolean isCopperOnly() {
+        return opticalEdges == 0;
+    }
+
+    /**
+     * Returns true if every vertex has at least one copper cable, which is
+     * the test used for connectivity considering only copper links.
+     *
+     * @return {@code true} if every vertex has a copper cable; {@code false} otherwise
+     */
+    public boolean isCopperConnected() {
+        NetworkEvents.CopperConnectivity event = new NetworkEvents.CopperConnectivity();
+        event.begin();
+        boolean connected = true;
+  		for(int i = 0; i < V && connected; i++){ //Iterate through every vertex and check to make sure it has at least one copper connection
+  			boolean hasCopperConnection = false;
+  			for(DirectedEdge e :adj[i])
+  			{
+  				if(e.material().equals("copper"))//There exists a copper wire from this vertex
+  				{
+  					hasCopperConnection = true;
+  					break;
+  				}
+  			}
+  			if(!hasCopperConnection){ //If this vertex does not have a single copper connection, then the graph cannot be copper connected
+  				connected = false;
+  			}
+  		}
+        if (event.shouldCommit()) {
+            event.vertices = V;
+            event.connected = connected;
+            event.commit();
+        }
+  		return connected;
+    }
+
     /*checks if the network is copper only
    */
   //Find out whether graph is connected with only copper, connected considering only copper, or neither
   	public void determineCopperConnectivity(){
-  		if(CopperOnlyConnection){ //If the graph consists only copper wires
+  		if(isCopperOnly()){ //If the graph consists only copper wires
   			System.out.println("-- This graph consists of only copper wires,it is copper-connected.");
   		} else{
-  			boolean connectedWithCopper = true; //Assume the graph is connected with only copper
-  			
-  			for(int i = 0; i < V; i++){ //Iterate through every vertex and check to make sure it has at least one copper connection
-  				boolean hasCopperConnection = false;
-  				for(DirectedEdge e :adj[i])
-  				{
-  					if(e.material().equals("copper"))//There exists a copper wire from this vertex
-  					{
-  						hasCopperConnection = true;
-  						break;
-  					}
-  				}
-
-
-  				if(!hasCopperConnection){ //If this vertex does not have a single copper connection, then the graph cannot be copper connected
-  					connectedWithCopper = false;
-  					break;
-  				}
-  			}
-
-  			if(connectedWithCopper)	System.out.println("-- This graph has optical wires but can be connected with only copper wires. ");
+  			if(isCopperConnected())	System.out.println("-- This graph has optical wires but can be connected with only copper wires. ");
   			else System.out.println("-- This graph is not copper-only and cannot be connected with only copper wires.");
   		}
   	}
@@ -208,20 +329,41 @@ public class EdgeWeightedDigraph {
   		System.out.printf("\nThe average latency of this spanning tree is %.3f nanoseconds.\n", kmst.weight()/treeSize);
   		
   	}
+    /**
+     * Returns a vertex that is cut off from the network when two other
+     * vertices fail, which is any vertex with fewer than 3 incident edges.
+     *
+     * @return such a vertex, or {@code -1} if the network survives the
+     *         failure of any two vertices
+     */
+    public int failurePoint() {
+        NetworkEvents.FailureAnalysis event = new NetworkEvents.FailureAnalysis();
+        event.begin();
+        int point = -1;
+  		for(int i = 0; i < V && point < 0; i++)
+  		{
+  			if(adj[i].size() < 3) point = i;
+  		}
+        if (event.shouldCommit()) {
+            event.vertices = V;
+            event.failurePoint = point;
+            event.commit();
+        }
+  		return point;
+    }
+
   	/*Determine if any two failures of points would disconnect the graph
   	 * If any vertex has less than 3 incident edges, it won't survive the failure of two disconnected edges
   	 */
   	public void findFailurePoints()
   	{
-  		for(int i = 0; i < V; i++)
+  		int i = failurePoint();
+  		if(i >= 0)
   		{
-  			if(adj[i].size() < 3)
-  			{
-  				System.out.println("\n The network will be disconnected if "); 
-  				for(DirectedEdge e: adj[i]) {System.out.println(e);} 
-  				System.out.println("both fail");
-  				return;
-  			}
+  			System.out.println("\n The network will be disconnected if "); 
+  			for(DirectedEdge e: adj[i]) {System.out.println(e);} 
+  			System.out.println("both fail");
+  			return;
   		}
   		System.out.println("\n The network will survive any failure of any two points");
   		
@@ -0,0 +1,433 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/******************************************************************************
+ *  Compilation:  javac FailureSimulator.java
+ *  Execution:    java FailureSimulator network.txt scenarios switches cables pairs [-seed n]
+ *  Dependencies: CompactDigraph.java SearchWorkspace.java EdgeWeightedDigraph.java
+ *                NetworkSnapshot.java In.java StdOut.java
+ *
+ *  Evaluates batches of what-if outage scenarios in parallel: for each
+ *  scenario, the number of partitions and the latency of key switch pairs.
+ *  The command line runs random scenarios and reports the throughput.
+ *
+ *  % java FailureSimulator network_data2.txt 500 5 12 20
+ *  500 scenarios in 13.3 ms (37709 scenarios/s)
+ *  partitions: mean 3.48, max 6
+ *  ...
+ *
+ ******************************************************************************/
+
+/**
+ *  The {@code FailureSimulator} class evaluates maintenance and outage
+ *  scenarios. A {@link Scenario} names the switches and cables to take down;
+ *  for each one the simulator counts the partitions of the remaining network
+ *  and recomputes the latency of a fixed list of key switch pairs, which it
+ *  compares with the latency when nothing has failed.
+ *  <p>
+ *  The network is a shared {@link CompactDigraph} and a scenario is a pair of
+ *  bit masks over it, set in the {@link SearchWorkspace} of the thread that
+ *  evaluates it, so no scenario copies the network. Scenarios are split
+ *  recursively across a work-stealing {@link ForkJoinPool}; each worker keeps
+ *  one workspace for all the scenarios it runs. A key pair whose failure-free
+ *  shortest path survives a scenario intact keeps its latency (removing
+ *  cables never shortens a path), so only the pairs whose path is hit are
+ *  searched again.
+ *  <p>
+ *  {@code run()} returns a {@link Report} with per-scenario results in the
+ *  order the scenarios were given, aggregates over the batch, and the
+ *  throughput in scenarios per second.
+ *
+ *  @author Runyuan Yan
+ */
+public class FailureSimulator {
+    private final CompactDigraph G;
+    private final int[][] pairs;                // pairs[i] = {source, target}
+    private final double[] baseline;            // baseline[i] = failure-free latency of pair i
+    private final int[][] baselinePath;         // edges of the failure-free path of pair i
+    private final ThreadLocal<SearchWorkspace> workspace;
+
+    /**
+     * A set of switches and cables taken out of service together.
+     */
+    public static class Scenario {
+        private final String name;
+        private final int[] switches;
+        private final int[] cables;
+
+        /**
+         * Creates a scenario.
+         *
+         * @param  name the name of the scenario
+         * @param  switches the failed switches
+         * @param  cables the failed cables, as edge numbers of the {@link CompactDigraph};
+         *         both directions of each cable fail
+         * @throws IllegalArgumentException if an argument is {@code null}
+         */
+        public Scenario(String name, int[] switches, int[] cables) {
+            if (name == null || switches == null || cables == null)
+                throw new IllegalArgumentException("argument is null");
+            this.name = name;
+            this.switches = switches.clone();
+            this.cables = cables.clone();
+        }
+
+        /**
+         * Returns the name of this scenario.
+         *
+         * @return the name
+         */
+        public String name() {
+            return name;
+        }
+
+        private void apply(SearchWorkspace ws) {
+            for (int v : switches) ws.excludeVertex(v);
+            for (int e : cables)   ws.excludeCable(e);
+        }
+    }
+
+    /**
+     * Creates a simulator for the network {@code G} and the key pairs
+     * {@code pairs}, and computes the failure-free latency of each pair.
+     *
+     * @param  G the network snapshot
+     * @param  pairs the key pairs, each an array {@code {source, target}}
+     * @throws IllegalArgumentException if a pair is not two vertices of {@code G}
+     */
+    public FailureSimulator(CompactDigraph G, int[][] pairs) {
+        this.G = G;
+        this.pairs = new int[pairs.length][];
+        for (int i = 0; i < pairs.length; i++) {
+            if (pairs[i].length != 2)
+                throw new IllegalArgumentException("pair " + i + " is not a source and a target");
+            validateVertex(pairs[i][0]);
+            validateVertex(pairs[i][1]);
+            this.pairs[i] = pairs[i].clone();
+        }
+        workspace = ThreadLocal.withInitial(() -> new SearchWorkspace(G));
+
+        baseline = new double[pairs.length];
+        baselinePath = new int[pairs.length][];
+        SearchWorkspace ws = new SearchWorkspace(G);
+        for (int i = 0; i < pairs.length; i++) {
+            ws.run(this.pairs[i][0], this.pairs[i][1]);
+            baseline[i] = ws.distTo(this.pairs[i][1]);
+            baselinePath[i] = ws.pathTo(this.pairs[i][1]);
+        }
+    }
+
+    /**
+     * Returns the failure-free latency of key pair {@code i}.
+     *
+     * @param  i the index of the pair
+     * @return the latency; {@code Double.POSITIVE_INFINITY} if the pair is not connected
+     */
+    public double baseline(int i) {
+        return baseline[i];
+    }
+
+    /**
+     * Evaluates the scenarios on the common {@link ForkJoinPool}.
+     *
+     * @param  scenarios the scenarios
+     * @return the results
+     * @throws IllegalArgumentException if a scenario names a switch or cable not in the network
+     */
+    public Report run(List<Scenario> scenarios) {
+        return run(scenarios, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Evaluates the scenarios on {@code pool}.
+     *
+     * @param  scenarios the scenarios
+     * @param  pool the pool to run them on
+     * @return the results
+     * @throws IllegalArgumentException if a scenario names a switch or cable not in the network
+     */
+    public Report run(List<Scenario> scenarios, ForkJoinPool pool) {
+        for (Scenario scenario : scenarios) {
+            for (int v : scenario.switches) {
+                if (v < 0 || v >= G.V())
+                    throw new IllegalArgumentException("scenario " + scenario.name + ": switch " + v + " is not between 0 and " + (G.V()-1));
+            }
+            for (int e : scenario.cables) {
+                if (e < 0 || e >= G.E())
+                    throw new IllegalArgumentException("scenario " + scenario.name + ": cable " + e + " is not between 0 and " + (G.E()-1));
+            }
+        }
+        Report report = new Report(scenarios);
+        long start = System.nanoTime();
+        pool.invoke(new Batch(report, 0, scenarios.size()));
+        report.nanos = System.nanoTime() - start;
+        return report;
+    }
+
+    // evaluates scenarios lo .. hi-1, splitting the range in half while it is larger than one
+    private class Batch extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+        private final Report report;
+        private final int lo, hi;
+
+        Batch(Report report, int lo, int hi) {
+            this.report = report;
+            this.lo = lo;
+            this.hi = hi;
+        }
+
+        @Override
+        protected void compute() {
+            if (hi - lo > 1) {
+                int mid = (lo + hi) >>> 1;
+                invokeAll(new Batch(report, lo, mid), new Batch(report, mid, hi));
+                return;
+            }
+            for (int i = lo; i < hi; i++)
+                evaluate(report.scenarios.get(i), i, report);
+        }
+    }
+
+    private void evaluate(Scenario scenario, int index, Report report) {
+        SearchWorkspace ws = workspace.get();
+        ws.clearMasks();
+        scenario.apply(ws);
+        report.partitions[index] = ws.components();
+        double[] latency = report.latency[index];
+        for (int i = 0; i < pairs.length; i++) {
+            int s = pairs[i][0], t = pairs[i][1];
+            if (!ws.connected(s, t)) {
+                latency[i] = Double.POSITIVE_INFINITY;
+            }
+            else if (intact(ws, baselinePath[i])) {
+                latency[i] = baseline[i];
+            }
+            else {
+                ws.run(s, t);
+                latency[i] = ws.distTo(t);
+            }
+        }
+    }
+
+    // is every edge of the path still in service?
+    private static boolean intact(SearchWorkspace ws, int[] path) {
+        if (path == null) return false;
+        for (int e : path)
+            if (ws.isExcludedEdge(e)) return false;
+        return true;
+    }
+
+    /**
+     * The results of a batch of scenarios.
+     */
+    public class Report {
+        private final List<Scenario> scenarios;
+        private final int[] partitions;       // partitions[i] = connected components in scenario i
+        private final double[][] latency;     // latency[i][p] = latency of key pair p in scenario i
+        private long nanos;
+
+        private Report(List<Scenario> scenarios) {
+            this.scenarios = new ArrayList<Scenario>(scenarios);
+            partitions = new int[scenarios.size()];
+            latency = new double[scenarios.size()][pairs.length];
+        }
+
+        /**
+         * Returns the number of scenarios evaluated.
+         *
+         * @return the number of scenarios
+         */
+        public int scenarios() {
+            return partitions.length;
+        }
+
+        /**
+         * Returns the number of connected components left in scenario {@code i},
+         * not counting failed switches.
+         *
+         * @param  i the index of the scenario
+         * @return the number of partitions
+         */
+        public int partitions(int i) {
+            return partitions[i];
+        }
+
+        /**
+         * Returns the latency of key pair {@code p} in scenario {@code i}.
+         *
+         * @param  i the index of the scenario
+         * @param  p the index of the key pair
+         * @return the latency; {@code Double.POSITIVE_INFINITY} if the pair is disconnected
+         */
+        public double latency(int i, int p) {
+            return latency[i][p];
+        }
+
+        /**
+         * Returns the increase in latency of key pair {@code p} in scenario {@code i}.
+         *
+         * @param  i the index of the scenario
+         * @param  p the index of the key pair
+         * @return the latency minus the failure-free latency;
+         *         {@code Double.POSITIVE_INFINITY} if the pair is disconnected
+         */
+        public double latencyDelta(int i, int p) {
+            if (latency[i][p] == Double.POSITIVE_INFINITY) return Double.POSITIVE_INFINITY;
+            return latency[i][p] - baseline[p];
+        }
+
+        /**
+         * Returns the number of scenarios that disconnect key pair {@code p}.
+         *
+         * @param  p the index of the key pair
+         * @return the number of scenarios
+         */
+        public int disconnections(int p) {
+            int count = 0;
+            for (double[] row : latency)
+                if (row[p] == Double.POSITIVE_INFINITY && baseline[p] < Double.POSITIVE_INFINITY) count++;
+            return count;
+        }
+
+        /**
+         * Returns the mean increase in latency of key pair {@code p} over the
+         * scenarios that leave it connected.
+         *
+         * @param  p the index of the key pair
+         * @return the mean latency delta; 0 if every scenario disconnects the pair
+         */
+        public double meanLatencyDelta(int p) {
+            double sum = 0.0;
+            int n = 0;
+            for (int i = 0; i < latency.length; i++) {
+                double d = latencyDelta(i, p);
+                if (d == Double.POSITIVE_INFINITY) continue;
+                sum += d;
+                n++;
+            }
+            return n == 0 ? 0.0 : sum / n;
+        }
+
+        /**
+         * Returns the largest increase in latency of key pair {@code p} over the
+         * scenarios that leave it connected.
+         *
+         * @param  p the index of the key pair
+         * @return the maximum latency delta; 0 if every scenario disconnects the pair
+         */
+        public double maxLatencyDelta(int p) {
+            double max = 0.0;
+            for (int i = 0; i < latency.length; i++) {
+                double d = latencyDelta(i, p);
+                if (d != Double.POSITIVE_INFINITY) max = Math.max(max, d);
+            }
+            return max;
+        }
+
+        /**
+         * Returns the mean number of partitions over the scenarios.
+         *
+         * @return the mean number of partitions
+         */
+        public double meanPartitions() {
+            long sum = 0;
+            for (int p : partitions) sum += p;
+            return partitions.length == 0 ? 0.0 : (double) sum / partitions.length;
+        }
+
+        /**
+         * Returns the largest number of partitions in any scenario.
+         *
+         * @return the maximum number of partitions
+         */
+        public int maxPartitions() {
+            int max = 0;
+            for (int p : partitions) max = Math.max(max, p);
+            return max;
+        }
+
+        /**
+         * Returns the time taken to evaluate the batch, in nanoseconds.
+         *
+         * @return the elapsed time
+         */
+        public long nanos() {
+            return nanos;
+        }
+
+        /**
+         * Returns the throughput of the batch.
+         *
+         * @return scenarios per second
+         */
+        public double scenariosPerSecond() {
+            return nanos == 0 ? 0.0 : partitions.length * 1e9 / nanos;
+        }
+
+        /**
+         * Returns a summary: throughput, partitions, and per key pair the
+         * failure-free latency, disconnections and latency deltas.
+         *
+         * @return the summary
+         */
+        public String toString() {
+            StringBuilder s = new StringBuilder();
+            s.append(String.format("%d scenarios in %.1f ms (%.0f scenarios/s)%n",
+                                   scenarios(), nanos / 1e6, scenariosPerSecond()));
+            s.append(String.format("partitions: mean %.2f, max %d%n", meanPartitions(), maxPartitions()));
+            for (int p = 0; p < pairs.length; p++) {
+                s.append(String.format("%d->%d baseline %.2f ns, disconnected %d, delta mean %.2f ns, max %.2f ns%n",
+                                       pairs[p][0], pairs[p][1], baseline[p], disconnections(p),
+                                       meanLatencyDelta(p), maxLatencyDelta(p)));
+            }
+            return s.toString();
+        }
+    }
+
+    // throw an IllegalArgumentException unless {@code 0 <= v < V}
+    private void validateVertex(int v) {
+        if (v < 0 || v >= G.V())
+            throw new IllegalArgumentException("vertex " + v + " is not between 0 and " + (G.V()-1));
+    }
+
+    /**
+     * Runs random scenarios against a network and prints the report.
+     *
+     * @param args the command-line arguments
+     */
+    public static void main(String[] args) {
+        if (args.length < 5) {
+            System.err.println("usage: java FailureSimulator network.txt scenarios switches cables pairs [-seed n]");
+            return;
+        }
+        EdgeWeightedDigraph network = NetworkSnapshot.isSnapshot(args[0])
+                                    ? NetworkSnapshot.read(args[0])
+                                    : new EdgeWeightedDigraph(new In(args[0]));
+        int count = Integer.parseInt(args[1]);
+        int switches = Integer.parseInt(args[2]);
+        int cables = Integer.parseInt(args[3]);
+        int pairCount = Integer.parseInt(args[4]);
+        long seed = args.length > 6 && args[5].equals("-seed") ? Long.parseLong(args[6]) : 1501;
+
+        CompactDigraph G = new CompactDigraph(network);
+        SplittableRandom random = new SplittableRandom(seed);
+        int[][] pairs = new int[pairCount][];
+        for (int i = 0; i < pairCount; i++)
+            pairs[i] = new int[] { random.nextInt(G.V()), random.nextInt(G.V()) };
+        List<Scenario> scenarios = new ArrayList<Scenario>(count);
+        for (int i = 0; i < count; i++) {
+            int[] down = new int[switches];
+            for (int j = 0; j < switches; j++) down[j] = random.nextInt(G.V());
+            int[] cut = new int[G.E() == 0 ? 0 : cables];
+            for (int j = 0; j < cut.length; j++) cut[j] = random.nextInt(G.E());
+            scenarios.add(new Scenario("random-" + i, down, cut));
+        }
+
+        FailureSimulator simulator = new FailureSimulator(G, pairs);
+        simulator.run(scenarios);                       // warm up
+        StdOut.print(simulator.run(scenarios));
+    }
+}
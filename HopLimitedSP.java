@@ -0,0 +1,340 @@
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/******************************************************************************
+ *  Compilation:  javac HopLimitedSP.java
+ *  Execution:    java HopLimitedSP network.txt s t maxHops
+ *  Dependencies: CompactDigraph.java NetworkPath.java EdgeWeightedDigraph.java
+ *                NetworkSnapshot.java In.java StdOut.java
+ *
+ *  Lowest-latency paths from one switch under every hop limit up to a
+ *  maximum, with a layered Bellman-Ford algorithm.
+ *
+ *  % java HopLimitedSP network_data1.txt 0 1 3
+ *  2 rounds in 9.0 ms
+ *  at most 1 hop: no path
+ *  at most 2 hops: 0->4->1 (69.57 ns, bandwidth 100)
+ *  at most 3 hops: 0->4->1 (69.57 ns, bandwidth 100)
+ *
+ ******************************************************************************/
+
+/**
+ *  The {@code HopLimitedSP} class computes, for a source <em>s</em> and a
+ *  maximum <em>N</em>, the lowest latency from <em>s</em> to every switch
+ *  over paths of at most <em>k</em> edges, for every <em>k</em> from 0 to
+ *  <em>N</em>, and the paths themselves. {@link DijkstraSP} gives only the
+ *  limit as <em>k</em> grows, which may take more hops than a protocol
+ *  allows.
+ *  <p>
+ *  Round <em>k</em> of the Bellman-Ford algorithm computes the distances
+ *  within <em>k</em> hops from those within <em>k</em> - 1. They live in two
+ *  arrays that swap roles every round, and each switch pulls the round
+ *  before through its incoming edges and writes only its own entry, so the
+ *  switches of a round are split across a {@link ForkJoinPool} without
+ *  locks or atomics, and the result does not depend on the schedule. An
+ *  edge is only pulled if its source improved in the round before. A switch
+ *  keeps its distance on a tie, so of equally fast paths it keeps the one
+ *  with the fewest hops, and among edges that improve it equally it takes
+ *  the lowest numbered. The rounds stop at <em>N</em>, or as soon as a round
+ *  improves nothing, as none after it can.
+ *  <p>
+ *  After each round, the switches that improved are recorded with their
+ *  distance and edge. A switch improves only a few times, so the records
+ *  take little space however large <em>N</em> is. A lookup for budget
+ *  <em>k</em> finds, by binary search, the last improvement within
+ *  <em>k</em> hops, and a path follows the records back round by round.
+ *
+ *  @author Runyuan Yan
+ */
+public class HopLimitedSP {
+    private static final int GRAIN = 1024;          // switches per leaf task
+
+    private final CompactDigraph G;
+    private final int s;
+    private final int maxHops;
+    private int rounds;
+
+    // improvements of v are at recStart[v] .. recStart[v+1]-1, by increasing round
+    private final int[] recStart;
+    private final int[] recRound;
+    private final double[] recDist;
+    private final int[] recEdge;
+
+    /**
+     * Computes the lowest-latency paths from {@code s} in {@code G} within
+     * every hop limit up to {@code maxHops}, on the common {@link ForkJoinPool}.
+     *
+     * @param  G the network snapshot
+     * @param  s the source
+     * @param  maxHops the largest hop limit
+     * @throws IllegalArgumentException unless {@code 0 <= s < V}
+     * @throws IllegalArgumentException if {@code maxHops} is negative
+     */
+    public HopLimitedSP(CompactDigraph G, int s, int maxHops) {
+        this(G, s, maxHops, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Computes the lowest-latency paths from {@code s} in {@code G} within
+     * every hop limit up to {@code maxHops}, on {@code pool}.
+     *
+     * @param  G the network snapshot
+     * @param  s the source
+     * @param  maxHops the largest hop limit
+     * @param  pool the pool to run the rounds on
+     * @throws IllegalArgumentException unless {@code 0 <= s < V}
+     * @throws IllegalArgumentException if {@code maxHops} is negative
+     */
+    public HopLimitedSP(CompactDigraph G, int s, int maxHops, ForkJoinPool pool) {
+        this.G = G;
+        this.s = s;
+        this.maxHops = maxHops;
+        int V = G.V();
+        validateVertex(s);
+        if (maxHops < 0) throw new IllegalArgumentException("hop limit must be nonnegative");
+
+        Round round = new Round(V);
+        Arrays.fill(round.prev, Double.POSITIVE_INFINITY);
+        round.prev[s] = 0.0;
+        round.prevChanged[s] = true;
+
+        // the improvements, round by round
+        int[] vertex = new int[64];
+        int[] at = new int[64];
+        double[] dist = new double[64];
+        int[] edge = new int[64];
+        vertex[0] = s;
+        dist[0] = 0.0;
+        edge[0] = -1;
+        int records = 1;
+
+        for (int k = 1; k <= maxHops; k++) {
+            pool.invoke(round.new Pull(0, V));
+            int improved = 0;
+            for (int v = 0; v < V; v++) {
+                if (!round.changed[v]) continue;
+                if (records == vertex.length) {
+                    int n = 2 * records;
+                    vertex = Arrays.copyOf(vertex, n);
+                    at = Arrays.copyOf(at, n);
+                    dist = Arrays.copyOf(dist, n);
+                    edge = Arrays.copyOf(edge, n);
+                }
+                vertex[records] = v;
+                at[records] = k;
+                dist[records] = round.cur[v];
+                edge[records] = round.via[v];
+                records++;
+                improved++;
+            }
+            if (improved == 0) break;
+            rounds = k;
+            round.swap();
+        }
+
+        // by switch, keeping the order of the rounds
+        recStart = new int[V + 1];
+        for (int i = 0; i < records; i++) recStart[vertex[i] + 1]++;
+        for (int v = 0; v < V; v++) recStart[v + 1] += recStart[v];
+        recRound = new int[records];
+        recDist = new double[records];
+        recEdge = new int[records];
+        int[] next = Arrays.copyOf(recStart, V);
+        for (int i = 0; i < records; i++) {
+            int j = next[vertex[i]]++;
+            recRound[j] = at[i];
+            recDist[j] = dist[i];
+            recEdge[j] = edge[i];
+        }
+    }
+
+    // the double-buffered state of the rounds
+    private class Round {
+        double[] prev, cur;                 // distances within k-1 and k hops
+        boolean[] prevChanged, changed;     // did the switch improve in round k-1, k?
+        final int[] via;                    // via[v] = edge of the improvement in round k
+
+        Round(int V) {
+            prev = new double[V];
+            cur = new double[V];
+            prevChanged = new boolean[V];
+            changed = new boolean[V];
+            via = new int[V];
+        }
+
+        void swap() {
+            double[] d = prev;
+            prev = cur;
+            cur = d;
+            boolean[] c = prevChanged;
+            prevChanged = changed;
+            changed = c;
+        }
+
+        // round k for switches lo..hi-1
+        private class Pull extends RecursiveAction {
+            private static final long serialVersionUID = 1L;
+            private final int lo, hi;
+
+            Pull(int lo, int hi) {
+                this.lo = lo;
+                this.hi = hi;
+            }
+
+            @Override
+            protected void compute() {
+                if (hi - lo > GRAIN) {
+                    int mid = (lo + hi) >>> 1;
+                    invokeAll(new Pull(lo, mid), new Pull(mid, hi));
+                    return;
+                }
+                for (int v = lo; v < hi; v++) {
+                    double best = prev[v];
+                    int edge = -1;
+                    for (int i = G.rbegin(v); i < G.rend(v); i++) {
+                        int e = G.redge(i);
+                        int u = G.from(e);
+                        if (!prevChanged[u]) continue;
+                        double d = prev[u] + G.latency(e);
+                        if (d < best || d == best && edge >= 0 && e < edge) {
+                            best = d;
+                            edge = e;
+                        }
+                    }
+                    cur[v] = best;
+                    changed[v] = edge >= 0;
+                    if (edge >= 0) via[v] = edge;
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns the largest hop limit computed.
+     *
+     * @return the largest hop limit
+     */
+    public int maxHops() {
+        return maxHops;
+    }
+
+    /**
+     * Returns the number of rounds that improved a distance; no limit above
+     * it changes anything.
+     *
+     * @return the number of rounds
+     */
+    public int rounds() {
+        return rounds;
+    }
+
+    /**
+     * Returns the lowest latency from the source to {@code v} over paths of
+     * at most {@code hops} edges.
+     *
+     * @param  v the destination
+     * @param  hops the hop limit
+     * @return the latency; {@code Double.POSITIVE_INFINITY} if no such path exists
+     * @throws IllegalArgumentException unless {@code 0 <= v < V} and {@code 0 <= hops <= maxHops()}
+     */
+    public double distTo(int v, int hops) {
+        int i = record(v, hops);
+        return i >= 0 ? recDist[i] : Double.POSITIVE_INFINITY;
+    }
+
+    /**
+     * Is there a path from the source to {@code v} of at most {@code hops} edges?
+     *
+     * @param  v the destination
+     * @param  hops the hop limit
+     * @return {@code true} if there is, {@code false} otherwise
+     * @throws IllegalArgumentException unless {@code 0 <= v < V} and {@code 0 <= hops <= maxHops()}
+     */
+    public boolean hasPathTo(int v, int hops) {
+        return record(v, hops) >= 0;
+    }
+
+    /**
+     * Returns a lowest-latency path from the source to {@code v} of at most
+     * {@code hops} edges, with the fewest edges among the fastest.
+     *
+     * @param  v the destination
+     * @param  hops the hop limit
+     * @return the path; {@code null} if no such path exists
+     * @throws IllegalArgumentException unless {@code 0 <= v < V} and {@code 0 <= hops <= maxHops()}
+     */
+    public NetworkPath pathTo(int v, int hops) {
+        int i = record(v, hops);
+        if (i < 0) return null;
+        int[] edges = new int[recRound[i]];
+        int n = 0;
+        while (recEdge[i] >= 0) {
+            edges[n++] = recEdge[i];
+            i = record(G.from(recEdge[i]), recRound[i] - 1);
+        }
+        int[] path = new int[n];
+        for (int j = 0; j < n; j++) path[j] = edges[n - 1 - j];
+        return new NetworkPath(G, s, path);
+    }
+
+    /**
+     * Returns the hop limits at which the latency to {@code v} improves: the
+     * fewest hops that reach it, and every limit at which a faster path appears.
+     *
+     * @param  v the destination
+     * @return the hop limits, increasing; none if {@code v} is unreachable within {@code maxHops()}
+     * @throws IllegalArgumentException unless {@code 0 <= v < V}
+     */
+    public int[] improvements(int v) {
+        validateVertex(v);
+        return Arrays.copyOfRange(recRound, recStart[v], recStart[v + 1]);
+    }
+
+    // the last improvement of v within hops, or -1
+    private int record(int v, int hops) {
+        validateVertex(v);
+        if (hops < 0 || hops > maxHops)
+            throw new IllegalArgumentException("hop limit " + hops + " is not between 0 and " + maxHops);
+        int lo = recStart[v], hi = recStart[v + 1] - 1;
+        int found = -1;
+        while (lo <= hi) {
+            int mid = (lo + hi) >>> 1;
+            if (recRound[mid] <= hops) {
+                found = mid;
+                lo = mid + 1;
+            }
+            else hi = mid - 1;
+        }
+        return found;
+    }
+
+    // throw an IllegalArgumentException unless {@code 0 <= v < V}
+    private void validateVertex(int v) {
+        if (v < 0 || v >= G.V())
+            throw new IllegalArgumentException("vertex " + v + " is not between 0 and " + (G.V()-1));
+    }
+
+    /**
+     * Prints the lowest-latency path between two switches under every hop
+     * limit up to a maximum.
+     *
+     * @param args the command-line arguments
+     */
+    public static void main(String[] args) {
+        EdgeWeightedDigraph network = NetworkSnapshot.isSnapshot(args[0])
+                                    ? NetworkSnapshot.read(args[0])
+                                    : new EdgeWeightedDigraph(new In(args[0]));
+        int s = Integer.parseInt(args[1]);
+        int t = Integer.parseInt(args[2]);
+        int maxHops = Integer.parseInt(args[3]);
+        CompactDigraph G = new CompactDigraph(network);
+        long start = System.nanoTime();
+        HopLimitedSP sp = new HopLimitedSP(G, s, maxHops);
+        StdOut.printf("%d rounds in %.1f ms%n", sp.rounds(), (System.nanoTime() - start) / 1e6);
+        for (int k = 1; k <= maxHops; k++) {
+            NetworkPath path = sp.pathTo(t, k);
+            StdOut.printf("at most %d hop%s: %s%n", k, k == 1 ? "" : "s", path == null ? "no path" : path);
+        }
+    }
+}
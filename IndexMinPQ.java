@@ -45,6 +45,7 @@ public class IndexMinPQ<Key extends Comparable<Key>> implements Iterable<Integer
     private int[] pq;        // binary heap using 1-based indexing
     private int[] qp;        // inverse of pq - qp[pq[i]] = pq[qp[i]] = i
     private Key[] keys;      // keys[i] = priority of i
+    private long inserts, decreaseKeys, deleteMins;     // since the last publishMetrics()
 
     /**
      * Initializes an empty indexed priority queue with indices between {@code 0}
@@ -113,6 +114,16 @@ public class IndexMinPQ<Key extends Comparable<Key>> implements Iterable<Integer
         pq[n] = i;
         keys[i] = key;
         swim(n);
+        if (NetworkMetrics.ENABLED) inserts++;
+    }
+
+    // adds the operations counted so far to NetworkMetrics, once per run of the owner
+    void publishMetrics() {
+        if (!NetworkMetrics.ENABLED) return;
+        NetworkMetrics.Counter.HEAP_INSERTS.add(inserts);
+        NetworkMetrics.Counter.HEAP_DECREASE_KEYS.add(decreaseKeys);
+        NetworkMetrics.Counter.HEAP_DELETE_MINS.add(deleteMins);
+        inserts = decreaseKeys = deleteMins = 0;
     }
 
     /**
@@ -145,6 +156,7 @@ public class IndexMinPQ<Key extends Comparable<Key>> implements Iterable<Integer
     public int delMin() {
         if (n == 0) throw new NoSuchElementException("Priority queue underflow");
         int min = pq[1];
+        if (NetworkMetrics.ENABLED) deleteMins++;
         exch(1, n--);
         sink(1);
         assert min == pq[n+1];
@@ -213,6 +225,7 @@ public class IndexMinPQ<Key extends Comparable<Key>> implements Iterable<Integer
             throw new IllegalArgumentException("Calling decreaseKey() with given argument would not strictly decrease the key");
         keys[i] = key;
         swim(qp[i]);
+        if (NetworkMetrics.ENABLED) decreaseKeys++;
     }
 
     /**
@@ -0,0 +1,277 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.TreeSet;
+
+/******************************************************************************
+ *  Compilation:  javac KShortestPaths.java
+ *  Execution:    java KShortestPaths network.txt s t k
+ *  Dependencies: SearchWorkspace.java CompactDigraph.java NetworkPath.java
+ *                EdgeWeightedDigraph.java NetworkSnapshot.java In.java StdOut.java
+ *
+ *  The k lowest-latency loopless paths between two switches (Yen's
+ *  algorithm with Lawler's refinement).
+ *
+ *  % java KShortestPaths network_data1.txt 0 1 3
+ *  0->4->1 (69.57 ns, bandwidth 100)
+ *  0->2->1 (100.00 ns, bandwidth 10000)
+ *  0->3->1 (100.00 ns, bandwidth 10000)
+ *  3 paths, 5 spur searches in 1.1 ms
+ *
+ ******************************************************************************/
+
+/**
+ *  The {@code KShortestPaths} class computes the <em>k</em> paths of lowest
+ *  latency from one switch to another that visit no switch twice, in order of
+ *  latency, for traffic engineering that spreads load over more than the
+ *  single shortest path.
+ *  <p>
+ *  It uses Yen's algorithm. Every path after the first leaves an earlier path
+ *  at some switch, the <em>spur</em>: it follows the earlier path up to the
+ *  spur, then takes the shortest path to the target that avoids the switches
+ *  before the spur and the edges that the paths found so far take out of it.
+ *  The paths found so far are kept in a prefix tree, whose nodes are the
+ *  distinct prefixes and whose children are exactly the edges to avoid, so a
+ *  spur search needs no comparison of paths. With Lawler's refinement, a
+ *  prefix is only searched again when a new path branches off it, and each
+ *  prefix has at most one candidate path pending, so candidates are never
+ *  duplicated.
+ *  <p>
+ *  Each spur search runs in the {@link SearchWorkspace} given to the
+ *  constructor, with the switches and edges to avoid set in its masks and
+ *  removed afterwards, so a query allocates nothing per search beyond the
+ *  paths themselves. Only the best <em>k</em> - <em>i</em> candidates can
+ *  still be among the results when <em>i</em> paths have been found, so the
+ *  others are dropped and every spur search stops at the latency of the
+ *  worst candidate kept. The searches are A* searches towards the target,
+ *  guided by the distances to it from one backward search per query, so each
+ *  settles little more than the switches near its own path. Masks already
+ *  set in the workspace are honoured.
+ *  An instance is not thread-safe.
+ *
+ *  @author Runyuan Yan
+ */
+public class KShortestPaths {
+    private final CompactDigraph G;
+    private final SearchWorkspace ws;
+
+    // prefix tree of the paths found; node 0 is the source
+    private int[] nodeEdge = new int[16];           // edge into the node, -1 for the root
+    private int[] nodeParent = new int[16];
+    private int[] nodeVertex = new int[16];         // last vertex of the prefix
+    private int[] nodeChild = new int[16];          // first child, -1 if none
+    private int[] nodeSibling = new int[16];        // next sibling, -1 if none
+    private int[] nodeDepth = new int[16];
+    private double[] nodeLatency = new double[16];  // latency of the prefix
+    private int nodes;
+
+    private double[] potential;                     // potential[v] = distance from v to the target
+    private int[] excluded = new int[16];           // vertices (v) and edges (-e-1) masked for a spur search
+    private int searches;
+    private long sequence;
+
+    // a path waiting to be found: deviates from the earlier paths at a tree node
+    private static class Candidate implements Comparable<Candidate> {
+        final double latency;
+        final int[] edges;
+        final int node;
+        final long sequence;
+
+        Candidate(double latency, int[] edges, int node, long sequence) {
+            this.latency = latency;
+            this.edges = edges;
+            this.node = node;
+            this.sequence = sequence;
+        }
+
+        public int compareTo(Candidate that) {
+            int cmp = Double.compare(this.latency, that.latency);
+            return cmp != 0 ? cmp : Long.compare(this.sequence, that.sequence);
+        }
+    }
+
+    /**
+     * Creates a path finder that runs its searches in the workspace {@code ws}.
+     *
+     * @param  ws the workspace
+     */
+    public KShortestPaths(SearchWorkspace ws) {
+        this.ws = ws;
+        this.G = ws.graph();
+    }
+
+    /**
+     * Returns the {@code k} lowest-latency loopless paths from {@code s} to {@code t}.
+     *
+     * @param  s the source
+     * @param  t the target
+     * @param  k the number of paths
+     * @return the paths in order of latency; fewer than {@code k} if there are
+     *         not that many, and none if {@code t} is unreachable
+     * @throws IllegalArgumentException unless {@code 0 <= s < V} and {@code 0 <= t < V}
+     * @throws IllegalArgumentException if {@code k < 1}
+     */
+    public ArrayList<NetworkPath> paths(int s, int t, int k) {
+        validateVertex(s);
+        validateVertex(t);
+        if (k < 1) throw new IllegalArgumentException("k must be positive");
+        ArrayList<NetworkPath> paths = new ArrayList<NetworkPath>();
+        searches = 0;
+
+        // the distances to t bound every spur search from below, which
+        // directs the searches towards t instead of around the spur
+        ws.runReverse(t);
+        searches++;
+        if (!ws.hasPathTo(s)) return paths;
+        if (potential == null) potential = new double[G.V()];
+        for (int v = 0; v < G.V(); v++)
+            potential[v] = ws.distTo(v);
+        if (s == t) {
+            paths.add(new NetworkPath(G, s, new int[0]));
+            return paths;
+        }
+
+        nodes = 0;
+        addNode(-1, -1, s, 0.0);
+        TreeSet<Candidate> candidates = new TreeSet<Candidate>();
+        ws.run(s, t, Double.POSITIVE_INFINITY, potential);
+        candidates.add(new Candidate(ws.distTo(t), ws.pathTo(t), 0, sequence++));
+        while (!candidates.isEmpty()) {
+            Candidate c = candidates.pollFirst();
+            paths.add(new NetworkPath(G, s, c.edges));
+            if (paths.size() == k) break;
+
+            // add the new path below the node where it deviates
+            int node = c.node;
+            int first = nodes;
+            for (int i = nodeDepth[node]; i < c.edges.length; i++) {
+                int e = c.edges[i];
+                node = addNode(node, e, G.to(e), nodeLatency[node] + G.latency(e));
+            }
+
+            // the deviation node now has one more edge to avoid, and every new
+            // prefix short of the target is a new place to deviate
+            int remaining = k - paths.size();
+            spur(c.node, t, candidates, remaining);
+            for (int n = first; n < nodes; n++) {
+                if (nodeVertex[n] != t) spur(n, t, candidates, remaining);
+            }
+        }
+        return paths;
+    }
+
+    // the best path that follows the prefix of node and then leaves it by an edge not yet taken
+    private void spur(int node, int t, TreeSet<Candidate> candidates, int remaining) {
+        double root = nodeLatency[node];
+        double limit = Double.POSITIVE_INFINITY;
+        if (candidates.size() >= remaining) {
+            limit = candidates.last().latency - root;
+            if (limit < 0) return;
+        }
+
+        int masked = 0;
+        for (int n = nodeParent[node]; n >= 0; n = nodeParent[n]) {
+            int v = nodeVertex[n];
+            if (!ws.isExcludedVertex(v)) {
+                ws.excludeVertex(v);
+                masked = push(masked, v);
+            }
+        }
+        for (int n = nodeChild[node]; n >= 0; n = nodeSibling[n]) {
+            int e = nodeEdge[n];
+            if (!ws.isExcludedEdge(e)) {
+                ws.excludeEdge(e);
+                masked = push(masked, -e - 1);
+            }
+        }
+
+        ws.run(nodeVertex[node], t, limit, potential);
+        searches++;
+        if (ws.isSettled(t)) {
+            int[] spur = ws.pathTo(t);
+            int depth = nodeDepth[node];
+            int[] edges = Arrays.copyOf(spur, depth + spur.length);
+            System.arraycopy(spur, 0, edges, depth, spur.length);
+            for (int n = node; n > 0; n = nodeParent[n])
+                edges[nodeDepth[n] - 1] = nodeEdge[n];
+            candidates.add(new Candidate(root + ws.distTo(t), edges, node, sequence++));
+            while (candidates.size() > remaining) candidates.pollLast();
+        }
+
+        for (int i = 0; i < masked; i++) {
+            int x = excluded[i];
+            if (x >= 0) ws.includeVertex(x);
+            else        ws.includeEdge(-x - 1);
+        }
+    }
+
+    private int push(int n, int x) {
+        if (n == excluded.length) excluded = Arrays.copyOf(excluded, 2*n);
+        excluded[n] = x;
+        return n + 1;
+    }
+
+    private int addNode(int parent, int edge, int vertex, double latency) {
+        if (nodes == nodeEdge.length) {
+            int n = 2 * nodes;
+            nodeEdge = Arrays.copyOf(nodeEdge, n);
+            nodeParent = Arrays.copyOf(nodeParent, n);
+            nodeVertex = Arrays.copyOf(nodeVertex, n);
+            nodeChild = Arrays.copyOf(nodeChild, n);
+            nodeSibling = Arrays.copyOf(nodeSibling, n);
+            nodeDepth = Arrays.copyOf(nodeDepth, n);
+            nodeLatency = Arrays.copyOf(nodeLatency, n);
+        }
+        int n = nodes++;
+        nodeEdge[n] = edge;
+        nodeParent[n] = parent;
+        nodeVertex[n] = vertex;
+        nodeChild[n] = -1;
+        nodeLatency[n] = latency;
+        if (parent < 0) {
+            nodeSibling[n] = -1;
+            nodeDepth[n] = 0;
+        }
+        else {
+            nodeSibling[n] = nodeChild[parent];
+            nodeChild[parent] = n;
+            nodeDepth[n] = nodeDepth[parent] + 1;
+        }
+        return n;
+    }
+
+    /**
+     * Returns the number of searches the last query ran.
+     *
+     * @return the number of searches
+     */
+    public int searches() {
+        return searches;
+    }
+
+    // throw an IllegalArgumentException unless {@code 0 <= v < V}
+    private void validateVertex(int v) {
+        if (v < 0 || v >= G.V())
+            throw new IllegalArgumentException("vertex " + v + " is not between 0 and " + (G.V()-1));
+    }
+
+    /**
+     * Prints the {@code k} lowest-latency paths between two switches.
+     *
+     * @param args the command-line arguments
+     */
+    public static void main(String[] args) {
+        EdgeWeightedDigraph network = NetworkSnapshot.isSnapshot(args[0])
+                                    ? NetworkSnapshot.read(args[0])
+                                    : new EdgeWeightedDigraph(new In(args[0]));
+        int s = Integer.parseInt(args[1]);
+        int t = Integer.parseInt(args[2]);
+        int k = Integer.parseInt(args[3]);
+        KShortestPaths finder = new KShortestPaths(new SearchWorkspace(new CompactDigraph(network)));
+        long start = System.nanoTime();
+        ArrayList<NetworkPath> paths = finder.paths(s, t, k);
+        long elapsed = System.nanoTime() - start;
+        for (NetworkPath path : paths)
+            StdOut.println(path);
+        StdOut.printf("%d paths, %d spur searches in %.1f ms%n", paths.size(), finder.searches(), elapsed / 1e6);
+    }
+}
@@ -75,6 +75,9 @@ public class KruskalMST {
      * @param G the edge-weighted graph
      */
     public KruskalMST(EdgeWeightedDigraph G) {
+        long start = NetworkMetrics.Timer.KRUSKAL.start();
+        NetworkEvents.SpanningTree event = new NetworkEvents.SpanningTree();
+        event.begin();
         // more efficient to build heap by passing array of edges
         MinPQ<DirectedEdge> pq = new MinPQ<DirectedEdge>();
         for (DirectedEdge e : G.edges()) {
@@ -83,8 +86,10 @@ public class KruskalMST {
 
         // run greedy algorithm
         UF uf = new UF(G.V());
+        long examined = 0;
         while (!pq.isEmpty() && mst.size() < G.V() - 1) {
         	DirectedEdge e = pq.delMin();
+            examined++;
             int v = e.from();
             int w = e.to();
             if (!uf.connected(v, w)) { // v-w does not create a cycle
@@ -93,6 +98,18 @@ public class KruskalMST {
                 weight += e.latency();
             }
         }
+        if (NetworkMetrics.ENABLED) {
+            NetworkMetrics.Counter.KRUSKAL_EXAMINED.add(examined);
+            NetworkMetrics.Counter.KRUSKAL_UNIONS.add(mst.size());
+            uf.publishMetrics();
+            NetworkMetrics.Timer.KRUSKAL.stop(start);
+        }
+        if (event.shouldCommit()) {
+            event.vertices = G.V();
+            event.edgesExamined = examined;
+            event.resultSize = mst.size();
+            event.commit();
+        }
 
         // check optimality conditions
         assert check(G);
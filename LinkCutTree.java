@@ -0,0 +1,245 @@
+/******************************************************************************
+ *
+ *  Sleator-Tarjan link-cut trees over a fixed set of nodes, with a
+ *  path-maximum query. Used to maintain a spanning forest under edge
+ *  insertions and deletions.
+ *
+ ******************************************************************************/
+
+/**
+ *  The {@code LinkCutTree} class represents a forest of rooted trees on the
+ *  nodes 0 through <em>n</em> - 1, where each node carries a real-valued weight.
+ *  It supports <em>link</em> (join two trees with an edge), <em>cut</em>
+ *  (remove a tree edge), <em>connected</em>, and <em>path-max</em>, which
+ *  returns the node of maximum weight on the tree path between two nodes.
+ *  <p>
+ *  Weights live on nodes, so a weighted tree edge {@code v-w} is represented by
+ *  an extra node {@code x} of that weight that is linked to both {@code v} and
+ *  {@code w}; the vertices themselves get weight negative infinity.
+ *  <p>
+ *  This implementation stores each preferred path in a splay tree, with all
+ *  node data in parallel arrays.
+ *  Every operation takes amortized logarithmic time.
+ *
+ *  @author Runyuan Yan
+ */
+public class LinkCutTree {
+    private final int[] left, right, parent;   // splay-tree links; parent doubles as path-parent
+    private final boolean[] flip;              // pending subtree reversal
+    private final double[] weight;             // weight[x] = weight of node x
+    private final int[] max;                   // max[x] = node of maximum weight in splay subtree of x
+    private final int[] stack;                 // scratch space for splay()
+
+    /**
+     * Initializes a forest of {@code n} single-node trees, each of weight negative infinity.
+     *
+     * @param  n the number of nodes
+     * @throws IllegalArgumentException if {@code n < 0}
+     */
+    public LinkCutTree(int n) {
+        if (n < 0) throw new IllegalArgumentException("Number of nodes must be nonnegative");
+        left = new int[n];
+        right = new int[n];
+        parent = new int[n];
+        flip = new boolean[n];
+        weight = new double[n];
+        max = new int[n];
+        stack = new int[n];
+        for (int x = 0; x < n; x++) {
+            left[x] = right[x] = parent[x] = -1;
+            weight[x] = Double.NEGATIVE_INFINITY;
+            max[x] = x;
+        }
+    }
+
+    /**
+     * Sets the weight of node {@code x}.
+     *
+     * @param  x the node
+     * @param  w the new weight
+     * @throws IllegalArgumentException unless {@code 0 <= x < n}
+     */
+    public void setWeight(int x, double w) {
+        validate(x);
+        access(x);
+        weight[x] = w;
+        pull(x);
+    }
+
+    /**
+     * Returns the weight of node {@code x}.
+     *
+     * @param  x the node
+     * @return the weight of node {@code x}
+     * @throws IllegalArgumentException unless {@code 0 <= x < n}
+     */
+    public double weight(int x) {
+        validate(x);
+        return weight[x];
+    }
+
+    /**
+     * Returns true if the two nodes are in the same tree.
+     *
+     * @param  x one node
+     * @param  y the other node
+     * @return {@code true} if {@code x} and {@code y} are in the same tree;
+     *         {@code false} otherwise
+     * @throws IllegalArgumentException unless both {@code 0 <= x < n} and {@code 0 <= y < n}
+     */
+    public boolean connected(int x, int y) {
+        validate(x);
+        validate(y);
+        if (x == y) return true;
+        return findRoot(x) == findRoot(y);
+    }
+
+    /**
+     * Adds the tree edge {@code x-y}, joining the trees of the two nodes.
+     *
+     * @param  x one node
+     * @param  y the other node
+     * @throws IllegalArgumentException if {@code x} and {@code y} are already connected
+     */
+    public void link(int x, int y) {
+        if (connected(x, y)) throw new IllegalArgumentException("nodes " + x + " and " + y + " are already connected");
+        makeRoot(x);
+        parent[x] = y;
+    }
+
+    /**
+     * Removes the tree edge {@code x-y}.
+     *
+     * @param  x one node
+     * @param  y the other node
+     * @throws IllegalArgumentException if {@code x-y} is not a tree edge
+     */
+    public void cut(int x, int y) {
+        validate(x);
+        validate(y);
+        makeRoot(x);
+        access(y);
+        // after access(y) the path x..y is the splay tree of y; x-y is an edge iff x is y's only left node
+        if (left[y] != x || right[x] != -1 || left[x] != -1)
+            throw new IllegalArgumentException("nodes " + x + " and " + y + " are not adjacent");
+        left[y] = -1;
+        parent[x] = -1;
+        pull(y);
+    }
+
+    /**
+     * Returns the node of maximum weight on the tree path between {@code x} and {@code y}.
+     *
+     * @param  x one node
+     * @param  y the other node
+     * @return the node of maximum weight on the path from {@code x} to {@code y}
+     * @throws IllegalArgumentException if {@code x} and {@code y} are not connected
+     */
+    public int pathMax(int x, int y) {
+        if (!connected(x, y)) throw new IllegalArgumentException("nodes " + x + " and " + y + " are not connected");
+        makeRoot(x);
+        access(y);
+        return max[y];
+    }
+
+    private int findRoot(int x) {
+        access(x);
+        int r = x;
+        push(r);
+        while (left[r] != -1) {
+            r = left[r];
+            push(r);
+        }
+        splay(r);
+        return r;
+    }
+
+    private void makeRoot(int x) {
+        access(x);
+        flip[x] = !flip[x];
+        push(x);
+    }
+
+    // make the root-to-x path preferred and x the root of its splay tree
+    private void access(int x) {
+        int last = -1;
+        for (int y = x; y != -1; y = parent[y]) {
+            splay(y);
+            right[y] = last;
+            pull(y);
+            last = y;
+        }
+        splay(x);
+    }
+
+    private boolean isSplayRoot(int x) {
+        int p = parent[x];
+        return p == -1 || (left[p] != x && right[p] != x);
+    }
+
+    private void splay(int x) {
+        // push pending flips from the splay root down to x
+        int top = 0;
+        stack[top++] = x;
+        for (int y = x; !isSplayRoot(y); y = parent[y])
+            stack[top++] = parent[y];
+        while (top > 0) push(stack[--top]);
+
+        while (!isSplayRoot(x)) {
+            int p = parent[x];
+            if (!isSplayRoot(p)) {
+                int g = parent[p];
+                if ((left[g] == p) == (left[p] == x)) rotate(p);
+                else                                  rotate(x);
+            }
+            rotate(x);
+        }
+    }
+
+    private void rotate(int x) {
+        int p = parent[x], g = parent[p];
+        boolean pIsRoot = isSplayRoot(p);
+        if (left[p] == x) {
+            left[p] = right[x];
+            if (right[x] != -1) parent[right[x]] = p;
+            right[x] = p;
+        }
+        else {
+            right[p] = left[x];
+            if (left[x] != -1) parent[left[x]] = p;
+            left[x] = p;
+        }
+        parent[p] = x;
+        parent[x] = g;
+        if (!pIsRoot) {
+            if (left[g] == p) left[g] = x;
+            else              right[g] = x;
+        }
+        pull(p);
+        pull(x);
+    }
+
+    private void push(int x) {
+        if (!flip[x]) return;
+        int t = left[x];
+        left[x] = right[x];
+        right[x] = t;
+        if (left[x] != -1)  flip[left[x]] = !flip[left[x]];
+        if (right[x] != -1) flip[right[x]] = !flip[right[x]];
+        flip[x] = false;
+    }
+
+    private void pull(int x) {
+        int m = x;
+        if (left[x] != -1 && weight[max[left[x]]] > weight[m])   m = max[left[x]];
+        if (right[x] != -1 && weight[max[right[x]]] > weight[m]) m = max[right[x]];
+        max[x] = m;
+    }
+
+    // validate that x is a valid node
+    private void validate(int x) {
+        int n = parent.length;
+        if (x < 0 || x >= n)
+            throw new IllegalArgumentException("node " + x + " is not between 0 and " + (n-1));
+    }
+}
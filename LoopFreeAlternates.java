@@ -0,0 +1,291 @@
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/******************************************************************************
+ *  Compilation:  javac LoopFreeAlternates.java
+ *  Execution:    java LoopFreeAlternates network.txt
+ *  Dependencies: CompactDigraph.java SearchWorkspace.java RunLengthMatrix.java
+ *                EdgeWeightedDigraph.java NetworkSnapshot.java In.java StdOut.java
+ *
+ *  Primary next hops and loop-free alternate next hops for every switch and
+ *  destination, for fast reroute on link failure.
+ *
+ *  % java LoopFreeAlternates network_data1.txt
+ *  5 switches, 20 routes, 14 protected (70.0%), 25 runs
+ *  switch 0:  1 via 4 (alt 2)  2 via 2 (alt 4)  3 via 3 (alt 4)  4 via 4 (alt 2)
+ *  ...
+ *
+ ******************************************************************************/
+
+/**
+ *  The {@code LoopFreeAlternates} class precomputes fast-reroute tables: for
+ *  every switch <em>v</em> and destination <em>d</em>, the primary next hop
+ *  on a lowest-latency path, and a <em>loop-free alternate</em> next hop that
+ *  a switch can fail over to at once when the cable of its primary next hop
+ *  goes down, without waiting for routes to be recomputed.
+ *  <p>
+ *  A neighbour <em>n</em> of <em>v</em> is an alternate for destination
+ *  <em>d</em> if it is reached by a different cable than the primary next hop
+ *  and it is <em>downstream</em>: dist(<em>n</em>, <em>d</em>) &lt;
+ *  dist(<em>v</em>, <em>d</em>). Traffic sent to a downstream neighbour always
+ *  gets strictly closer to <em>d</em>, so it cannot loop back, even if
+ *  several switches fail over at once. This is stricter than the basic
+ *  loop-free condition of RFC 5286, which needs the distance between every
+ *  pair of neighbours, but it only needs one shortest-paths tree per
+ *  destination. Among the alternates, the one with the lowest latency to
+ *  <em>d</em> is chosen. Where several next hops tie, primary or alternate,
+ *  the lowest port wins, so that neighbouring destinations get the same
+ *  entry and the table compresses well.
+ *  <p>
+ *  The tree for each destination is computed with a backward Dijkstra search
+ *  in a per-thread {@link SearchWorkspace}. Destinations are processed in
+ *  blocks whose trees run in parallel on a {@link ForkJoinPool}; each
+ *  finished block is appended to a {@link RunLengthMatrix} with one row per
+ *  switch. A next hop is stored as a port, the position of the edge among the
+ *  edges leaving the switch, and an entry packs the primary and alternate
+ *  ports into 16 bits each, so switches may have up to 65534 cables.
+ *
+ *  @author Runyuan Yan
+ */
+public class LoopFreeAlternates {
+    private static final int NONE = 0xFFFF;       // port value for "no next hop"
+    private static final double EPSILON = 1e-9;   // relative margin for "strictly closer" despite rounding
+
+    private final CompactDigraph G;
+    private final RunLengthMatrix table;          // table.get(v, d) = primary << 16 | alternate
+    private long routes;                          // (v, d) pairs with a primary next hop
+    private long protectedRoutes;                 // (v, d) pairs that also have an alternate
+
+    /**
+     * Computes the tables for {@code G} on the common {@link ForkJoinPool}.
+     *
+     * @param  G the network
+     * @throws IllegalArgumentException if a switch has more than 65534 edges
+     */
+    public LoopFreeAlternates(EdgeWeightedDigraph G) {
+        this(new CompactDigraph(G), ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Computes the tables for the network snapshot {@code G} on {@code pool}.
+     *
+     * @param  G the network snapshot
+     * @param  pool the pool to run the per-destination searches on
+     * @throws IllegalArgumentException if a switch has more than 65534 edges
+     */
+    public LoopFreeAlternates(CompactDigraph G, ForkJoinPool pool) {
+        this.G = G;
+        int V = G.V();
+        for (int v = 0; v < V; v++) {
+            if (G.end(v) - G.begin(v) >= NONE)
+                throw new IllegalArgumentException("switch " + v + " has more than " + (NONE-1) + " edges");
+        }
+        table = new RunLengthMatrix(V);
+        ThreadLocal<SearchWorkspace> workspace = ThreadLocal.withInitial(() -> new SearchWorkspace(G));
+
+        int block = Math.max(64, 4 * pool.getParallelism());
+        int[][] columns = new int[Math.min(block, Math.max(V, 1))][V];
+        long[] counts = new long[2 * columns.length];
+        for (int first = 0; first < V; first += block) {
+            int size = Math.min(block, V - first);
+            pool.invoke(new Destinations(workspace, columns, counts, first, 0, size));
+            for (int i = 0; i < size; i++) {
+                table.appendColumn(columns[i]);
+                routes += counts[2*i];
+                protectedRoutes += counts[2*i + 1];
+            }
+        }
+        table.trimToSize();
+    }
+
+    // computes the columns of destinations first+lo .. first+hi-1
+    private class Destinations extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+        private final ThreadLocal<SearchWorkspace> workspace;
+        private final int[][] columns;
+        private final long[] counts;
+        private final int first, lo, hi;
+
+        Destinations(ThreadLocal<SearchWorkspace> workspace, int[][] columns, long[] counts,
+                     int first, int lo, int hi) {
+            this.workspace = workspace;
+            this.columns = columns;
+            this.counts = counts;
+            this.first = first;
+            this.lo = lo;
+            this.hi = hi;
+        }
+
+        @Override
+        protected void compute() {
+            if (hi - lo > 1) {
+                int mid = (lo + hi) >>> 1;
+                invokeAll(new Destinations(workspace, columns, counts, first, lo, mid),
+                          new Destinations(workspace, columns, counts, first, mid, hi));
+                return;
+            }
+            for (int i = lo; i < hi; i++)
+                column(workspace.get(), first + i, columns[i], counts, 2*i);
+        }
+    }
+
+    // primary and alternate ports of every switch towards d
+    private void column(SearchWorkspace ws, int d, int[] column, long[] counts, int at) {
+        ws.runReverse(d);
+        long routed = 0, covered = 0;
+        for (int v = 0; v < G.V(); v++) {
+            if (v == d || !ws.hasPathTo(v)) {
+                column[v] = NONE << 16 | NONE;
+                continue;
+            }
+            double dv = ws.distTo(v);
+
+            // of several equal-cost next hops, take the lowest port, so that
+            // nearby destinations agree and the rows compress into long runs
+            int primary = -1;
+            for (int e = G.begin(v); e < G.end(v) && primary < 0; e++) {
+                if (G.latency(e) + ws.distTo(G.to(e)) <= dv * (1 + EPSILON)) primary = e;
+            }
+            int alternate = -1;
+            double best = Double.POSITIVE_INFINITY;
+            for (int e = G.begin(v); e < G.end(v); e++) {
+                if (e == primary) continue;
+                double dn = ws.distTo(G.to(e));
+                if (dn >= dv * (1 - EPSILON)) continue;     // not downstream
+                double via = G.latency(e) + dn;
+                if (via < best * (1 - EPSILON)) {
+                    best = via;
+                    alternate = e;
+                }
+            }
+            routed++;
+            if (alternate >= 0) covered++;
+            int base = G.begin(v);
+            column[v] = (primary - base) << 16 | (alternate < 0 ? NONE : alternate - base);
+        }
+        counts[at] = routed;
+        counts[at + 1] = covered;
+    }
+
+    /**
+     * Returns the port of the primary next hop from {@code v} towards {@code d}:
+     * the position of the edge among the edges leaving {@code v} in the
+     * {@link CompactDigraph}.
+     *
+     * @param  v the switch
+     * @param  d the destination
+     * @return the port, or -1 if {@code v == d} or {@code d} is unreachable
+     * @throws IllegalArgumentException unless {@code 0 <= v < V} and {@code 0 <= d < V}
+     */
+    public int primaryPort(int v, int d) {
+        int port = table.get(v, d) >>> 16;
+        return port == NONE ? -1 : port;
+    }
+
+    /**
+     * Returns the port of the loop-free alternate next hop from {@code v} towards {@code d}.
+     *
+     * @param  v the switch
+     * @param  d the destination
+     * @return the port, or -1 if there is no alternate
+     * @throws IllegalArgumentException unless {@code 0 <= v < V} and {@code 0 <= d < V}
+     */
+    public int alternatePort(int v, int d) {
+        int port = table.get(v, d) & 0xFFFF;
+        return port == NONE ? -1 : port;
+    }
+
+    /**
+     * Returns the primary next-hop edge from {@code v} towards {@code d}.
+     *
+     * @param  v the switch
+     * @param  d the destination
+     * @return the edge, or {@code null} if there is none
+     * @throws IllegalArgumentException unless {@code 0 <= v < V} and {@code 0 <= d < V}
+     */
+    public DirectedEdge primary(int v, int d) {
+        int port = primaryPort(v, d);
+        return port < 0 ? null : G.edge(G.begin(v) + port);
+    }
+
+    /**
+     * Returns the loop-free alternate next-hop edge from {@code v} towards {@code d}.
+     *
+     * @param  v the switch
+     * @param  d the destination
+     * @return the edge, or {@code null} if there is none
+     * @throws IllegalArgumentException unless {@code 0 <= v < V} and {@code 0 <= d < V}
+     */
+    public DirectedEdge alternate(int v, int d) {
+        int port = alternatePort(v, d);
+        return port < 0 ? null : G.edge(G.begin(v) + port);
+    }
+
+    /**
+     * Returns the number of (switch, destination) pairs with a primary next hop.
+     *
+     * @return the number of routes
+     */
+    public long routes() {
+        return routes;
+    }
+
+    /**
+     * Returns the number of routes that also have a loop-free alternate.
+     *
+     * @return the number of protected routes
+     */
+    public long protectedRoutes() {
+        return protectedRoutes;
+    }
+
+    /**
+     * Returns the fraction of routes that have a loop-free alternate.
+     *
+     * @return the coverage, between 0 and 1
+     */
+    public double coverage() {
+        return routes == 0 ? 0.0 : (double) protectedRoutes / routes;
+    }
+
+    /**
+     * Returns the number of runs in the compressed table, a measure of its size.
+     *
+     * @return the number of runs
+     */
+    public long runs() {
+        return table.runs();
+    }
+
+    /**
+     * Computes the tables of a network and prints a summary, and the tables
+     * themselves for small networks.
+     *
+     * @param args the command-line arguments
+     */
+    public static void main(String[] args) {
+        EdgeWeightedDigraph network = NetworkSnapshot.isSnapshot(args[0])
+                                    ? NetworkSnapshot.read(args[0])
+                                    : new EdgeWeightedDigraph(new In(args[0]));
+        CompactDigraph G = new CompactDigraph(network);
+        long start = System.nanoTime();
+        LoopFreeAlternates lfa = new LoopFreeAlternates(G, ForkJoinPool.commonPool());
+        long elapsed = System.nanoTime() - start;
+        StdOut.printf("%d switches, %d routes, %d protected (%.1f%%), %d runs%n",
+                      G.V(), lfa.routes(), lfa.protectedRoutes(), 100 * lfa.coverage(), lfa.runs());
+        if (G.V() > 20) {
+            StdOut.printf("computed in %.1f s%n", elapsed / 1e9);
+            return;
+        }
+        for (int v = 0; v < G.V(); v++) {
+            StdOut.print("switch " + v + ":");
+            for (int d = 0; d < G.V(); d++) {
+                DirectedEdge p = lfa.primary(v, d);
+                if (p == null) continue;
+                DirectedEdge a = lfa.alternate(v, d);
+                StdOut.print("  " + d + " via " + p.to() + " (alt " + (a == null ? "-" : String.valueOf(a.to())) + ")");
+            }
+            StdOut.println();
+        }
+    }
+}
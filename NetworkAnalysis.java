@@ -13,19 +13,19 @@ import java.util.*;
 public class NetworkAnalysis{
   public static void main(String[] args) throws FileNotFoundException {
 	  String userInput;
-	  Scanner fileReader = new Scanner(new File(args[0]));		//read the input file
-	  EdgeWeightedDigraph network = new EdgeWeightedDigraph(fileReader.nextInt());			// Instantiate our network using size from the file(first line)
-	  String[] line ;
-	  fileReader.nextLine();
-	  while(fileReader.hasNextLine())
+	  NetworkMetrics.install();		// no-op unless started with -Dnetwork.metrics=true
+	  if (!new File(args[0]).exists()) throw new FileNotFoundException(args[0]);
+	  EdgeWeightedDigraph network;
+	  if (NetworkSnapshot.isSnapshot(args[0]))
 	  {
-		  line = fileReader.nextLine().split(" ");
-		  //System.out.println(Integer.parseInt(line[0]));
-		  network.addEdge(new DirectedEdge(Integer.parseInt(line[0]),Integer.parseInt(line[1]),line[2],Integer.parseInt(line[4]),Integer.parseInt(line[3])));
-		  network.addEdge(new DirectedEdge(Integer.parseInt(line[1]),Integer.parseInt(line[0]),line[2],Integer.parseInt(line[4]),Integer.parseInt(line[3])));
-		  
+		  network = NetworkSnapshot.read(args[0]);		// binary snapshot, e.g. from TopologyGenerator -binary
+	  }
+	  else
+	  {
+		  In fileReader = new In(args[0]);		//read the input file
+		  network = new EdgeWeightedDigraph(fileReader);			// every cable is added in both directions
+		  fileReader.close();
 	  }
-	  fileReader.close();
 	  
 	  Scanner scanner = new Scanner(System.in);
 	  System.out.println("\nEnter 1 to find the lowest latency path between any two points");
@@ -45,7 +45,7 @@ public class NetworkAnalysis{
 			  start = scanner.nextInt();
 			  System.out.println("Enter the end point ");
 			  end = scanner.nextInt();
-			  DijkstraSP sp = new DijkstraSP(network, start);			// create a Dijkstra path 
+			  DijkstraSP sp = new DijkstraSP(network, start, end);			// create a Dijkstra path, stopping at the end point
 			  ArrayList<DirectedEdge> results = sp.pathTo(end);
 		        StdOut.printf("The lowest latency path for %d to %d (%.2f)  :", start, end, sp.distTo(end));
 		        //use DJ to find the path and print
@@ -0,0 +1,331 @@
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Random;
+
+/******************************************************************************
+ *  Compilation:  javac NetworkBenchmark.java
+ *  Execution:    java -Xmx8g NetworkBenchmark [-sizes 1000,10000,...] [-ops load,dijkstra,...]
+ *                                             [-topology random|fattree|metro|wan]
+ *                                             [-warmup n] [-iterations n] [-seed n]
+ *                                             [-baseline benchmark_baseline.txt]
+ *  Dependencies: EdgeWeightedDigraph.java DijkstraSP.java KruskalMST.java UF.java TopologyGenerator.java
+ *                IndexMinPQ.java MinPQ.java In.java StdOut.java
+ *
+ *  Microbenchmarks for the network analysis operations over synthetic graphs.
+ *
+ *  % java NetworkBenchmark -sizes 1000 -ops dijkstra,mst
+ *  op                V        ms/op      +-  alloc MB/op   alloc MB/s
+ *  dijkstra       1000        2.872   2.409        0.191         66.4
+ *  mst            1000        4.069   3.019        0.153         37.5
+ *
+ ******************************************************************************/
+
+/**
+ *  The {@code NetworkBenchmark} class is a self-contained benchmark harness for
+ *  the graph operations of this project. For every graph size it builds a
+ *  seeded network (by default a ring of cables so the network is connected, plus
+ *  random chords, for an average of four cables per switch; see {@link #network}),
+ *  then measures:
+ *  <ul>
+ *  <li> {@code load}: reading the network format with {@link EdgeWeightedDigraph#EdgeWeightedDigraph(In)}
+ *  <li> {@code dijkstra}: a full single-source {@link DijkstraSP}
+ *  <li> {@code p2p}: a point-to-point query, {@link DijkstraSP} stopping at the target plus {@code pathTo()} and {@code bandwidth()}
+ *  <li> {@code mst}: {@link KruskalMST}
+ *  <li> {@code copper}: {@link EdgeWeightedDigraph#isCopperConnected()}, on a network that passes
+ *  <li> {@code failure}: {@link EdgeWeightedDigraph#failurePoint()}, on a network that passes
+ *  <li> {@code uf}: <em>V</em> random unions followed by <em>V</em> random finds on {@link UF}
+ *  <li> {@code indexpq}: <em>V</em> inserts, decrease-keys and deletes on {@link IndexMinPQ}
+ *  <li> {@code minpq}: <em>V</em> inserts and deletes on {@link MinPQ}
+ *  </ul>
+ *  Each operation runs a number of warmup iterations followed by measured
+ *  iterations, and reports the mean time per operation with its standard
+ *  deviation. The {@code copper} and {@code failure} checks stop at the first
+ *  switch that fails them, which in the {@code random} network is one of the
+ *  first few, so for the {@code random} topology they run on a variant in which
+ *  every switch passes and the whole network is scanned (see {@link #survivable}).
+ *  Allocation per operation is read from the per-thread allocation
+ *  counter of the HotSpot {@code ThreadMXBean}, and the allocation rate is
+ *  derived from it, which is the figure JMH's GC profiler reports as
+ *  {@code gc.alloc.rate}.
+ *  <p>
+ *  Results are printed as a whitespace-separated table. With {@code -baseline}
+ *  the table is compared against a previous run, such as the in-tree
+ *  {@code benchmark_baseline.txt}, and the change in time is printed per row.
+ *
+ *  @author Runyuan Yan
+ */
+public class NetworkBenchmark {
+    private static final String[] ALL_OPS = { "load", "dijkstra", "p2p", "mst", "copper", "failure", "uf", "indexpq", "minpq" };
+
+    private static volatile long sink;    // keeps results alive so the JIT cannot drop the work
+
+    private final int warmup;
+    private final int iterations;
+    private final long seed;
+    private final String topology;
+
+    private NetworkBenchmark(int warmup, int iterations, long seed, String topology) {
+        this.warmup = warmup;
+        this.iterations = iterations;
+        this.seed = seed;
+        this.topology = topology;
+    }
+
+    /**
+     * Builds a seeded network with about {@code V} switches.
+     * The {@code random} topology is a ring, so that the network is connected,
+     * plus {@code V} random chords; cables are copper with probability 1/2, have
+     * a bandwidth of 100, 1000 or 10000 and a length between 1 and 1000 meters.
+     * The other topologies come from {@link TopologyGenerator}: {@code fattree}
+     * uses the largest even <em>k</em> with at most {@code V} switches,
+     * {@code metro} uses rings of 64 switches and {@code wan} attaches every
+     * switch with 2 cables.
+     *
+     * @param  topology one of {@code random}, {@code fattree}, {@code metro} and {@code wan}
+     * @param  V the number of switches
+     * @param  seed the random seed
+     * @return the network, with every cable added in both directions
+     * @throws IllegalArgumentException if the topology is unknown
+     */
+    public static EdgeWeightedDigraph network(String topology, int V, long seed) {
+        if (topology.equals("fattree")) {
+            int k = 2 * (int) Math.sqrt(V / 5.0);
+            return new TopologyGenerator(seed).fatTree(Math.max(2, k)).toDigraph();
+        }
+        if (topology.equals("metro"))
+            return new TopologyGenerator(seed).metroRings(Math.max(1, V / 64), 64).toDigraph();
+        if (topology.equals("wan"))
+            return new TopologyGenerator(seed).scaleFree(V, 2).toDigraph();
+        if (!topology.equals("random"))
+            throw new IllegalArgumentException("unknown topology " + topology);
+
+        EdgeWeightedDigraph G = new EdgeWeightedDigraph(V);
+        Random random = new Random(seed);
+        for (int i = 0; i < 2*V; i++) {
+            int v = i < V ? i : random.nextInt(V);
+            int w = i < V ? (i + 1) % V : random.nextInt(V);
+            String material = random.nextBoolean() ? "copper" : "optical";
+            int bandWidth = new int[] { 100, 1000, 10000 }[random.nextInt(3)];
+            int length = 1 + random.nextInt(1000);
+            G.addEdge(new DirectedEdge(v, w, material, length, bandWidth));
+            G.addEdge(new DirectedEdge(w, v, material, length, bandWidth));
+        }
+        return G;
+    }
+
+    /**
+     * Builds the seeded {@code random} network with {@code V} switches in which
+     * every switch passes {@link EdgeWeightedDigraph#isCopperConnected()} and
+     * {@link EdgeWeightedDigraph#failurePoint()}: the ring is copper, and a
+     * second ring joins every switch to the one two places on, so that every
+     * switch has at least 4 cables.
+     *
+     * @param  V the number of switches, at least 5
+     * @param  seed the random seed
+     * @return the network, with every cable added in both directions
+     */
+    public static EdgeWeightedDigraph survivable(int V, long seed) {
+        EdgeWeightedDigraph G = new EdgeWeightedDigraph(V);
+        Random random = new Random(seed);
+        for (int i = 0; i < 3*V; i++) {
+            int v = i < 2*V ? i % V : random.nextInt(V);
+            int w = i < V ? (v + 1) % V : i < 2*V ? (v + 2) % V : random.nextInt(V);
+            String material = i < V || random.nextBoolean() ? "copper" : "optical";
+            int bandWidth = new int[] { 100, 1000, 10000 }[random.nextInt(3)];
+            int length = 1 + random.nextInt(1000);
+            G.addEdge(new DirectedEdge(v, w, material, length, bandWidth));
+            G.addEdge(new DirectedEdge(w, v, material, length, bandWidth));
+        }
+        return G;
+    }
+
+    // write one direction of every cable of G in the network format
+    private static void write(EdgeWeightedDigraph G, File file) throws IOException {
+        BufferedWriter out = new BufferedWriter(new FileWriter(file));
+        out.write(G.V() + "\n");
+        boolean twin = false;    // the two directions of a self-loop are both in adj(v)
+        for (int v = 0; v < G.V(); v++) {
+            for (DirectedEdge e : G.adj(v)) {
+                if (e.from() > e.to()) continue;
+                if (e.from() == e.to()) {
+                    twin = !twin;
+                    if (!twin) continue;
+                }
+                out.write(e.from() + " " + e.to() + " " + e.material() + " " + e.bandWidth() + " " + e.length() + "\n");
+            }
+        }
+        out.close();
+    }
+
+    private Result run(String op, int V) throws IOException {
+        boolean scan = (op.equals("copper") || op.equals("failure")) && topology.equals("random");
+        final EdgeWeightedDigraph G = scan ? survivable(V, seed) : network(topology, V, seed);
+        final int n = G.V();
+        final Random random = new Random(seed);
+        Runnable task;
+        File file = null;
+        if (op.equals("load")) {
+            file = File.createTempFile("network", ".txt");
+            file.deleteOnExit();
+            write(G, file);
+            final String name = file.getPath();
+            task = () -> {
+                In in = new In(name);
+                sink += new EdgeWeightedDigraph(in).E();
+                in.close();
+            };
+        }
+        else if (op.equals("dijkstra")) {
+            task = () -> sink += (long) new DijkstraSP(G, random.nextInt(n)).distTo(n - 1);
+        }
+        else if (op.equals("p2p")) {
+            task = () -> {
+                int s = random.nextInt(n), t = random.nextInt(n);
+                DijkstraSP sp = new DijkstraSP(G, s, t);
+                ArrayList<DirectedEdge> path = sp.pathTo(t);
+                sink += path.size() + sp.bandwidth(path);
+            };
+        }
+        else if (op.equals("mst")) {
+            task = () -> sink += (long) new KruskalMST(G).weight();
+        }
+        else if (op.equals("copper")) {
+            task = () -> sink += G.isCopperConnected() ? 1 : 0;
+        }
+        else if (op.equals("failure")) {
+            task = () -> sink += G.failurePoint();
+        }
+        else if (op.equals("uf")) {
+            task = () -> {
+                UF uf = new UF(n);
+                for (int i = 0; i < n; i++) uf.union(random.nextInt(n), random.nextInt(n));
+                for (int i = 0; i < n; i++) sink += uf.find(random.nextInt(n));
+            };
+        }
+        else if (op.equals("indexpq")) {
+            task = () -> {
+                IndexMinPQ<Double> pq = new IndexMinPQ<Double>(n);
+                for (int i = 0; i < n; i++) pq.insert(i, random.nextDouble() + 1.0);
+                for (int i = 0; i < n; i++) pq.decreaseKey(i, random.nextDouble());
+                while (!pq.isEmpty()) sink += pq.delMin();
+            };
+        }
+        else if (op.equals("minpq")) {
+            task = () -> {
+                MinPQ<Double> pq = new MinPQ<Double>();
+                for (int i = 0; i < n; i++) pq.insert(random.nextDouble());
+                while (!pq.isEmpty()) sink += (long) (pq.delMin() * 10);
+            };
+        }
+        else throw new IllegalArgumentException("unknown operation " + op);
+
+        for (int i = 0; i < warmup; i++) task.run();
+
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long thread = Thread.currentThread().getId();
+        double[] times = new double[iterations];
+        long allocated = 0;
+        for (int i = 0; i < iterations; i++) {
+            long bytes = threads.getThreadAllocatedBytes(thread);
+            long start = System.nanoTime();
+            task.run();
+            times[i] = (System.nanoTime() - start) / 1e6;
+            allocated += threads.getThreadAllocatedBytes(thread) - bytes;
+        }
+        if (file != null) file.delete();
+
+        double mean = 0.0;
+        for (double t : times) mean += t;
+        mean /= iterations;
+        double var = 0.0;
+        for (double t : times) var += (t - mean) * (t - mean);
+        double stddev = iterations > 1 ? Math.sqrt(var / (iterations - 1)) : 0.0;
+        double mbPerOp = allocated / (double) iterations / (1 << 20);
+        return new Result(op, n, mean, stddev, mbPerOp, mbPerOp / (mean / 1000.0));
+    }
+
+    // one row of the results table
+    private static class Result {
+        private final String op;
+        private final int V;
+        private final double ms, error, mbPerOp, mbPerSec;
+
+        Result(String op, int V, double ms, double error, double mbPerOp, double mbPerSec) {
+            this.op = op;
+            this.V = V;
+            this.ms = ms;
+            this.error = error;
+            this.mbPerOp = mbPerOp;
+            this.mbPerSec = mbPerSec;
+        }
+
+        public String toString() {
+            return String.format("%-9s %9d %12.3f %7.3f %12.3f %12.1f", op, V, ms, error, mbPerOp, mbPerSec);
+        }
+    }
+
+    // baseline rows keyed by "op V", value is ms/op
+    private static HashMap<String, Double> readBaseline(String name) {
+        HashMap<String, Double> baseline = new HashMap<String, Double>();
+        In in = new In(name);
+        while (in.hasNextLine()) {
+            String line = in.readLine().trim();
+            if (line.isEmpty() || line.startsWith("#") || line.startsWith("op")) continue;
+            String[] fields = line.split("\\s+");
+            baseline.put(fields[0] + " " + fields[1], Double.parseDouble(fields[2]));
+        }
+        in.close();
+        return baseline;
+    }
+
+    private static int[] parseSizes(String list) {
+        String[] fields = list.split(",");
+        int[] sizes = new int[fields.length];
+        for (int i = 0; i < fields.length; i++)
+            sizes[i] = (int) Double.parseDouble(fields[i]);    // accepts 1e6
+        return sizes;
+    }
+
+    /**
+     * Runs the benchmarks and prints the results table.
+     *
+     * @param args the command-line arguments
+     * @throws IOException if the temporary file for {@code load} cannot be written
+     */
+    public static void main(String[] args) throws IOException {
+        int[] sizes = { 1000, 10000, 100000 };
+        String[] ops = ALL_OPS;
+        int warmup = 5, iterations = 10;
+        long seed = 1501;
+        String topology = "random";
+        HashMap<String, Double> baseline = null;
+        for (int i = 0; i < args.length; i += 2) {
+            if      (args[i].equals("-sizes"))      sizes = parseSizes(args[i+1]);
+            else if (args[i].equals("-ops"))        ops = args[i+1].split(",");
+            else if (args[i].equals("-warmup"))     warmup = Integer.parseInt(args[i+1]);
+            else if (args[i].equals("-iterations")) iterations = Integer.parseInt(args[i+1]);
+            else if (args[i].equals("-seed"))       seed = Long.parseLong(args[i+1]);
+            else if (args[i].equals("-topology"))   topology = args[i+1];
+            else if (args[i].equals("-baseline"))   baseline = readBaseline(args[i+1]);
+            else throw new IllegalArgumentException("unknown option " + args[i]);
+        }
+
+        NetworkBenchmark benchmark = new NetworkBenchmark(warmup, iterations, seed, topology);
+        StdOut.printf("%-9s %9s %12s %7s %12s %12s%s\n", "op", "V", "ms/op", "+-", "alloc MB/op", "alloc MB/s",
+                      baseline == null ? "" : "   vs baseline");
+        for (String op : ops) {
+            for (int V : sizes) {
+                Result r = benchmark.run(op, V);
+                Double before = baseline == null ? null : baseline.get(op + " " + V);
+                if (before == null) StdOut.println(r);
+                else StdOut.printf("%s   %+6.1f%%\n", r, 100.0 * (r.ms - before) / before);
+            }
+        }
+        if (sink == 42) StdOut.println();
+    }
+}
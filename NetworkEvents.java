@@ -0,0 +1,133 @@
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/******************************************************************************
+ *
+ *  Java Flight Recorder events for the network analysis operations.
+ *
+ *  % java -XX:StartFlightRecording=filename=network.jfr NetworkAnalysis network_data2.txt
+ *  % jfr print --categories "Network Analysis" network.jfr
+ *
+ ******************************************************************************/
+
+/**
+ *  The {@code NetworkEvents} class groups the custom Java Flight Recorder
+ *  events emitted by the analysis operations, so that a recording shows
+ *  which query was running when a latency spike, GC pause or allocation burst
+ *  happened. All events are in the category "Network Analysis" and record
+ *  their duration.
+ *  <ul>
+ *  <li> {@link GraphLoad}: loading a network file or snapshot
+ *  <li> {@link ShortestPath}: one {@link DijkstraSP} search
+ *  <li> {@link SpanningTree}: one {@link KruskalMST} build
+ *  <li> {@link CopperConnectivity}: one copper connectivity check
+ *  <li> {@link FailureAnalysis}: one two-vertex failure check
+ *  </ul>
+ *  Callers follow the pattern recommended for JFR: create the event, call
+ *  {@code begin()}, do the work, and fill in the fields only
+ *  {@code if (event.shouldCommit())}. When the events are disabled,
+ *  {@code shouldCommit()} is false, nothing is recorded, and the event object
+ *  does not escape, so the JIT compiler removes the allocation.
+ *
+ *  @author Runyuan Yan
+ */
+public final class NetworkEvents {
+
+    // don't instantiate
+    private NetworkEvents() { }
+
+    /**
+     * Loading a network.
+     */
+    @Name("network.GraphLoad")
+    @Label("Graph Load")
+    @Category("Network Analysis")
+    @Description("Loading a network description or snapshot")
+    @StackTrace(false)
+    public static final class GraphLoad extends Event {
+        @Label("Format")
+        public String format;
+
+        @Label("Vertices")
+        public int vertices;
+
+        @Label("Edges")
+        public int edges;
+    }
+
+    /**
+     * One shortest-path search.
+     */
+    @Name("network.ShortestPath")
+    @Label("Shortest Path")
+    @Category("Network Analysis")
+    @Description("One Dijkstra search; target is -1 for a full shortest-paths tree")
+    public static final class ShortestPath extends Event {
+        @Label("Source")
+        public int source;
+
+        @Label("Target")
+        public int target;
+
+        @Label("Vertices Settled")
+        public long verticesSettled;
+
+        @Label("Result Size")
+        @Description("Edges on the path to the target, or vertices reached for a full tree")
+        public int resultSize;
+    }
+
+    /**
+     * One minimum spanning tree computation.
+     */
+    @Name("network.SpanningTree")
+    @Label("Spanning Tree")
+    @Category("Network Analysis")
+    @Description("One Kruskal minimum spanning tree build")
+    public static final class SpanningTree extends Event {
+        @Label("Vertices")
+        public int vertices;
+
+        @Label("Edges Examined")
+        public long edgesExamined;
+
+        @Label("Result Size")
+        @Description("Edges in the spanning tree")
+        public int resultSize;
+    }
+
+    /**
+     * One copper connectivity check.
+     */
+    @Name("network.CopperConnectivity")
+    @Label("Copper Connectivity")
+    @Category("Network Analysis")
+    @Description("Checking connectivity over copper cables only")
+    public static final class CopperConnectivity extends Event {
+        @Label("Vertices")
+        public int vertices;
+
+        @Label("Connected")
+        public boolean connected;
+    }
+
+    /**
+     * One two-vertex failure check.
+     */
+    @Name("network.FailureAnalysis")
+    @Label("Failure Analysis")
+    @Category("Network Analysis")
+    @Description("Checking whether any two vertex failures disconnect the network")
+    public static final class FailureAnalysis extends Event {
+        @Label("Vertices")
+        public int vertices;
+
+        @Label("Failure Point")
+        @Description("A vertex cut off by two failures, or -1")
+        public int failurePoint;
+    }
+}
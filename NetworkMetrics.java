@@ -0,0 +1,327 @@
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+import javax.management.Attribute;
+import javax.management.AttributeList;
+import javax.management.AttributeNotFoundException;
+import javax.management.DynamicMBean;
+import javax.management.JMException;
+import javax.management.MBeanAttributeInfo;
+import javax.management.MBeanInfo;
+import javax.management.MBeanOperationInfo;
+import javax.management.MBeanParameterInfo;
+import javax.management.ObjectName;
+
+/******************************************************************************
+ *
+ *  Counters and timers for the hot paths of the network analysis.
+ *
+ *  % java -Dnetwork.metrics=true -Dnetwork.metrics.period=10 NetworkAnalysis network_data1.txt
+ *
+ ******************************************************************************/
+
+/**
+ *  The {@code NetworkMetrics} class collects low-overhead counters and timers
+ *  from {@link DijkstraSP} (vertices settled, edges relaxed), {@link IndexMinPQ}
+ *  (inserts, decrease-keys and delete-mins), {@link KruskalMST} (edges examined,
+ *  unions performed), {@link UF} (finds and the length of their paths) and the
+ *  network loaders.
+ *  <p>
+ *  Collection is off unless the JVM is started with {@code -Dnetwork.metrics=true}.
+ *  The flag is read once into the {@code static final} field {@link #ENABLED}, and
+ *  every instrumentation point is guarded by it, so when it is off the JIT
+ *  compiler removes the instrumentation entirely. When it is on, counts are
+ *  added to striped {@link LongAdder}s, so threads do not contend on a shared
+ *  cache line, and nothing is added per operation: {@link DijkstraSP} and
+ *  {@link KruskalMST} count in locals, {@link IndexMinPQ} and {@link UF} count
+ *  in fields of the instance, and each is published once, at the end of the
+ *  run of the {@link DijkstraSP}, {@link DynamicSP} or {@link KruskalMST} that
+ *  owns it. Heaps and union-finds used on their own are not counted.
+ *  <p>
+ *  The values can be read as a text snapshot with {@link #snapshot()}, printed
+ *  periodically with {@link #startReporter}, or read over JMX as the
+ *  attributes of the {@code network:type=NetworkMetrics} MBean.
+ *  {@link #install()} does the latter two according to the system properties
+ *  {@code network.metrics.period} (seconds) and {@code network.metrics.jmx}.
+ *
+ *  @author Runyuan Yan
+ */
+public final class NetworkMetrics implements DynamicMBean {
+
+    /**
+     * Whether metrics are collected, from the system property {@code network.metrics}.
+     */
+    public static final boolean ENABLED = Boolean.getBoolean("network.metrics");
+
+    /**
+     * The counters.
+     */
+    public enum Counter {
+        DIJKSTRA_SETTLED("dijkstra.verticesSettled"),
+        DIJKSTRA_RELAXED("dijkstra.edgesRelaxed"),
+        HEAP_INSERTS("indexMinPQ.inserts"),
+        HEAP_DECREASE_KEYS("indexMinPQ.decreaseKeys"),
+        HEAP_DELETE_MINS("indexMinPQ.deleteMins"),
+        KRUSKAL_EXAMINED("kruskal.edgesExamined"),
+        KRUSKAL_UNIONS("kruskal.unions"),
+        UF_FINDS("uf.finds"),
+        UF_FIND_PATH("uf.findPathLength"),
+        EDGES_LOADED("load.edges");
+
+        private final String name;
+        private final LongAdder adder = new LongAdder();
+
+        Counter(String name) {
+            this.name = name;
+        }
+
+        /**
+         * Adds {@code n} to this counter.
+         *
+         * @param n the amount to add
+         */
+        public void add(long n) {
+            adder.add(n);
+        }
+
+        /**
+         * Adds one to this counter.
+         */
+        public void increment() {
+            adder.increment();
+        }
+
+        /**
+         * Returns the current value of this counter.
+         *
+         * @return the current value
+         */
+        public long value() {
+            return adder.sum();
+        }
+    }
+
+    /**
+     * The per-operation timers.
+     */
+    public enum Timer {
+        LOAD("load"),
+        DIJKSTRA("dijkstra"),
+        KRUSKAL("kruskal");
+
+        private final String name;
+        private final LongAdder count = new LongAdder();
+        private final LongAdder nanos = new LongAdder();
+        private final LongAccumulator max = new LongAccumulator(Math::max, 0);
+
+        Timer(String name) {
+            this.name = name;
+        }
+
+        /**
+         * Returns a start time for {@link #stop}, or 0 when metrics are disabled.
+         *
+         * @return the start time in nanoseconds
+         */
+        public long start() {
+            return ENABLED ? System.nanoTime() : 0;
+        }
+
+        /**
+         * Records one operation that began at {@code start}.
+         *
+         * @param start the value returned by {@link #start}
+         */
+        public void stop(long start) {
+            if (!ENABLED) return;
+            long elapsed = System.nanoTime() - start;
+            count.increment();
+            nanos.add(elapsed);
+            max.accumulate(elapsed);
+        }
+
+        /**
+         * Returns the number of operations recorded.
+         *
+         * @return the number of operations
+         */
+        public long count() {
+            return count.sum();
+        }
+
+        /**
+         * Returns the total time of the operations recorded, in nanoseconds.
+         *
+         * @return the total time in nanoseconds
+         */
+        public long nanos() {
+            return nanos.sum();
+        }
+
+        /**
+         * Returns the longest operation recorded, in nanoseconds.
+         *
+         * @return the maximum time in nanoseconds
+         */
+        public long maxNanos() {
+            return max.get();
+        }
+    }
+
+    private static final NetworkMetrics MBEAN = new NetworkMetrics();
+
+    // use the static methods
+    private NetworkMetrics() { }
+
+    /**
+     * Returns all counters and timers as text, one {@code name value} pair per line.
+     * Timers are reported as {@code .count}, {@code .totalMs} and {@code .maxMs}.
+     *
+     * @return the text snapshot
+     */
+    public static String snapshot() {
+        StringBuilder s = new StringBuilder();
+        for (Counter c : Counter.values())
+            s.append(c.name).append(' ').append(c.value()).append('\n');
+        for (Timer t : Timer.values()) {
+            s.append(t.name).append(".count ").append(t.count()).append('\n');
+            s.append(t.name).append(".totalMs ").append(String.format("%.3f", t.nanos() / 1e6)).append('\n');
+            s.append(t.name).append(".maxMs ").append(String.format("%.3f", t.maxNanos() / 1e6)).append('\n');
+        }
+        return s.toString();
+    }
+
+    /**
+     * Resets all counters and timers to zero.
+     */
+    public static void reset() {
+        for (Counter c : Counter.values()) c.adder.reset();
+        for (Timer t : Timer.values()) {
+            t.count.reset();
+            t.nanos.reset();
+            t.max.reset();
+        }
+    }
+
+    /**
+     * Prints a snapshot to {@code out} every {@code period} seconds from a daemon thread.
+     *
+     * @param  period the period in seconds
+     * @param  out the stream to print to
+     * @return the executor running the reporter; shut it down to stop reporting
+     * @throws IllegalArgumentException unless {@code period > 0}
+     */
+    public static ScheduledExecutorService startReporter(long period, PrintStream out) {
+        if (period <= 0) throw new IllegalArgumentException("period must be positive");
+        ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "network-metrics");
+            thread.setDaemon(true);
+            return thread;
+        });
+        executor.scheduleAtFixedRate(() -> out.print(snapshot()), period, period, TimeUnit.SECONDS);
+        return executor;
+    }
+
+    /**
+     * Registers the {@code network:type=NetworkMetrics} MBean with the platform MBean server.
+     *
+     * @throws IllegalStateException if the MBean cannot be registered
+     */
+    public static void registerMBean() {
+        try {
+            ObjectName name = new ObjectName("network:type=NetworkMetrics");
+            if (!ManagementFactory.getPlatformMBeanServer().isRegistered(name))
+                ManagementFactory.getPlatformMBeanServer().registerMBean(MBEAN, name);
+        }
+        catch (JMException e) {
+            throw new IllegalStateException("could not register metrics MBean", e);
+        }
+    }
+
+    /**
+     * Starts the periodic reporter (to standard error) if {@code network.metrics.period}
+     * is set and registers the MBean if {@code network.metrics.jmx} is true.
+     * Does nothing when metrics are disabled.
+     */
+    public static void install() {
+        if (!ENABLED) return;
+        long period = Long.getLong("network.metrics.period", 0);
+        if (period > 0) startReporter(period, System.err);
+        if (Boolean.getBoolean("network.metrics.jmx")) registerMBean();
+    }
+
+   /***************************************************************************
+    * DynamicMBean: every snapshot line is a read-only long or double attribute.
+    ***************************************************************************/
+
+    @Override
+    public Object getAttribute(String attribute) throws AttributeNotFoundException {
+        for (Counter c : Counter.values())
+            if (c.name.equals(attribute)) return c.value();
+        for (Timer t : Timer.values()) {
+            if (attribute.equals(t.name + ".count"))   return t.count();
+            if (attribute.equals(t.name + ".totalMs")) return t.nanos() / 1e6;
+            if (attribute.equals(t.name + ".maxMs"))   return t.maxNanos() / 1e6;
+        }
+        throw new AttributeNotFoundException(attribute);
+    }
+
+    @Override
+    public AttributeList getAttributes(String[] attributes) {
+        AttributeList list = new AttributeList();
+        for (String a : attributes) {
+            try {
+                list.add(new Attribute(a, getAttribute(a)));
+            }
+            catch (AttributeNotFoundException e) {
+                // skipped, as the DynamicMBean contract allows
+            }
+        }
+        return list;
+    }
+
+    @Override
+    public void setAttribute(Attribute attribute) throws AttributeNotFoundException {
+        throw new AttributeNotFoundException(attribute.getName() + " is read-only");
+    }
+
+    @Override
+    public AttributeList setAttributes(AttributeList attributes) {
+        return new AttributeList();
+    }
+
+    @Override
+    public Object invoke(String action, Object[] params, String[] signature) {
+        if (action.equals("reset")) {
+            reset();
+            return null;
+        }
+        if (action.equals("snapshot")) return snapshot();
+        throw new UnsupportedOperationException(action);
+    }
+
+    @Override
+    public MBeanInfo getMBeanInfo() {
+        Counter[] counters = Counter.values();
+        Timer[] timers = Timer.values();
+        MBeanAttributeInfo[] attributes = new MBeanAttributeInfo[counters.length + 3*timers.length];
+        int i = 0;
+        for (Counter c : counters)
+            attributes[i++] = new MBeanAttributeInfo(c.name, "long", c.name, true, false, false);
+        for (Timer t : timers) {
+            attributes[i++] = new MBeanAttributeInfo(t.name + ".count", "long", "operations", true, false, false);
+            attributes[i++] = new MBeanAttributeInfo(t.name + ".totalMs", "double", "total milliseconds", true, false, false);
+            attributes[i++] = new MBeanAttributeInfo(t.name + ".maxMs", "double", "longest operation in milliseconds", true, false, false);
+        }
+        MBeanOperationInfo[] operations = {
+            new MBeanOperationInfo("reset", "reset all metrics", new MBeanParameterInfo[0], "void", MBeanOperationInfo.ACTION),
+            new MBeanOperationInfo("snapshot", "text snapshot", new MBeanParameterInfo[0], "java.lang.String", MBeanOperationInfo.INFO)
+        };
+        return new MBeanInfo(NetworkMetrics.class.getName(), "Network analysis hot-path metrics",
+                             attributes, null, operations, null);
+    }
+}
@@ -0,0 +1,144 @@
+import java.util.ArrayList;
+
+/******************************************************************************
+ *
+ *  An immutable path through a CompactDigraph, with its latency and
+ *  bottleneck bandwidth.
+ *
+ ******************************************************************************/
+
+/**
+ *  The {@code NetworkPath} class represents a path between two switches as
+ *  the edge numbers of a {@link CompactDigraph}, in order from the source.
+ *  It reports the two figures a circuit is provisioned by: the total
+ *  latency, and the bandwidth, which for a path is the bandwidth of its
+ *  narrowest cable (unlike {@link DijkstraSP#bandwidth}, which adds up the
+ *  bandwidths along a path).
+ *
+ *  @author Runyuan Yan
+ */
+public class NetworkPath implements Comparable<NetworkPath> {
+    private final CompactDigraph G;
+    private final int[] edges;
+    private final int source, target;
+    private final double latency;
+    private final int bandwidth;
+
+    /**
+     * Creates the path made of {@code edges}.
+     *
+     * @param  G the network snapshot
+     * @param  source the first vertex, used when the path has no edges
+     * @param  edges the edge numbers, in order from the source
+     * @throws IllegalArgumentException if the edges do not form a walk from {@code source}
+     */
+    public NetworkPath(CompactDigraph G, int source, int[] edges) {
+        this.G = G;
+        this.edges = edges.clone();
+        this.source = source;
+        double latency = 0.0;
+        int bandwidth = Integer.MAX_VALUE;
+        int v = source;
+        for (int e : this.edges) {
+            if (G.from(e) != v)
+                throw new IllegalArgumentException("edge " + G.edge(e) + " does not continue the path at " + v);
+            latency += G.latency(e);
+            bandwidth = Math.min(bandwidth, G.bandwidth(e));
+            v = G.to(e);
+        }
+        this.target = v;
+        this.latency = latency;
+        this.bandwidth = bandwidth;
+    }
+
+    /**
+     * Returns the first vertex of the path.
+     *
+     * @return the source
+     */
+    public int source() {
+        return source;
+    }
+
+    /**
+     * Returns the last vertex of the path.
+     *
+     * @return the target
+     */
+    public int target() {
+        return target;
+    }
+
+    /**
+     * Returns the total latency of the path, in nanoseconds.
+     *
+     * @return the latency
+     */
+    public double latency() {
+        return latency;
+    }
+
+    /**
+     * Returns the bandwidth of the narrowest cable on the path.
+     *
+     * @return the bottleneck bandwidth; {@code Integer.MAX_VALUE} for a path with no edges
+     */
+    public int bandwidth() {
+        return bandwidth;
+    }
+
+    /**
+     * Returns the number of edges on the path.
+     *
+     * @return the number of hops
+     */
+    public int hops() {
+        return edges.length;
+    }
+
+    /**
+     * Returns the number of the {@code i}-th edge of the path.
+     *
+     * @param  i the position, from 0 at the source
+     * @return the edge number
+     */
+    public int edgeAt(int i) {
+        return edges[i];
+    }
+
+    /**
+     * Returns the edges of the path, in order from the source.
+     *
+     * @return the edges
+     */
+    public ArrayList<DirectedEdge> edges() {
+        ArrayList<DirectedEdge> list = new ArrayList<DirectedEdge>(edges.length);
+        for (int e : edges) list.add(G.edge(e));
+        return list;
+    }
+
+    /**
+     * Compares two paths by latency.
+     *
+     * @param  that the other path
+     * @return a negative integer, zero, or positive integer depending on whether
+     *         the latency of this path is less than, equal to, or greater than
+     *         the latency of that path
+     */
+    public int compareTo(NetworkPath that) {
+        return Double.compare(this.latency, that.latency);
+    }
+
+    /**
+     * Returns a string representation of the path.
+     *
+     * @return the vertices of the path, its latency and its bandwidth
+     */
+    public String toString() {
+        StringBuilder s = new StringBuilder();
+        s.append(source);
+        for (int e : edges) s.append("->").append(G.to(e));
+        s.append(String.format(" (%.2f ns, bandwidth %d)", latency, bandwidth));
+        return s.toString();
+    }
+}
@@ -0,0 +1,137 @@
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/******************************************************************************
+ *  Compilation:  javac NetworkSnapshot.java
+ *  Execution:    none
+ *  Dependencies: EdgeWeightedDigraph.java DirectedEdge.java
+ *
+ *  Binary form of the network description.
+ *
+ ******************************************************************************/
+
+/**
+ *  The {@code NetworkSnapshot} class reads and writes networks in a compact
+ *  binary form of the text format accepted by
+ *  {@link EdgeWeightedDigraph#EdgeWeightedDigraph(In)}, for networks too large
+ *  to parse as text on every start.
+ *  <p>
+ *  A snapshot is big-endian, like {@link BinaryStdOut}: the 32-bit magic
+ *  number {@code 0x4E455431} ("NET1"), the number of vertices <em>V</em> and
+ *  the number of cables as 32-bit ints, then one 13-byte record per cable:
+ *  the two endpoints (int), the material (byte, 0 for copper and 1 for
+ *  optical), the bandwidth (int) and the length (int).
+ *  As in the text format, every cable is full duplex and is added to the
+ *  digraph as two directed edges.
+ *
+ *  @author Runyuan Yan
+ */
+public final class NetworkSnapshot {
+    static final int MAGIC = 0x4E455431;
+    static final byte COPPER = 0;
+    static final byte OPTICAL = 1;
+
+    // don't instantiate
+    private NetworkSnapshot() { }
+
+    /**
+     * Returns true if the file starts with the snapshot magic number.
+     *
+     * @param  name the file name
+     * @return {@code true} if {@code name} is a snapshot; {@code false} otherwise
+     */
+    public static boolean isSnapshot(String name) {
+        try (DataInputStream in = new DataInputStream(new FileInputStream(name))) {
+            return in.readInt() == MAGIC;
+        }
+        catch (IOException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Reads a network snapshot.
+     *
+     * @param  name the file name
+     * @return the network, with every cable added in both directions
+     * @throws IllegalArgumentException if the file cannot be read or is not a snapshot
+     */
+    public static EdgeWeightedDigraph read(String name) {
+        long start = NetworkMetrics.Timer.LOAD.start();
+        NetworkEvents.GraphLoad event = new NetworkEvents.GraphLoad();
+        event.begin();
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(name), 1 << 16))) {
+            if (in.readInt() != MAGIC) throw new IllegalArgumentException(name + " is not a network snapshot");
+            int V = in.readInt();
+            int cables = in.readInt();
+            EdgeWeightedDigraph G = new EdgeWeightedDigraph(V);
+            for (int i = 0; i < cables; i++) {
+                int v = in.readInt();
+                int w = in.readInt();
+                String material = in.readByte() == COPPER ? "copper" : "optical";
+                int bandWidth = in.readInt();
+                int length = in.readInt();
+                G.addEdge(new DirectedEdge(v, w, material, length, bandWidth));
+                G.addEdge(new DirectedEdge(w, v, material, length, bandWidth));
+            }
+            if (NetworkMetrics.ENABLED) {
+                NetworkMetrics.Counter.EDGES_LOADED.add(G.E());
+                NetworkMetrics.Timer.LOAD.stop(start);
+            }
+            if (event.shouldCommit()) {
+                event.format = "snapshot";
+                event.vertices = V;
+                event.edges = G.E();
+                event.commit();
+            }
+            return G;
+        }
+        catch (IOException e) {
+            throw new IllegalArgumentException("Could not read " + name, e);
+        }
+    }
+
+    /**
+     * Writes a network that was built with every cable in both directions,
+     * such as one returned by {@link #read}, as a snapshot.
+     * Only the direction with {@code from() <= to()} of each cable is written.
+     *
+     * @param  G the network
+     * @param  out the output stream; it is flushed but not closed
+     * @throws IOException if the stream cannot be written
+     */
+    public static void write(EdgeWeightedDigraph G, OutputStream out) throws IOException {
+        int cables = 0, loops = 0;    // a self-loop cable shows up twice in adj(v)
+        for (int v = 0; v < G.V(); v++) {
+            for (DirectedEdge e : G.adj(v)) {
+                if      (e.from() < e.to())  cables++;
+                else if (e.from() == e.to()) loops++;
+            }
+        }
+        DataOutputStream data = new DataOutputStream(new BufferedOutputStream(out, 1 << 16));
+        data.writeInt(MAGIC);
+        data.writeInt(G.V());
+        data.writeInt(cables + loops/2);
+        boolean twin = false;
+        for (int v = 0; v < G.V(); v++) {
+            for (DirectedEdge e : G.adj(v)) {
+                if (e.from() > e.to()) continue;
+                if (e.from() == e.to()) {
+                    twin = !twin;
+                    if (!twin) continue;
+                }
+                data.writeInt(e.from());
+                data.writeInt(e.to());
+                data.writeByte(e.material().equals("copper") ? COPPER : OPTICAL);
+                data.writeInt(e.bandWidth());
+                data.writeInt(e.length());
+            }
+        }
+        data.flush();
+    }
+}
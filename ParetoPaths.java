@@ -0,0 +1,246 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+
+/******************************************************************************
+ *  Compilation:  javac ParetoPaths.java
+ *  Execution:    java ParetoPaths network.txt s t
+ *  Dependencies: CompactDigraph.java EdgeFilter.java NetworkPath.java
+ *                EdgeWeightedDigraph.java NetworkSnapshot.java In.java StdOut.java
+ *
+ *  Every Pareto-optimal path between two switches by latency and bottleneck
+ *  bandwidth, with a multi-criteria label-setting search.
+ *
+ *  % java ParetoPaths network_data1.txt 0 1
+ *  0->4->1 (69.57 ns, bandwidth 100)
+ *  0->2->1 (100.00 ns, bandwidth 10000)
+ *  2 paths, 9 labels
+ *
+ ******************************************************************************/
+
+/**
+ *  The {@code ParetoPaths} class computes the trade-off between latency and
+ *  bandwidth between two switches: every path such that no other path has
+ *  both lower or equal latency and higher or equal bottleneck bandwidth, one
+ *  path for each such (latency, bandwidth) pair. {@link DijkstraSP} finds only
+ *  the end of this frontier with the lowest latency.
+ *  <p>
+ *  The search is Martins' multi-criteria label-setting algorithm. A label is
+ *  a path from the source to some vertex, with its latency and bandwidth;
+ *  labels are settled in order of latency, highest bandwidth first among
+ *  equals. Because they come out in that order, the labels settled at a
+ *  vertex form its Pareto set with increasing bandwidth, and a new label is
+ *  dominated exactly when its bandwidth is no higher than that of the last
+ *  label settled there. A label is dropped as soon as it is dominated at
+ *  its vertex or by a label settled at the target, as no extension of it
+ *  can then reach the frontier. A vertex has at most one label per distinct
+ *  bandwidth in the network, so the search settles at most <em>V</em>
+ *  times that many labels.
+ *  <p>
+ *  Labels are not objects: they live in pooled parallel arrays that grow as
+ *  needed and are reused by every query, and the priority queue is a binary
+ *  heap of label numbers, so a query allocates nothing once the pool is
+ *  large enough, apart from the paths it returns. An optional
+ *  {@link EdgeFilter} restricts the edges the search uses. An instance is not
+ *  thread-safe.
+ *
+ *  @author Runyuan Yan
+ */
+public class ParetoPaths {
+    private static final double EPSILON = 1e-9;     // relative margin for equal latencies despite rounding
+
+    private final CompactDigraph G;
+    private final EdgeFilter filter;
+
+    // label pool
+    private int[] labelVertex = new int[64];
+    private double[] labelLatency = new double[64];
+    private int[] labelBandwidth = new int[64];
+    private int[] labelPred = new int[64];          // label extended, -1 at the source
+    private int[] labelEdge = new int[64];          // edge from the label extended, -1 at the source
+    private int labels;
+
+    private int[] heap = new int[64];               // label numbers, by latency then highest bandwidth
+    private int heapSize;
+
+    private final int[] best;                       // best[v] = bandwidth of the last label settled at v
+    private final int[] stamp;
+    private int epoch;
+
+    /**
+     * Creates a search over every edge of {@code G}.
+     *
+     * @param  G the network snapshot
+     */
+    public ParetoPaths(CompactDigraph G) {
+        this(G, null);
+    }
+
+    /**
+     * Creates a search over the edges of {@code G} that {@code filter} accepts.
+     *
+     * @param  G the network snapshot
+     * @param  filter the filter, or {@code null} for every edge
+     */
+    public ParetoPaths(CompactDigraph G, EdgeFilter filter) {
+        this.G = G;
+        this.filter = filter;
+        best = new int[G.V()];
+        stamp = new int[G.V()];
+    }
+
+    /**
+     * Returns the Pareto-optimal paths from {@code s} to {@code t} by latency
+     * and bottleneck bandwidth.
+     *
+     * @param  s the source
+     * @param  t the target
+     * @return the paths in order of increasing latency, and so of increasing
+     *         bandwidth; none if {@code t} is unreachable
+     * @throws IllegalArgumentException unless {@code 0 <= s < V} and {@code 0 <= t < V}
+     */
+    public ArrayList<NetworkPath> frontier(int s, int t) {
+        validateVertex(s);
+        validateVertex(t);
+        nextEpoch();
+        labels = 0;
+        heapSize = 0;
+        push(newLabel(s, 0.0, Integer.MAX_VALUE, -1, -1));
+
+        ArrayList<Integer> found = new ArrayList<Integer>();
+        while (heapSize > 0) {
+            int x = removeMin();
+            int v = labelVertex[x];
+            int b = labelBandwidth[x];
+            if (dominated(v, b) || dominated(t, b)) continue;
+            stamp[v] = epoch;
+            best[v] = b;
+            if (v == t) {
+                // the same latency summed in another order can come out a
+                // rounding error lower; the higher bandwidth takes its place
+                int last = found.isEmpty() ? -1 : found.get(found.size() - 1);
+                if (last >= 0 && labelLatency[last] >= labelLatency[x] * (1 - EPSILON))
+                    found.remove(found.size() - 1);
+                found.add(x);
+                continue;
+            }
+            double d = labelLatency[x];
+            for (int e = G.begin(v); e < G.end(v); e++) {
+                if (filter != null && !filter.accepts(e)) continue;
+                int w = G.to(e);
+                int bw = Math.min(b, G.bandwidth(e));
+                if (dominated(w, bw) || dominated(t, bw)) continue;
+                push(newLabel(w, d + G.latency(e), bw, x, e));
+            }
+        }
+
+        ArrayList<NetworkPath> paths = new ArrayList<NetworkPath>(found.size());
+        for (int x : found) {
+            int n = 0;
+            for (int y = x; labelPred[y] >= 0; y = labelPred[y]) n++;
+            int[] edges = new int[n];
+            for (int y = x; labelPred[y] >= 0; y = labelPred[y]) edges[--n] = labelEdge[y];
+            paths.add(new NetworkPath(G, s, edges));
+        }
+        return paths;
+    }
+
+    // is bandwidth b at v no better than a label already settled there?
+    private boolean dominated(int v, int b) {
+        return stamp[v] == epoch && b <= best[v];
+    }
+
+    /**
+     * Returns the number of labels the last query created, a measure of its work.
+     *
+     * @return the number of labels
+     */
+    public int labels() {
+        return labels;
+    }
+
+    private int newLabel(int v, double latency, int bandwidth, int pred, int edge) {
+        if (labels == labelVertex.length) {
+            int n = 2 * labels;
+            labelVertex = Arrays.copyOf(labelVertex, n);
+            labelLatency = Arrays.copyOf(labelLatency, n);
+            labelBandwidth = Arrays.copyOf(labelBandwidth, n);
+            labelPred = Arrays.copyOf(labelPred, n);
+            labelEdge = Arrays.copyOf(labelEdge, n);
+        }
+        int x = labels++;
+        labelVertex[x] = v;
+        labelLatency[x] = latency;
+        labelBandwidth[x] = bandwidth;
+        labelPred[x] = pred;
+        labelEdge[x] = edge;
+        return x;
+    }
+
+    private void nextEpoch() {
+        if (++epoch == 0) {
+            Arrays.fill(stamp, 0);
+            epoch = 1;
+        }
+    }
+
+   /***************************************************************************
+    * Heap of labels, by latency and then by highest bandwidth.
+    ***************************************************************************/
+
+    private boolean less(int x, int y) {
+        if (labelLatency[x] != labelLatency[y]) return labelLatency[x] < labelLatency[y];
+        return labelBandwidth[x] > labelBandwidth[y];
+    }
+
+    private void push(int x) {
+        if (heapSize == heap.length) heap = Arrays.copyOf(heap, 2 * heapSize);
+        int i = heapSize++;
+        while (i > 0) {
+            int p = (i - 1) >>> 1;
+            if (!less(x, heap[p])) break;
+            heap[i] = heap[p];
+            i = p;
+        }
+        heap[i] = x;
+    }
+
+    private int removeMin() {
+        int min = heap[0];
+        int x = heap[--heapSize];
+        int i = 0;
+        while (true) {
+            int c = 2*i + 1;
+            if (c >= heapSize) break;
+            if (c + 1 < heapSize && less(heap[c+1], heap[c])) c++;
+            if (!less(heap[c], x)) break;
+            heap[i] = heap[c];
+            i = c;
+        }
+        heap[i] = x;
+        return min;
+    }
+
+    // throw an IllegalArgumentException unless {@code 0 <= v < V}
+    private void validateVertex(int v) {
+        if (v < 0 || v >= G.V())
+            throw new IllegalArgumentException("vertex " + v + " is not between 0 and " + (G.V()-1));
+    }
+
+    /**
+     * Prints the Pareto-optimal paths between two switches.
+     *
+     * @param args the command-line arguments
+     */
+    public static void main(String[] args) {
+        EdgeWeightedDigraph network = NetworkSnapshot.isSnapshot(args[0])
+                                    ? NetworkSnapshot.read(args[0])
+                                    : new EdgeWeightedDigraph(new In(args[0]));
+        int s = Integer.parseInt(args[1]);
+        int t = Integer.parseInt(args[2]);
+        ParetoPaths search = new ParetoPaths(new CompactDigraph(network));
+        ArrayList<NetworkPath> paths = search.frontier(s, t);
+        for (NetworkPath path : paths)
+            StdOut.println(path);
+        StdOut.printf("%d paths, %d labels%n", paths.size(), search.labels());
+    }
+}
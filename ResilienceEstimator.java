@@ -0,0 +1,344 @@
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/******************************************************************************
+ *  Compilation:  javac ResilienceEstimator.java
+ *  Execution:    java ResilienceEstimator network.txt switches|cables k samples [-seed n]
+ *  Dependencies: CompactDigraph.java SearchWorkspace.java EdgeWeightedDigraph.java
+ *                NetworkSnapshot.java In.java StdOut.java
+ *
+ *  Monte Carlo estimate of the fraction of switch pairs disconnected by
+ *  k random switch or cable failures.
+ *
+ *  % java ResilienceEstimator network_data2.txt switches 2 100000
+ *  100000 samples of 2 failed switches
+ *  disconnected pairs: 0.031443 (95% CI 0.030889 .. 0.031997)
+ *  P(partitioned):     0.110050 (95% CI 0.108125 .. 0.112005)
+ *
+ ******************************************************************************/
+
+/**
+ *  The {@code ResilienceEstimator} class estimates how badly a network is cut
+ *  up by <em>k</em> simultaneous failures. Where
+ *  {@link EdgeWeightedDigraph#failurePoint()} answers yes or no for any two
+ *  switch failures, each sample here fails <em>k</em> switches or <em>k</em>
+ *  cables chosen uniformly at random and measures the fraction of pairs of
+ *  surviving switches that can no longer reach each other. The estimate is the
+ *  mean over the samples, with a 95% confidence interval from the normal
+ *  approximation; the probability that a sample partitions the network at
+ *  all is reported with a Wilson score interval.
+ *  <p>
+ *  Each sample sets the failures as masks in a {@link SearchWorkspace} and
+ *  runs one union-find pass over the edge array of a shared
+ *  {@link CompactDigraph}, so sampling allocates nothing. The samples are
+ *  divided into a fixed number of chunks, each with its own
+ *  {@link SplittableRandom} split from the seed in chunk order, and the chunks
+ *  run on a {@link ForkJoinPool}. The same seed therefore gives the same
+ *  estimate on any number of cores.
+ *
+ *  @author Runyuan Yan
+ */
+public class ResilienceEstimator {
+    private static final int CHUNKS = 256;      // independent random streams per estimate
+    private static final double Z = 1.959964;   // two-sided 95% normal quantile
+
+    private final CompactDigraph G;
+    private final int[] cables;                 // one edge number per duplex cable
+    private final ThreadLocal<SearchWorkspace> workspace;
+    private final ThreadLocal<int[]> vertexPool;
+    private final ThreadLocal<int[]> cablePool;
+
+    /**
+     * What fails in a sample.
+     */
+    public enum Failure {
+        /** <em>k</em> switches fail, with all their cables. */
+        SWITCHES,
+        /** <em>k</em> cables fail, in both directions. */
+        CABLES
+    }
+
+    /**
+     * Creates an estimator for the network {@code G}.
+     *
+     * @param  G the network snapshot
+     */
+    public ResilienceEstimator(CompactDigraph G) {
+        this.G = G;
+        int count = 0;
+        for (int e = 0; e < G.E(); e++)
+            if (G.twin(e) < 0 || e < G.twin(e)) count++;
+        cables = new int[count];
+        count = 0;
+        for (int e = 0; e < G.E(); e++)
+            if (G.twin(e) < 0 || e < G.twin(e)) cables[count++] = e;
+
+        workspace = ThreadLocal.withInitial(() -> new SearchWorkspace(G));
+        vertexPool = ThreadLocal.withInitial(() -> new int[G.V()]);
+        cablePool = ThreadLocal.withInitial(() -> new int[cables.length]);
+    }
+
+    /**
+     * Estimates the fraction of disconnected pairs under {@code k} random
+     * failures on the common {@link ForkJoinPool}.
+     *
+     * @param  failure whether switches or cables fail
+     * @param  k the number of failures per sample
+     * @param  samples the number of samples
+     * @param  seed the seed of the random streams
+     * @return the estimate
+     * @throws IllegalArgumentException unless {@code 0 <= k <=} the number of switches or cables
+     * @throws IllegalArgumentException unless {@code samples > 0}
+     */
+    public Estimate estimate(Failure failure, int k, long samples, long seed) {
+        return estimate(failure, k, samples, seed, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Estimates the fraction of disconnected pairs under {@code k} random
+     * failures on {@code pool}.
+     *
+     * @param  failure whether switches or cables fail
+     * @param  k the number of failures per sample
+     * @param  samples the number of samples
+     * @param  seed the seed of the random streams
+     * @param  pool the pool to run the samples on
+     * @return the estimate
+     * @throws IllegalArgumentException unless {@code 0 <= k <=} the number of switches or cables
+     * @throws IllegalArgumentException unless {@code samples > 0}
+     */
+    public Estimate estimate(Failure failure, int k, long samples, long seed, ForkJoinPool pool) {
+        int available = failure == Failure.SWITCHES ? G.V() : cables.length;
+        if (k < 0 || k > available)
+            throw new IllegalArgumentException("k must be between 0 and " + available);
+        if (samples <= 0) throw new IllegalArgumentException("samples must be positive");
+
+        int chunks = (int) Math.min(CHUNKS, samples);
+        SplittableRandom root = new SplittableRandom(seed);
+        SplittableRandom[] streams = new SplittableRandom[chunks];
+        for (int i = 0; i < chunks; i++)
+            streams[i] = root.split();
+        Estimate estimate = new Estimate(failure, k, samples, chunks);
+        long start = System.nanoTime();
+        pool.invoke(new Chunks(estimate, streams, 0, chunks));
+        estimate.nanos = System.nanoTime() - start;
+        return estimate;
+    }
+
+    // runs chunks lo .. hi-1, splitting the range in half while it is larger than one
+    private class Chunks extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+        private final Estimate estimate;
+        private final SplittableRandom[] streams;
+        private final int lo, hi;
+
+        Chunks(Estimate estimate, SplittableRandom[] streams, int lo, int hi) {
+            this.estimate = estimate;
+            this.streams = streams;
+            this.lo = lo;
+            this.hi = hi;
+        }
+
+        @Override
+        protected void compute() {
+            if (hi - lo > 1) {
+                int mid = (lo + hi) >>> 1;
+                invokeAll(new Chunks(estimate, streams, lo, mid), new Chunks(estimate, streams, mid, hi));
+                return;
+            }
+            for (int i = lo; i < hi; i++)
+                sampleChunk(estimate, i, streams[i]);
+        }
+    }
+
+    // runs the samples of one chunk and records their sums
+    private void sampleChunk(Estimate estimate, int chunk, SplittableRandom random) {
+        long n = estimate.samples / estimate.sum.length
+               + (chunk < estimate.samples % estimate.sum.length ? 1 : 0);
+        SearchWorkspace ws = workspace.get();
+        boolean switches = estimate.failure == Failure.SWITCHES;
+        int[] pool = switches ? vertexPool.get() : cablePool.get();
+        // start every chunk from the same order, whichever thread ran before
+        for (int i = 0; i < pool.length; i++)
+            pool[i] = switches ? i : cables[i];
+        int k = estimate.k;
+        long survivors = switches ? G.V() - k : G.V();
+        double pairs = survivors * (survivors - 1) / 2.0;
+
+        double sum = 0.0, sumSquares = 0.0;
+        long partitioned = 0;
+        for (long s = 0; s < n; s++) {
+            ws.clearMasks();
+            // partial Fisher-Yates shuffle: pool[0..k-1] is a uniform k-subset
+            for (int i = 0; i < k; i++) {
+                int j = i + random.nextInt(pool.length - i);
+                int swap = pool[i];
+                pool[i] = pool[j];
+                pool[j] = swap;
+                if (switches) ws.excludeVertex(pool[i]);
+                else          ws.excludeCable(pool[i]);
+            }
+            int components = ws.components();
+            double x = pairs == 0 ? 0.0 : 1.0 - ws.connectedPairs() / pairs;
+            sum += x;
+            sumSquares += x * x;
+            if (components > 1) partitioned++;
+        }
+        estimate.sum[chunk] = sum;
+        estimate.sumSquares[chunk] = sumSquares;
+        estimate.partitioned[chunk] = partitioned;
+    }
+
+    /**
+     * The result of an estimate.
+     */
+    public static class Estimate {
+        private final Failure failure;
+        private final int k;
+        private final long samples;
+        private final double[] sum;           // per chunk
+        private final double[] sumSquares;
+        private final long[] partitioned;
+        private long nanos;
+
+        private Estimate(Failure failure, int k, long samples, int chunks) {
+            this.failure = failure;
+            this.k = k;
+            this.samples = samples;
+            sum = new double[chunks];
+            sumSquares = new double[chunks];
+            partitioned = new long[chunks];
+        }
+
+        /**
+         * Returns the number of samples.
+         *
+         * @return the number of samples
+         */
+        public long samples() {
+            return samples;
+        }
+
+        /**
+         * Returns the estimated fraction of pairs of surviving switches that are disconnected.
+         *
+         * @return the mean over the samples
+         */
+        public double mean() {
+            double total = 0.0;
+            for (double s : sum) total += s;
+            return total / samples;
+        }
+
+        /**
+         * Returns the sample standard deviation of the fraction of disconnected pairs.
+         *
+         * @return the standard deviation
+         */
+        public double stddev() {
+            if (samples < 2) return 0.0;
+            double total = 0.0;
+            for (double s : sumSquares) total += s;
+            double mean = mean();
+            return Math.sqrt(Math.max(0.0, (total - samples * mean * mean) / (samples - 1)));
+        }
+
+        /**
+         * Returns the lower end of the 95% confidence interval of {@code mean()}.
+         *
+         * @return the lower confidence limit
+         */
+        public double lower() {
+            return Math.max(0.0, mean() - Z * stddev() / Math.sqrt(samples));
+        }
+
+        /**
+         * Returns the upper end of the 95% confidence interval of {@code mean()}.
+         *
+         * @return the upper confidence limit
+         */
+        public double upper() {
+            return Math.min(1.0, mean() + Z * stddev() / Math.sqrt(samples));
+        }
+
+        /**
+         * Returns the estimated probability that the failures split the network.
+         *
+         * @return the fraction of samples with more than one component
+         */
+        public double partitionProbability() {
+            long total = 0;
+            for (long p : partitioned) total += p;
+            return (double) total / samples;
+        }
+
+        /**
+         * Returns the lower end of the 95% Wilson score interval of {@code partitionProbability()}.
+         *
+         * @return the lower confidence limit
+         */
+        public double partitionLower() {
+            return wilson(-1);
+        }
+
+        /**
+         * Returns the upper end of the 95% Wilson score interval of {@code partitionProbability()}.
+         *
+         * @return the upper confidence limit
+         */
+        public double partitionUpper() {
+            return wilson(+1);
+        }
+
+        private double wilson(int sign) {
+            double p = partitionProbability(), n = samples, z2 = Z * Z;
+            double centre = p + z2 / (2*n);
+            double spread = Z * Math.sqrt(p * (1 - p) / n + z2 / (4*n*n));
+            return (centre + sign * spread) / (1 + z2 / n);
+        }
+
+        /**
+         * Returns the time taken, in nanoseconds.
+         *
+         * @return the elapsed time
+         */
+        public long nanos() {
+            return nanos;
+        }
+
+        /**
+         * Returns a summary of the estimate.
+         *
+         * @return the summary
+         */
+        public String toString() {
+            return String.format("%d samples of %d failed %s%n", samples, k, failure.name().toLowerCase())
+                 + String.format("disconnected pairs: %.6f (95%% CI %.6f .. %.6f)%n", mean(), lower(), upper())
+                 + String.format("P(partitioned):     %.6f (95%% CI %.6f .. %.6f)%n",
+                                 partitionProbability(), partitionLower(), partitionUpper());
+        }
+    }
+
+    /**
+     * Estimates the resilience of a network and prints the estimate.
+     *
+     * @param args the command-line arguments
+     */
+    public static void main(String[] args) {
+        if (args.length < 4) {
+            System.err.println("usage: java ResilienceEstimator network.txt switches|cables k samples [-seed n]");
+            return;
+        }
+        EdgeWeightedDigraph network = NetworkSnapshot.isSnapshot(args[0])
+                                    ? NetworkSnapshot.read(args[0])
+                                    : new EdgeWeightedDigraph(new In(args[0]));
+        Failure failure = Failure.valueOf(args[1].toUpperCase());
+        int k = Integer.parseInt(args[2]);
+        long samples = Long.parseLong(args[3]);
+        long seed = args.length > 5 && args[4].equals("-seed") ? Long.parseLong(args[5]) : 1501;
+
+        ResilienceEstimator estimator = new ResilienceEstimator(new CompactDigraph(network));
+        StdOut.print(estimator.estimate(failure, k, samples, seed));
+    }
+}
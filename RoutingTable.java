@@ -0,0 +1,268 @@
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/******************************************************************************
+ *  Compilation:  javac RoutingTable.java
+ *  Execution:    java RoutingTable network.txt [-o table.bin]
+ *  Dependencies: CompactDigraph.java SearchWorkspace.java RunLengthMatrix.java
+ *                EdgeWeightedDigraph.java NetworkSnapshot.java In.java StdOut.java
+ *
+ *  Next-hop forwarding tables for every switch and destination along
+ *  lowest-latency paths, compressed and exported in binary.
+ *
+ *  % java RoutingTable network_data1.txt -o table.bin
+ *  5 switches, 24 runs, 220 bytes
+ *
+ ******************************************************************************/
+
+/**
+ *  The {@code RoutingTable} class computes the forwarding table of every
+ *  switch: for each destination, the neighbour to send a packet to so that it
+ *  follows a lowest-latency path. Instead of one {@link DijkstraSP} per source
+ *  whose {@code edgeTo} arrays are then walked, it runs one backward search
+ *  per destination over the edges into each vertex, in a per-thread
+ *  {@link SearchWorkspace}; the first edge of every switch's path to that
+ *  destination is then its next hop. Where several neighbours are equally
+ *  close, the one reached by the lowest port wins, so that the table does not
+ *  depend on the order of the search.
+ *  <p>
+ *  Destinations are processed in blocks whose searches run in parallel on a
+ *  {@link ForkJoinPool}, and each finished block is appended to a
+ *  {@link RunLengthMatrix} with one row per switch, so that a row costs one
+ *  run per change of next hop rather than one entry per destination.
+ *  <p>
+ *  {@code write()} streams the table in binary, big-endian like
+ *  {@link BinaryStdOut}: the magic number {@code 0x52544231} ("RTB1"), the
+ *  number of switches <em>V</em>, then for each switch the number of runs
+ *  followed by each run as its first destination and its next hop (-1 for
+ *  none), all as 32-bit ints. {@code read()} loads such a file back, in time
+ *  proportional to its size.
+ *
+ *  @author Runyuan Yan
+ */
+public class RoutingTable {
+    static final int MAGIC = 0x52544231;
+    private static final double EPSILON = 1e-9;   // relative margin for "on a shortest path" despite rounding
+
+    private final RunLengthMatrix table;    // table.get(v, d) = next hop from v towards d, or -1
+
+    /**
+     * Computes the routing table of {@code G} on the common {@link ForkJoinPool}.
+     *
+     * @param  G the network
+     */
+    public RoutingTable(EdgeWeightedDigraph G) {
+        this(new CompactDigraph(G), ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Computes the routing table of the network snapshot {@code G} on {@code pool}.
+     *
+     * @param  G the network snapshot
+     * @param  pool the pool to run the per-destination searches on
+     */
+    public RoutingTable(CompactDigraph G, ForkJoinPool pool) {
+        int V = G.V();
+        table = new RunLengthMatrix(V);
+        ThreadLocal<SearchWorkspace> workspace = ThreadLocal.withInitial(() -> new SearchWorkspace(G));
+
+        int block = Math.max(64, 4 * pool.getParallelism());
+        int[][] columns = new int[Math.min(block, Math.max(V, 1))][V];
+        for (int first = 0; first < V; first += block) {
+            int size = Math.min(block, V - first);
+            pool.invoke(new Destinations(G, workspace, columns, first, 0, size));
+            for (int i = 0; i < size; i++)
+                table.appendColumn(columns[i]);
+        }
+        table.trimToSize();
+    }
+
+    private RoutingTable(RunLengthMatrix table) {
+        this.table = table;
+    }
+
+    // computes the columns of destinations first+lo .. first+hi-1
+    private static class Destinations extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+        private final CompactDigraph G;
+        private final ThreadLocal<SearchWorkspace> workspace;
+        private final int[][] columns;
+        private final int first, lo, hi;
+
+        Destinations(CompactDigraph G, ThreadLocal<SearchWorkspace> workspace, int[][] columns,
+                     int first, int lo, int hi) {
+            this.G = G;
+            this.workspace = workspace;
+            this.columns = columns;
+            this.first = first;
+            this.lo = lo;
+            this.hi = hi;
+        }
+
+        @Override
+        protected void compute() {
+            if (hi - lo > 1) {
+                int mid = (lo + hi) >>> 1;
+                invokeAll(new Destinations(G, workspace, columns, first, lo, mid),
+                          new Destinations(G, workspace, columns, first, mid, hi));
+                return;
+            }
+            for (int i = lo; i < hi; i++)
+                column(G, workspace.get(), first + i, columns[i]);
+        }
+    }
+
+    // next hop of every switch towards d
+    private static void column(CompactDigraph G, SearchWorkspace ws, int d, int[] column) {
+        ws.runReverse(d);
+        for (int v = 0; v < G.V(); v++) {
+            column[v] = -1;
+            if (v == d || !ws.hasPathTo(v)) continue;
+            double dv = ws.distTo(v);
+            // the lowest port on a shortest path, as in LoopFreeAlternates
+            for (int e = G.begin(v); e < G.end(v); e++) {
+                if (G.latency(e) + ws.distTo(G.to(e)) <= dv * (1 + EPSILON)) {
+                    column[v] = G.to(e);
+                    break;
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns the number of switches.
+     *
+     * @return the number of switches
+     */
+    public int V() {
+        return table.rows();
+    }
+
+    /**
+     * Returns the neighbour that {@code v} forwards packets for {@code d} to.
+     *
+     * @param  v the switch
+     * @param  d the destination
+     * @return the next hop; -1 if {@code v == d} or {@code d} is unreachable
+     * @throws IllegalArgumentException unless {@code 0 <= v < V} and {@code 0 <= d < V}
+     */
+    public int nextHop(int v, int d) {
+        return table.get(v, d);
+    }
+
+    /**
+     * Returns the switches a packet from {@code v} to {@code d} passes through,
+     * following the next hops.
+     *
+     * @param  v the switch
+     * @param  d the destination
+     * @return the switches from {@code v} to {@code d}; {@code null} if {@code d} is
+     *         unreachable, or the next hops loop (only in a table read from a damaged file)
+     * @throws IllegalArgumentException unless {@code 0 <= v < V} and {@code 0 <= d < V}
+     */
+    public ArrayList<Integer> route(int v, int d) {
+        ArrayList<Integer> route = new ArrayList<Integer>();
+        route.add(v);
+        for (int x = v; x != d; ) {
+            x = nextHop(x, d);
+            if (x < 0 || route.size() > V()) return null;
+            route.add(x);
+        }
+        return route;
+    }
+
+    /**
+     * Returns the number of runs in the compressed table, a measure of its size.
+     *
+     * @return the number of runs
+     */
+    public long runs() {
+        return table.runs();
+    }
+
+    /**
+     * Writes the table in the binary format described above.
+     *
+     * @param  out the output stream; it is flushed but not closed
+     * @throws IOException if the stream cannot be written
+     */
+    public void write(OutputStream out) throws IOException {
+        DataOutputStream data = new DataOutputStream(new BufferedOutputStream(out, 1 << 16));
+        data.writeInt(MAGIC);
+        data.writeInt(table.rows());
+        for (int v = 0; v < table.rows(); v++) {
+            int runs = table.runs(v);
+            data.writeInt(runs);
+            for (int i = 0; i < runs; i++) {
+                data.writeInt(table.runStart(v, i));
+                data.writeInt(table.runValue(v, i));
+            }
+        }
+        data.flush();
+    }
+
+    /**
+     * Reads a table written by {@link #write}.
+     *
+     * @param  name the file name
+     * @return the routing table
+     * @throws IllegalArgumentException if the file cannot be read or is not a routing table
+     */
+    public static RoutingTable read(String name) {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(name), 1 << 16))) {
+            if (in.readInt() != MAGIC) throw new IllegalArgumentException(name + " is not a routing table");
+            int V = in.readInt();
+            int[][] start = new int[V][];
+            int[][] value = new int[V][];
+            for (int v = 0; v < V; v++) {
+                int runs = in.readInt();
+                start[v] = new int[runs];
+                value[v] = new int[runs];
+                for (int i = 0; i < runs; i++) {
+                    start[v][i] = in.readInt();
+                    value[v][i] = in.readInt();
+                }
+            }
+            return new RoutingTable(RunLengthMatrix.fromRuns(V, start, value));
+        }
+        catch (IOException e) {
+            throw new IllegalArgumentException("Could not read " + name, e);
+        }
+        catch (RuntimeException e) {
+            throw new IllegalArgumentException(name + " is not a valid routing table", e);
+        }
+    }
+
+    /**
+     * Computes the routing table of a network and writes it to a file, or to
+     * standard output when no file is given.
+     *
+     * @param  args the command-line arguments
+     * @throws IOException if the table cannot be written
+     */
+    public static void main(String[] args) throws IOException {
+        EdgeWeightedDigraph network = NetworkSnapshot.isSnapshot(args[0])
+                                    ? NetworkSnapshot.read(args[0])
+                                    : new EdgeWeightedDigraph(new In(args[0]));
+        RoutingTable table = new RoutingTable(network);
+        if (args.length > 2 && args[1].equals("-o")) {
+            try (OutputStream out = new FileOutputStream(args[2])) {
+                table.write(out);
+            }
+            System.err.printf("%d switches, %d runs, %d bytes%n",
+                              table.V(), table.runs(), 8 + 4*table.V() + 8*table.runs());
+        }
+        else {
+            table.write(System.out);
+        }
+    }
+}
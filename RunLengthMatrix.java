@@ -0,0 +1,213 @@
+import java.util.Arrays;
+
+/******************************************************************************
+ *
+ *  An int matrix stored as run-length encoded rows, built one column at a
+ *  time.
+ *
+ ******************************************************************************/
+
+/**
+ *  The {@code RunLengthMatrix} class represents a matrix of ints with a fixed
+ *  number of rows whose columns are appended in order, as produced by jobs
+ *  that compute one column (for example, one destination) at a time. Each
+ *  row is stored as runs of equal values: the column where the run starts
+ *  and its value. Per-switch forwarding tables compress well this way,
+ *  because a switch sends most destinations out of a handful of ports, and
+ *  destinations that are numbered close together tend to share a port.
+ *  <p>
+ *  Appending a column takes time proportional to the number of rows;
+ *  {@code fromRuns()} builds a matrix from runs already known, such as
+ *  those of a stored table, in time proportional to their number.
+ *  {@code get()} takes time logarithmic in the number of runs in the row.
+ *  Memory is 8 bytes per run. The matrix is not thread-safe while it is being
+ *  built; once built it can be read by any number of threads.
+ *
+ *  @author Runyuan Yan
+ */
+public class RunLengthMatrix {
+    private final int rows;
+    private int columns;
+    private final int[][] start;      // start[r][i] = first column of the i-th run of row r
+    private final int[][] value;      // value[r][i] = value of the i-th run of row r
+    private final int[] count;        // count[r] = number of runs in row r
+
+    /**
+     * Creates a matrix with {@code rows} rows and no columns.
+     *
+     * @param  rows the number of rows
+     * @throws IllegalArgumentException if {@code rows < 0}
+     */
+    public RunLengthMatrix(int rows) {
+        if (rows < 0) throw new IllegalArgumentException("number of rows must be nonnegative");
+        this.rows = rows;
+        start = new int[rows][];
+        value = new int[rows][];
+        count = new int[rows];
+        for (int r = 0; r < rows; r++) {
+            start[r] = new int[2];
+            value[r] = new int[2];
+        }
+    }
+
+    /**
+     * Returns the matrix with the given runs, as {@code runStart()} and
+     * {@code runValue()} return them, in time proportional to the number of
+     * runs. The arrays are used as they are, not copied.
+     *
+     * @param  columns the number of columns
+     * @param  start start[r][i] = the first column of the i-th run of row r
+     * @param  value value[r][i] = the value of the i-th run of row r
+     * @return the matrix
+     * @throws IllegalArgumentException if {@code columns < 0}
+     * @throws IllegalArgumentException unless {@code start} and {@code value}
+     *         have the same number of runs in every row, and the runs of every
+     *         row start at column 0, then at increasing columns less than
+     *         {@code columns}; a row has no runs if and only if {@code columns == 0}
+     */
+    public static RunLengthMatrix fromRuns(int columns, int[][] start, int[][] value) {
+        if (columns < 0) throw new IllegalArgumentException("number of columns must be nonnegative");
+        if (start.length != value.length)
+            throw new IllegalArgumentException("start has " + start.length + " rows, value " + value.length);
+        for (int r = 0; r < start.length; r++) {
+            int[] s = start[r];
+            if (s.length != value[r].length)
+                throw new IllegalArgumentException("row " + r + " has " + s.length + " run starts and " + value[r].length + " values");
+            if (columns > 0 && (s.length == 0 || s[0] != 0) || columns == 0 && s.length > 0)
+                throw new IllegalArgumentException("runs of row " + r + " do not start at column 0");
+            for (int i = 1; i < s.length; i++) {
+                if (s[i] <= s[i-1] || s[i] >= columns)
+                    throw new IllegalArgumentException("run " + i + " of row " + r + " starts at column " + s[i]);
+            }
+        }
+        return new RunLengthMatrix(columns, start, value);
+    }
+
+    // a matrix of the given runs, already checked
+    private RunLengthMatrix(int columns, int[][] start, int[][] value) {
+        this.rows = start.length;
+        this.columns = columns;
+        this.start = start;
+        this.value = value;
+        count = new int[rows];
+        for (int r = 0; r < rows; r++)
+            count[r] = start[r].length;
+    }
+
+    /**
+     * Appends a column.
+     *
+     * @param  column the value of the new column in every row
+     * @throws IllegalArgumentException if {@code column.length != rows()}
+     */
+    public void appendColumn(int[] column) {
+        if (column.length != rows)
+            throw new IllegalArgumentException("column has " + column.length + " rows, not " + rows);
+        int c = columns++;
+        for (int r = 0; r < rows; r++) {
+            int n = count[r];
+            if (n > 0 && value[r][n-1] == column[r]) continue;
+            if (n == start[r].length) {
+                start[r] = Arrays.copyOf(start[r], n + (n >> 1) + 1);
+                value[r] = Arrays.copyOf(value[r], start[r].length);
+            }
+            start[r][n] = c;
+            value[r][n] = column[r];
+            count[r] = n + 1;
+        }
+    }
+
+    /**
+     * Releases the spare capacity of every row, once all columns are appended.
+     */
+    public void trimToSize() {
+        for (int r = 0; r < rows; r++) {
+            start[r] = Arrays.copyOf(start[r], count[r]);
+            value[r] = Arrays.copyOf(value[r], count[r]);
+        }
+    }
+
+    /**
+     * Returns the number of rows.
+     *
+     * @return the number of rows
+     */
+    public int rows() {
+        return rows;
+    }
+
+    /**
+     * Returns the number of columns appended so far.
+     *
+     * @return the number of columns
+     */
+    public int columns() {
+        return columns;
+    }
+
+    /**
+     * Returns the entry in row {@code r} and column {@code c}.
+     *
+     * @param  r the row
+     * @param  c the column
+     * @return the entry
+     * @throws IllegalArgumentException unless {@code 0 <= r < rows()} and {@code 0 <= c < columns()}
+     */
+    public int get(int r, int c) {
+        if (r < 0 || r >= rows)
+            throw new IllegalArgumentException("row " + r + " is not between 0 and " + (rows-1));
+        if (c < 0 || c >= columns)
+            throw new IllegalArgumentException("column " + c + " is not between 0 and " + (columns-1));
+        int lo = 0, hi = count[r] - 1;
+        int[] s = start[r];
+        while (lo < hi) {
+            int mid = (lo + hi + 1) >>> 1;
+            if (s[mid] <= c) lo = mid;
+            else             hi = mid - 1;
+        }
+        return value[r][lo];
+    }
+
+    /**
+     * Returns the number of runs in row {@code r}.
+     *
+     * @param  r the row
+     * @return the number of runs
+     */
+    public int runs(int r) {
+        return count[r];
+    }
+
+    /**
+     * Returns the total number of runs in the matrix.
+     *
+     * @return the number of runs
+     */
+    public long runs() {
+        long total = 0;
+        for (int n : count) total += n;
+        return total;
+    }
+
+    /**
+     * Returns the first column of the {@code i}-th run of row {@code r}.
+     *
+     * @param  r the row
+     * @param  i the run, between 0 and {@code runs(r) - 1}
+     * @return the first column of the run
+     */
+    public int runStart(int r, int i) {
+        return start[r][i];
+    }
+
+    /**
+     * Returns the value of the {@code i}-th run of row {@code r}.
+     *
+     * @param  r the row
+     * @param  i the run, between 0 and {@code runs(r) - 1}
+     * @return the value of the run
+     */
+    public int runValue(int r, int i) {
+        return value[r][i];
+    }
+}
@@ -0,0 +1,512 @@
+import java.util.Arrays;
+
+/******************************************************************************
+ *
+ *  Reusable Dijkstra search over a CompactDigraph, with vertex and edge
+ *  masks for failure scenarios.
+ *
+ ******************************************************************************/
+
+/**
+ *  The {@code SearchWorkspace} class holds everything one thread needs to run
+ *  shortest-path searches and connectivity checks over a {@link CompactDigraph}
+ *  again and again without allocating: distance and predecessor arrays, an
+ *  indexed binary heap, union-find arrays, and two bit masks that exclude
+ *  failed vertices and edges from every search.
+ *  <p>
+ *  A search does not clear its arrays. Every entry carries the number of the
+ *  search that last wrote it, and an entry from an older search reads as
+ *  unreached, so starting a search takes constant time however large the
+ *  network is.
+ *  <p>
+ *  A set bit in a mask means the vertex or edge is out of service. Masks
+ *  persist across searches until {@code clearMasks()} is called, so one
+ *  scenario can be set up once and queried many times. Excluding a vertex
+ *  excludes every edge into or out of it.
+ *  <p>
+ *  A workspace is not thread-safe; give each thread its own. The snapshot
+ *  itself can be shared.
+ *
+ *  @author Runyuan Yan
+ */
+public class SearchWorkspace {
+    private final CompactDigraph G;
+    private final double[] distTo;      // distTo[v] = distance of the best known s->v path
+    private final double[] key;         // key[v] = heap key, distTo[v] plus the potential of v
+    private final int[] edgeTo;         // edgeTo[v] = last edge on that path, -1 for s
+    private final int[] stamp;          // stamp[v] = search that last reached v
+    private final int[] heap;           // binary heap of vertices, keyed by key
+    private final int[] heapIndex;      // heapIndex[v] = position of v in heap, -1 once settled
+    private final int[] parent;         // union-find
+    private final int[] size;
+    private final long[] vertexMask;    // set bit = vertex excluded
+    private final long[] edgeMask;      // set bit = edge excluded
+    private int epoch;
+    private boolean reverse;            // was the last search run backwards?
+    private double[] potential;         // potentials of the A* search running, or null
+    private int heapSize;
+    private int settled;
+    private long connectedPairs;
+
+    /**
+     * Creates a workspace for searches over {@code G}.
+     *
+     * @param  G the network snapshot
+     */
+    public SearchWorkspace(CompactDigraph G) {
+        this.G = G;
+        int V = G.V();
+        distTo = new double[V];
+        key = new double[V];
+        edgeTo = new int[V];
+        stamp = new int[V];
+        heap = new int[V];
+        heapIndex = new int[V];
+        parent = new int[V];
+        size = new int[V];
+        vertexMask = new long[(V + 63) >>> 6];
+        edgeMask = new long[(G.E() + 63) >>> 6];
+    }
+
+    /**
+     * Returns the snapshot this workspace searches.
+     *
+     * @return the network snapshot
+     */
+    public CompactDigraph graph() {
+        return G;
+    }
+
+   /***************************************************************************
+    * Masks.
+    ***************************************************************************/
+
+    /**
+     * Takes vertex {@code v} out of service.
+     *
+     * @param v vertex
+     * @throws IllegalArgumentException unless {@code 0 <= v < V}
+     */
+    public void excludeVertex(int v) {
+        validateVertex(v);
+        vertexMask[v >>> 6] |= 1L << v;
+    }
+
+    /**
+     * Takes edge {@code e} out of service, in its direction only.
+     *
+     * @param e edge number
+     * @throws IllegalArgumentException unless {@code 0 <= e < E}
+     */
+    public void excludeEdge(int e) {
+        validateEdge(e);
+        edgeMask[e >>> 6] |= 1L << e;
+    }
+
+    /**
+     * Takes the cable of edge {@code e} out of service, in both directions.
+     *
+     * @param e edge number
+     * @throws IllegalArgumentException unless {@code 0 <= e < E}
+     */
+    public void excludeCable(int e) {
+        excludeEdge(e);
+        int f = G.twin(e);
+        if (f >= 0) excludeEdge(f);
+    }
+
+    /**
+     * Returns vertex {@code v} to service.
+     *
+     * @param v vertex
+     * @throws IllegalArgumentException unless {@code 0 <= v < V}
+     */
+    public void includeVertex(int v) {
+        validateVertex(v);
+        vertexMask[v >>> 6] &= ~(1L << v);
+    }
+
+    /**
+     * Returns edge {@code e} to service, in its direction only.
+     *
+     * @param e edge number
+     * @throws IllegalArgumentException unless {@code 0 <= e < E}
+     */
+    public void includeEdge(int e) {
+        validateEdge(e);
+        edgeMask[e >>> 6] &= ~(1L << e);
+    }
+
+    // or whole mask words into the masks, for EdgeFilter
+    void exclude(long[] vertices, long[] edges) {
+        for (int i = 0; i < vertices.length; i++) vertexMask[i] |= vertices[i];
+        for (int i = 0; i < edges.length; i++)    edgeMask[i] |= edges[i];
+    }
+
+    /**
+     * Returns true if vertex {@code v} is out of service.
+     *
+     * @param  v vertex
+     * @return {@code true} if {@code v} is excluded
+     */
+    public boolean isExcludedVertex(int v) {
+        return (vertexMask[v >>> 6] & (1L << v)) != 0;
+    }
+
+    /**
+     * Returns true if edge {@code e} is out of service, directly or because
+     * one of its endpoints is.
+     *
+     * @param  e edge number
+     * @return {@code true} if {@code e} is excluded
+     */
+    public boolean isExcludedEdge(int e) {
+        return (edgeMask[e >>> 6] & (1L << e)) != 0
+            || isExcludedVertex(G.from(e)) || isExcludedVertex(G.to(e));
+    }
+
+    /**
+     * Returns every vertex and edge to service.
+     */
+    public void clearMasks() {
+        Arrays.fill(vertexMask, 0L);
+        Arrays.fill(edgeMask, 0L);
+    }
+
+   /***************************************************************************
+    * Shortest paths.
+    ***************************************************************************/
+
+    /**
+     * Runs Dijkstra's algorithm by latency from {@code s}, over the vertices
+     * and edges in service, until {@code t} is settled or, if {@code t} is -1,
+     * until every reachable vertex is.
+     *
+     * @param  s the source vertex
+     * @param  t the target vertex, or -1
+     * @return the number of vertices settled
+     */
+    public int run(int s, int t) {
+        return run(s, t, Double.POSITIVE_INFINITY);
+    }
+
+    /**
+     * Runs Dijkstra's algorithm by latency from {@code s} as {@link #run(int, int)}
+     * does, but also stops once every vertex within {@code limit} is settled.
+     * Vertices not settled read as unreached or have upper bounds on their distance.
+     *
+     * @param  s the source vertex
+     * @param  t the target vertex, or -1
+     * @param  limit the largest distance of interest
+     * @return the number of vertices settled
+     */
+    public int run(int s, int t, double limit) {
+        return run(s, t, limit, null);
+    }
+
+    /**
+     * Runs an A* search from {@code s} towards {@code t}: Dijkstra's algorithm
+     * with each vertex keyed by its distance plus {@code potential[v]}, a lower
+     * bound on its distance to {@code t}, so that the search settles few
+     * vertices away from the shortest path. The distances from a backward
+     * search from {@code t} with fewer vertices or edges excluded than now
+     * are such a bound. Vertices whose potential is infinite cannot reach
+     * {@code t} and are not visited. The search stops when {@code t} is
+     * settled or no vertex has a key within {@code limit}, so a target
+     * further than {@code limit} reads as not settled.
+     *
+     * @param  s the source vertex
+     * @param  t the target vertex
+     * @param  limit the largest distance of interest
+     * @param  potential lower bounds on the distance of every vertex to {@code t},
+     *         with {@code potential[v] <= latency(e) + potential[w]} for every edge
+     *         {@code e} from {@code v} to {@code w}; or {@code null} for none
+     * @return the number of vertices settled
+     */
+    public int run(int s, int t, double limit, double[] potential) {
+        nextEpoch();
+        reverse = false;
+        settled = 0;
+        heapSize = 0;
+        if (isExcludedVertex(s)) return 0;
+        this.potential = potential;
+        reach(s, 0.0, -1);
+        while (heapSize > 0) {
+            int v = heap[0];
+            if (key[v] > limit) break;
+            removeMin();
+            settled++;
+            if (v == t) break;
+            for (int e = G.begin(v); e < G.end(v); e++) {
+                if ((edgeMask[e >>> 6] & (1L << e)) != 0) continue;
+                int w = G.to(e);
+                if (isExcludedVertex(w)) continue;
+                if (potential != null && potential[w] == Double.POSITIVE_INFINITY) continue;
+                relax(w, distTo[v] + G.latency(e), e);
+            }
+        }
+        this.potential = null;
+        return settled;
+    }
+
+    /**
+     * Runs Dijkstra's algorithm backwards from {@code t} over the edges into
+     * each vertex, computing the shortest path from every vertex to {@code t}.
+     * Afterwards {@code distTo(v)} is the distance from {@code v} to {@code t},
+     * {@code edgeTo(v)} is the first edge on that path (an edge leaving
+     * {@code v}, its next hop), and {@code pathTo(v)} lists the path from
+     * {@code v} to {@code t}.
+     *
+     * @param  t the destination vertex
+     * @return the number of vertices settled
+     */
+    public int runReverse(int t) {
+        nextEpoch();
+        reverse = true;
+        settled = 0;
+        heapSize = 0;
+        if (isExcludedVertex(t)) return 0;
+        reach(t, 0.0, -1);
+        while (heapSize > 0) {
+            int w = heap[0];
+            removeMin();
+            settled++;
+            for (int i = G.rbegin(w); i < G.rend(w); i++) {
+                int e = G.redge(i);
+                if ((edgeMask[e >>> 6] & (1L << e)) != 0) continue;
+                int v = G.from(e);
+                if (isExcludedVertex(v)) continue;
+                relax(v, distTo[w] + G.latency(e), e);
+            }
+        }
+        return settled;
+    }
+
+    private void relax(int w, double d, int e) {
+        if (stamp[w] != epoch) reach(w, d, e);
+        else if (heapIndex[w] >= 0 && d < distTo[w]) {
+            key[w] -= distTo[w] - d;
+            distTo[w] = d;
+            edgeTo[w] = e;
+            siftUp(heapIndex[w]);
+        }
+    }
+
+    /**
+     * Returns the distance from the source of the last search to {@code v};
+     * after {@code runReverse()}, the distance from {@code v} to the destination.
+     *
+     * @param  v vertex
+     * @return the distance to {@code v}; {@code Double.POSITIVE_INFINITY} if it was not reached
+     */
+    public double distTo(int v) {
+        return stamp[v] == epoch ? distTo[v] : Double.POSITIVE_INFINITY;
+    }
+
+    /**
+     * Returns true if the last search reached {@code v}.
+     *
+     * @param  v vertex
+     * @return {@code true} if {@code v} was reached
+     */
+    public boolean hasPathTo(int v) {
+        return stamp[v] == epoch;
+    }
+
+    /**
+     * Returns true if the last search settled {@code v}, so that its distance is exact.
+     *
+     * @param  v vertex
+     * @return {@code true} if {@code v} was settled
+     */
+    public boolean isSettled(int v) {
+        return stamp[v] == epoch && heapIndex[v] < 0;
+    }
+
+    /**
+     * Returns the last edge on the path to {@code v} found by the last search;
+     * after {@code runReverse()}, the first edge on the path from {@code v}.
+     *
+     * @param  v vertex
+     * @return the edge number, or -1 for the source or an unreached vertex
+     */
+    public int edgeTo(int v) {
+        return stamp[v] == epoch ? edgeTo[v] : -1;
+    }
+
+    /**
+     * Returns the path to {@code v} found by the last search, source first;
+     * after {@code runReverse()}, the path from {@code v} to the destination.
+     *
+     * @param  v vertex
+     * @return the edge numbers of the path, or {@code null} if {@code v} was not reached
+     */
+    public int[] pathTo(int v) {
+        if (!hasPathTo(v)) return null;
+        int n = 0;
+        if (reverse) {
+            for (int e = edgeTo[v]; e >= 0; e = edgeTo[G.to(e)]) n++;
+            int[] path = new int[n];
+            n = 0;
+            for (int e = edgeTo[v]; e >= 0; e = edgeTo[G.to(e)]) path[n++] = e;
+            return path;
+        }
+        for (int e = edgeTo[v]; e >= 0; e = edgeTo[G.from(e)]) n++;
+        int[] path = new int[n];
+        for (int e = edgeTo[v]; e >= 0; e = edgeTo[G.from(e)]) path[--n] = e;
+        return path;
+    }
+
+    /**
+     * Returns the number of vertices the last search settled.
+     *
+     * @return the number of vertices settled
+     */
+    public int settled() {
+        return settled;
+    }
+
+    private void nextEpoch() {
+        if (++epoch == 0) {
+            Arrays.fill(stamp, 0);
+            epoch = 1;
+        }
+    }
+
+    private void reach(int v, double d, int e) {
+        stamp[v] = epoch;
+        distTo[v] = d;
+        key[v] = potential == null ? d : d + potential[v];
+        edgeTo[v] = e;
+        heap[heapSize] = v;
+        heapIndex[v] = heapSize;
+        siftUp(heapSize++);
+    }
+
+    private void removeMin() {
+        int min = heap[0];
+        heapIndex[min] = -1;
+        int last = heap[--heapSize];
+        if (heapSize > 0) {
+            heap[0] = last;
+            heapIndex[last] = 0;
+            siftDown(0);
+        }
+    }
+
+    private void siftUp(int i) {
+        int v = heap[i];
+        double d = key[v];
+        while (i > 0) {
+            int p = (i - 1) >>> 1;
+            int u = heap[p];
+            if (key[u] <= d) break;
+            heap[i] = u;
+            heapIndex[u] = i;
+            i = p;
+        }
+        heap[i] = v;
+        heapIndex[v] = i;
+    }
+
+    private void siftDown(int i) {
+        int v = heap[i];
+        double d = key[v];
+        while (true) {
+            int c = 2*i + 1;
+            if (c >= heapSize) break;
+            if (c + 1 < heapSize && key[heap[c+1]] < key[heap[c]]) c++;
+            int u = heap[c];
+            if (key[u] >= d) break;
+            heap[i] = u;
+            heapIndex[u] = i;
+            i = c;
+        }
+        heap[i] = v;
+        heapIndex[v] = i;
+    }
+
+   /***************************************************************************
+    * Connectivity.
+    ***************************************************************************/
+
+    /**
+     * Counts the connected components of the network in service, treating
+     * every edge as undirected, with one union-find pass over the edge array.
+     * Excluded vertices are not counted. Afterwards {@code connectedPairs()}
+     * returns the number of unordered pairs of vertices in service that are
+     * connected.
+     *
+     * @return the number of connected components
+     */
+    public int components() {
+        int V = G.V();
+        int count = 0;
+        for (int v = 0; v < V; v++) {
+            parent[v] = v;
+            size[v] = 1;
+            if (!isExcludedVertex(v)) count++;
+        }
+        for (int e = 0; e < G.E(); e++) {
+            // the twin of a cable already merged adds nothing
+            int f = G.twin(e);
+            if (f >= 0 && f < e && (edgeMask[f >>> 6] & (1L << f)) == 0) continue;
+            if (isExcludedEdge(e)) continue;
+            int a = find(G.from(e)), b = find(G.to(e));
+            if (a == b) continue;
+            if (size[a] < size[b]) { int swap = a; a = b; b = swap; }
+            parent[b] = a;
+            size[a] += size[b];
+            count--;
+        }
+        connectedPairs = 0;
+        for (int v = 0; v < V; v++) {
+            if (parent[v] == v && !isExcludedVertex(v))
+                connectedPairs += (long) size[v] * (size[v] - 1) / 2;
+        }
+        return count;
+    }
+
+    /**
+     * Returns the number of unordered pairs of vertices in service that were
+     * connected at the last call to {@code components()}.
+     *
+     * @return the number of connected pairs
+     */
+    public long connectedPairs() {
+        return connectedPairs;
+    }
+
+    /**
+     * Returns true if {@code v} and {@code w} were in the same component at the
+     * last call to {@code components()}.
+     *
+     * @param  v one vertex
+     * @param  w the other vertex
+     * @return {@code true} if {@code v} and {@code w} are connected
+     */
+    public boolean connected(int v, int w) {
+        return !isExcludedVertex(v) && !isExcludedVertex(w) && find(v) == find(w);
+    }
+
+    // find with path halving
+    private int find(int v) {
+        while (parent[v] != v) {
+            parent[v] = parent[parent[v]];
+            v = parent[v];
+        }
+        return v;
+    }
+
+    // throw an IllegalArgumentException unless {@code 0 <= v < V}
+    private void validateVertex(int v) {
+        if (v < 0 || v >= G.V())
+            throw new IllegalArgumentException("vertex " + v + " is not between 0 and " + (G.V()-1));
+    }
+
+    // throw an IllegalArgumentException unless {@code 0 <= e < E}
+    private void validateEdge(int e) {
+        if (e < 0 || e >= G.E())
+            throw new IllegalArgumentException("edge " + e + " is not between 0 and " + (G.E()-1));
+    }
+}
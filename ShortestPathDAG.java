@@ -0,0 +1,308 @@
+import java.math.BigInteger;
+import java.util.Arrays;
+
+/******************************************************************************
+ *  Compilation:  javac ShortestPathDAG.java
+ *  Execution:    java ShortestPathDAG network.txt s
+ *  Dependencies: CompactDigraph.java EdgeWeightedDigraph.java NetworkSnapshot.java
+ *                In.java StdOut.java
+ *
+ *  All lowest-latency paths from one switch, as a DAG of the edges that
+ *  tie, with the number of equal-cost paths to every switch.
+ *
+ *  % java ShortestPathDAG network_data1.txt 0
+ *  0 to 0 (0.00)  1 path
+ *  0 to 1 (69.57)  1 path  4->1
+ *  0 to 2 (50.00)  1 path  0->2
+ *  0 to 3 (50.00)  1 path  0->3
+ *  0 to 4 (34.78)  1 path  0->4
+ *
+ ******************************************************************************/
+
+/**
+ *  The {@code ShortestPathDAG} class computes every lowest-latency path from
+ *  a source switch at once, for equal-cost multipath routing. Where
+ *  {@link DijkstraSP} keeps one edge into each vertex, this keeps every edge
+ *  (<em>u</em>, <em>v</em>) with distTo[<em>u</em>] + latency = distTo[<em>v</em>],
+ *  the edges into each vertex stored together in compressed form; every
+ *  path from the source along them is a shortest path, and every shortest
+ *  path is one.
+ *  <p>
+ *  Ties must be exact to be found. Latencies are not: a meter of copper
+ *  takes 100/23 ns and a meter of fiber 5 ns, so paths of equal latency can
+ *  add up to doubles that differ in the last bit. Both are multiples of
+ *  1/23 ns, though, so the search runs on exact integer latencies in units
+ *  of 1/23 ns, 100 per meter of copper and 115 per meter of fiber, held in
+ *  longs, and converts only the results back to nanoseconds. It is
+ *  Dijkstra's algorithm with a binary heap, in time proportional to
+ *  <em>E</em> log <em>V</em>. An edge of zero latency ties in both
+ *  directions; it is kept only from the switch settled first, so the graph
+ *  of tied edges stays acyclic.
+ *  <p>
+ *  The number of shortest paths to a switch is the sum of the numbers to
+ *  the tails of its tied edges, counted in the order the switches are
+ *  settled. In a mesh it grows exponentially with the distance, so the
+ *  counts saturate at {@code Long.MAX_VALUE} instead of overflowing, and
+ *  {@link #exactPathCount} gives the exact number.
+ *
+ *  @author Runyuan Yan
+ */
+public class ShortestPathDAG {
+    private static final long UNREACHED = Long.MAX_VALUE;
+
+    private final CompactDigraph G;
+    private final int s;
+    private final long[] distTo;        // distTo[v] = distance in units of 1/23 ns
+    private final int[] tiedStart;      // tied edges into v are tied[tiedStart[v]] .. tied[tiedStart[v+1]-1]
+    private final int[] tied;
+    private final int[] order;          // reachable switches in the order they were settled
+    private final long[] count;         // number of shortest paths, saturated
+    private BigInteger[] exact;         // exact numbers, computed when first asked for
+
+    /**
+     * Computes every lowest-latency path from {@code s} in {@code G}.
+     *
+     * @param  G the network snapshot
+     * @param  s the source
+     * @throws IllegalArgumentException unless {@code 0 <= s < V}
+     */
+    public ShortestPathDAG(CompactDigraph G, int s) {
+        this.G = G;
+        this.s = s;
+        int V = G.V();
+        validateVertex(s);
+        long[] weight = exactLatencies(G);
+
+        // Dijkstra's algorithm on the exact latencies
+        distTo = new long[V];
+        Arrays.fill(distTo, UNREACHED);
+        int[] position = new int[V];                // position of v in order, or -1
+        Arrays.fill(position, -1);
+        int[] heap = new int[V];
+        int[] heapIndex = new int[V];
+        Arrays.fill(heapIndex, -1);
+        int[] settled = new int[V];
+        int n = 0, heapSize = 0;
+        distTo[s] = 0;
+        heap[heapSize++] = s;
+        heapIndex[s] = 0;
+        while (heapSize > 0) {
+            int v = heap[0];
+            heapIndex[v] = -1;
+            if (--heapSize > 0) {
+                heap[0] = heap[heapSize];
+                heapIndex[heap[0]] = 0;
+                siftDown(heap, heapIndex, heapSize, 0);
+            }
+            position[v] = n;
+            settled[n++] = v;
+            for (int e = G.begin(v); e < G.end(v); e++) {
+                int w = G.to(e);
+                long d = distTo[v] + weight[e];
+                if (position[w] >= 0 || d >= distTo[w]) continue;
+                if (distTo[w] == UNREACHED) {
+                    heapIndex[w] = heapSize;
+                    heap[heapSize++] = w;
+                }
+                distTo[w] = d;
+                siftUp(heap, heapIndex, heapIndex[w]);
+            }
+        }
+        order = Arrays.copyOf(settled, n);
+
+        // the tied edges, from switches settled earlier
+        tiedStart = new int[V + 1];
+        int[] edges = new int[16];
+        int size = 0;
+        for (int v = 0; v < V; v++) {
+            tiedStart[v] = size;
+            if (distTo[v] == UNREACHED) continue;
+            for (int i = G.rbegin(v); i < G.rend(v); i++) {
+                int e = G.redge(i);
+                int u = G.from(e);
+                if (position[u] < 0 || position[u] >= position[v]) continue;
+                if (distTo[u] + weight[e] != distTo[v]) continue;
+                if (size == edges.length) edges = Arrays.copyOf(edges, 2 * size);
+                edges[size++] = e;
+            }
+        }
+        tiedStart[V] = size;
+        tied = Arrays.copyOf(edges, size);
+
+        // path counts in topological order
+        count = new long[V];
+        count[s] = 1;
+        for (int v : order) {
+            for (int i = tiedStart[v]; i < tiedStart[v + 1]; i++) {
+                long c = count[v] + count[G.from(tied[i])];
+                count[v] = c < 0 ? Long.MAX_VALUE : c;      // both are nonnegative: overflow wraps negative
+            }
+        }
+    }
+
+    // the latency of every edge of G in units of 1/23 ns, exactly
+    static long[] exactLatencies(CompactDigraph G) {
+        long[] weight = new long[G.E()];
+        for (int e = 0; e < G.E(); e++)
+            weight[e] = Math.round(G.latency(e) * 23);
+        return weight;
+    }
+
+    private void siftUp(int[] heap, int[] heapIndex, int i) {
+        int v = heap[i];
+        long d = distTo[v];
+        while (i > 0) {
+            int p = (i - 1) >>> 1;
+            int u = heap[p];
+            if (distTo[u] <= d) break;
+            heap[i] = u;
+            heapIndex[u] = i;
+            i = p;
+        }
+        heap[i] = v;
+        heapIndex[v] = i;
+    }
+
+    private void siftDown(int[] heap, int[] heapIndex, int size, int i) {
+        int v = heap[i];
+        long d = distTo[v];
+        while (true) {
+            int c = 2*i + 1;
+            if (c >= size) break;
+            if (c + 1 < size && distTo[heap[c+1]] < distTo[heap[c]]) c++;
+            int u = heap[c];
+            if (distTo[u] >= d) break;
+            heap[i] = u;
+            heapIndex[u] = i;
+            i = c;
+        }
+        heap[i] = v;
+        heapIndex[v] = i;
+    }
+
+    /**
+     * Returns the lowest latency from the source to {@code v}.
+     *
+     * @param  v the destination
+     * @return the latency in nanoseconds; {@code Double.POSITIVE_INFINITY} if {@code v} is unreachable
+     * @throws IllegalArgumentException unless {@code 0 <= v < V}
+     */
+    public double distTo(int v) {
+        validateVertex(v);
+        return distTo[v] == UNREACHED ? Double.POSITIVE_INFINITY : distTo[v] / 23.0;
+    }
+
+    /**
+     * Is there a path from the source to {@code v}?
+     *
+     * @param  v the destination
+     * @return {@code true} if there is, {@code false} otherwise
+     * @throws IllegalArgumentException unless {@code 0 <= v < V}
+     */
+    public boolean hasPathTo(int v) {
+        validateVertex(v);
+        return distTo[v] != UNREACHED;
+    }
+
+    /**
+     * Returns the last edges of the shortest paths to {@code v}: the tied
+     * edges into {@code v}, in order of their source.
+     *
+     * @param  v the destination
+     * @return the edge numbers; none for the source and for unreachable switches
+     * @throws IllegalArgumentException unless {@code 0 <= v < V}
+     */
+    public int[] edgesTo(int v) {
+        validateVertex(v);
+        return Arrays.copyOfRange(tied, tiedStart[v], tiedStart[v + 1]);
+    }
+
+    /**
+     * Returns the number of edges in the DAG.
+     *
+     * @return the number of tied edges
+     */
+    public int edges() {
+        return tied.length;
+    }
+
+    /**
+     * Returns the switches reachable from the source in order of distance,
+     * a topological order of the DAG.
+     *
+     * @return the switches, starting with the source
+     */
+    public int[] order() {
+        return order.clone();
+    }
+
+    /**
+     * Returns the number of distinct shortest paths from the source to {@code v}.
+     *
+     * @param  v the destination
+     * @return the number of paths, or {@code Long.MAX_VALUE} if there are at
+     *         least that many; 0 if {@code v} is unreachable
+     * @throws IllegalArgumentException unless {@code 0 <= v < V}
+     */
+    public long pathCount(int v) {
+        validateVertex(v);
+        return count[v];
+    }
+
+    /**
+     * Returns the exact number of distinct shortest paths from the source to {@code v}.
+     * The first call takes time proportional to the size of the DAG times the
+     * number of digits of the largest count, when some count saturates.
+     *
+     * @param  v the destination
+     * @return the number of paths; 0 if {@code v} is unreachable
+     * @throws IllegalArgumentException unless {@code 0 <= v < V}
+     */
+    public BigInteger exactPathCount(int v) {
+        validateVertex(v);
+        if (count[v] < Long.MAX_VALUE) return BigInteger.valueOf(count[v]);
+        if (exact == null) {
+            BigInteger[] x = new BigInteger[G.V()];
+            Arrays.fill(x, BigInteger.ZERO);
+            x[s] = BigInteger.ONE;
+            for (int w : order) {
+                for (int i = tiedStart[w]; i < tiedStart[w + 1]; i++)
+                    x[w] = x[w].add(x[G.from(tied[i])]);
+            }
+            exact = x;
+        }
+        return exact[v];
+    }
+
+    // throw an IllegalArgumentException unless {@code 0 <= v < V}
+    private void validateVertex(int v) {
+        if (v < 0 || v >= G.V())
+            throw new IllegalArgumentException("vertex " + v + " is not between 0 and " + (G.V()-1));
+    }
+
+    /**
+     * Prints the lowest latency, the number of shortest paths and the tied
+     * edges into every switch.
+     *
+     * @param args the command-line arguments
+     */
+    public static void main(String[] args) {
+        EdgeWeightedDigraph network = NetworkSnapshot.isSnapshot(args[0])
+                                    ? NetworkSnapshot.read(args[0])
+                                    : new EdgeWeightedDigraph(new In(args[0]));
+        int s = Integer.parseInt(args[1]);
+        CompactDigraph G = new CompactDigraph(network);
+        ShortestPathDAG dag = new ShortestPathDAG(G, s);
+        for (int v = 0; v < G.V(); v++) {
+            if (!dag.hasPathTo(v)) {
+                StdOut.printf("%d to %d         no path%n", s, v);
+                continue;
+            }
+            BigInteger paths = dag.exactPathCount(v);
+            StdOut.printf("%d to %d (%.2f)  %s path%s", s, v, dag.distTo(v), paths, paths.equals(BigInteger.ONE) ? "" : "s");
+            for (int e : dag.edgesTo(v))
+                StdOut.print("  " + G.from(e) + "->" + G.to(e));
+            StdOut.println();
+        }
+    }
+}
@@ -0,0 +1,443 @@
+import java.io.BufferedOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.SplittableRandom;
+
+/******************************************************************************
+ *  Compilation:  javac TopologyGenerator.java
+ *  Execution:    java TopologyGenerator fattree k | metro rings ringSize | wan V m
+ *                       [-seed n] [-copper fraction] [-bandwidth b1,b2,...]
+ *                       [-length min,max] [-loguniform] [-binary] [-o file]
+ *  Dependencies: NetworkSnapshot.java EdgeWeightedDigraph.java DirectedEdge.java
+ *
+ *  Generates synthetic switch fabrics in the network_data format.
+ *
+ *  % java TopologyGenerator fattree 4 -seed 1
+ *  20
+ *  0 2 optical 40000 27
+ *  ...
+ *
+ ******************************************************************************/
+
+/**
+ *  The {@code TopologyGenerator} class generates seeded synthetic networks for
+ *  testing and benchmarking at scale. Three families of topologies are supported:
+ *  <ul>
+ *  <li> <em>fat-tree</em> (a three-tier Clos fabric) with parameter <em>k</em>:
+ *       <em>k</em> pods of <em>k</em>/2 edge and <em>k</em>/2 aggregation switches,
+ *       plus (<em>k</em>/2)<sup>2</sup> core switches, for 5<em>k</em><sup>2</sup>/4
+ *       switches and <em>k</em><sup>3</sup>/2 cables. Intra-pod cables get the
+ *       shorter half of the length range and pod-to-core cables the longer half.
+ *  <li> <em>metro rings</em>: rings of switches laid out on a grid, each ring
+ *       closed by cables between neighbours, with random geometric chords to
+ *       nearby switches on the same ring and two cables to each neighbouring
+ *       ring. Cable lengths are the euclidean distances between switches.
+ *  <li> <em>scale-free WAN</em>: a Barabási–Albert preferential attachment
+ *       graph in which every new switch is cabled to <em>m</em> existing ones.
+ *  </ul>
+ *  Each cable is copper with the configured probability and optical otherwise;
+ *  its bandwidth is drawn uniformly from the configured list and its length
+ *  uniformly (or log-uniformly) from the configured range. The same seed always
+ *  produces the same network.
+ *  <p>
+ *  A generated {@link Topology} stores its cables in primitive arrays and can be
+ *  written in the text format read by {@link EdgeWeightedDigraph#EdgeWeightedDigraph(In)},
+ *  written as a {@link NetworkSnapshot}, or turned into an {@link EdgeWeightedDigraph}
+ *  directly. Both writers format into a byte buffer and emit several million
+ *  cables per second.
+ *
+ *  @author Runyuan Yan
+ */
+public class TopologyGenerator {
+    private final SplittableRandom random;
+    private final double copperFraction;
+    private final int[] bandwidths;
+    private final int minLength, maxLength;
+    private final boolean logUniformLengths;
+
+    /**
+     * Initializes a generator with the default cable mix: half copper,
+     * bandwidths of 1, 10, 40 and 100 Gbps and lengths uniform between 1 and 100 meters.
+     *
+     * @param  seed the random seed
+     */
+    public TopologyGenerator(long seed) {
+        this(seed, 0.5, new int[] { 1000, 10000, 40000, 100000 }, 1, 100, false);
+    }
+
+    /**
+     * Initializes a generator.
+     *
+     * @param  seed the random seed
+     * @param  copperFraction the probability that a cable is copper
+     * @param  bandwidths the bandwidths to choose from, in megabits per second
+     * @param  minLength the minimum cable length in meters
+     * @param  maxLength the maximum cable length in meters
+     * @param  logUniformLengths draw lengths log-uniformly instead of uniformly
+     * @throws IllegalArgumentException unless {@code 0 <= copperFraction <= 1}
+     * @throws IllegalArgumentException if {@code bandwidths} is empty
+     * @throws IllegalArgumentException unless {@code 1 <= minLength <= maxLength}
+     */
+    public TopologyGenerator(long seed, double copperFraction, int[] bandwidths,
+                             int minLength, int maxLength, boolean logUniformLengths) {
+        if (!(copperFraction >= 0.0 && copperFraction <= 1.0))
+            throw new IllegalArgumentException("copper fraction must be between 0 and 1");
+        if (bandwidths.length == 0) throw new IllegalArgumentException("no bandwidths given");
+        if (minLength < 1 || minLength > maxLength)
+            throw new IllegalArgumentException("lengths must satisfy 1 <= min <= max");
+        this.random = new SplittableRandom(seed);
+        this.copperFraction = copperFraction;
+        this.bandwidths = bandwidths.clone();
+        this.minLength = minLength;
+        this.maxLength = maxLength;
+        this.logUniformLengths = logUniformLengths;
+    }
+
+    /**
+     * Generates a <em>k</em>-ary fat-tree.
+     *
+     * @param  k the number of pods
+     * @return the topology
+     * @throws IllegalArgumentException unless {@code k} is even and positive
+     */
+    public Topology fatTree(int k) {
+        if (k <= 0 || k % 2 != 0) throw new IllegalArgumentException("k must be even and positive");
+        int half = k / 2;
+        int perPod = k;                           // half edge, half aggregation
+        int cores = half * half;
+        Topology t = new Topology(k * perPod + cores, k * half * half * 2);
+        int mid = minLength + (maxLength - minLength) / 2;
+        for (int pod = 0; pod < k; pod++) {
+            int edge0 = pod * perPod, agg0 = edge0 + half;
+            for (int e = 0; e < half; e++)
+                for (int a = 0; a < half; a++)
+                    t.add(edge0 + e, agg0 + a, length(minLength, mid));
+            // aggregation switch a of every pod connects to cores a*half .. a*half+half-1
+            for (int a = 0; a < half; a++)
+                for (int c = 0; c < half; c++)
+                    t.add(agg0 + a, k * perPod + a * half + c, length(mid, maxLength));
+        }
+        return t;
+    }
+
+    /**
+     * Generates metro rings on a square grid.
+     *
+     * @param  rings the number of rings
+     * @param  ringSize the number of switches per ring
+     * @return the topology
+     * @throws IllegalArgumentException unless {@code rings >= 1} and {@code ringSize >= 3}
+     */
+    public Topology metroRings(int rings, int ringSize) {
+        if (rings < 1 || ringSize < 3) throw new IllegalArgumentException("need at least one ring of 3 switches");
+        int V = rings * ringSize;
+        int side = (int) Math.ceil(Math.sqrt(rings));
+        double spacing = (minLength + maxLength) / 2.0;                 // mean distance between ring neighbours
+        double radius = ringSize * spacing / (2 * Math.PI);
+        double pitch = 3 * radius;                                      // distance between ring centres
+        double[] x = new double[V], y = new double[V];
+        for (int r = 0; r < rings; r++) {
+            double cx = (r % side) * pitch, cy = (r / side) * pitch;
+            for (int i = 0; i < ringSize; i++) {
+                double angle = 2 * Math.PI * (i + 0.4 * (random.nextDouble() - 0.5)) / ringSize;
+                x[r*ringSize + i] = cx + radius * Math.cos(angle);
+                y[r*ringSize + i] = cy + radius * Math.sin(angle);
+            }
+        }
+
+        Topology t = new Topology(V, V + V / 2 + 4 * rings);
+        for (int r = 0; r < rings; r++) {
+            int base = r * ringSize;
+            for (int i = 0; i < ringSize; i++) {
+                int v = base + i, w = base + (i + 1) % ringSize;
+                t.add(v, w, distance(x, y, v, w));
+                // chord to a switch two to four positions further round the ring, for half of the switches
+                if (random.nextBoolean()) {
+                    int u = base + (i + 2 + random.nextInt(3)) % ringSize;
+                    if (u != v) t.add(v, u, distance(x, y, v, u));
+                }
+            }
+            // two cables each to the ring on the right and the ring below
+            int[] neighbours = { (r % side) + 1 < side ? r + 1 : rings, r + side };
+            for (int other : neighbours) {
+                if (other >= rings) continue;
+                for (int j = 0; j < 2; j++) {
+                    int v = base + random.nextInt(ringSize), w = other * ringSize + random.nextInt(ringSize);
+                    t.add(v, w, distance(x, y, v, w));
+                }
+            }
+        }
+        return t;
+    }
+
+    /**
+     * Generates a scale-free network by preferential attachment.
+     *
+     * @param  V the number of switches
+     * @param  m the number of cables from each new switch
+     * @return the topology
+     * @throws IllegalArgumentException unless {@code 1 <= m < V}
+     */
+    public Topology scaleFree(int V, int m) {
+        if (m < 1 || m >= V) throw new IllegalArgumentException("need 1 <= m < V");
+        Topology t = new Topology(V, (long) m * V);
+        int[] endpoints = new int[2 * (m * (m + 1) / 2 + (V - m - 1) * m)];
+        int n = 0;
+        // seed clique on m+1 switches
+        for (int v = 0; v <= m; v++) {
+            for (int w = v + 1; w <= m; w++) {
+                t.add(v, w, length(minLength, maxLength));
+                endpoints[n++] = v;
+                endpoints[n++] = w;
+            }
+        }
+        int[] chosen = new int[m];
+        for (int v = m + 1; v < V; v++) {
+            int count = 0;
+            while (count < m) {
+                int w = endpoints[random.nextInt(n)];
+                boolean duplicate = false;
+                for (int i = 0; i < count; i++) duplicate |= chosen[i] == w;
+                if (!duplicate) chosen[count++] = w;
+            }
+            for (int i = 0; i < m; i++) {
+                t.add(v, chosen[i], length(minLength, maxLength));
+                endpoints[n++] = v;
+                endpoints[n++] = chosen[i];
+            }
+        }
+        return t;
+    }
+
+    private int distance(double[] x, double[] y, int v, int w) {
+        return Math.max(1, (int) Math.round(Math.hypot(x[v] - x[w], y[v] - y[w])));
+    }
+
+    private int length(int lo, int hi) {
+        if (lo >= hi) return lo;
+        if (!logUniformLengths) return lo + random.nextInt(hi - lo + 1);
+        double u = random.nextDouble();
+        return (int) Math.min(hi, Math.round(Math.exp(Math.log(lo) + u * (Math.log(hi) - Math.log(lo)))));
+    }
+
+    /**
+     * The {@code Topology} class is the list of cables of a generated network.
+     */
+    public class Topology {
+        private final int V;
+        private int n;                          // number of cables
+        private int[] from, to, bandWidth, length;
+        private byte[] material;                // NetworkSnapshot.COPPER or NetworkSnapshot.OPTICAL
+
+        private Topology(int V, long capacity) {
+            if (capacity > Integer.MAX_VALUE - 8) throw new IllegalArgumentException("too many cables: " + capacity);
+            int c = (int) Math.max(1, capacity);
+            this.V = V;
+            from = new int[c];
+            to = new int[c];
+            bandWidth = new int[c];
+            length = new int[c];
+            material = new byte[c];
+        }
+
+        private void add(int v, int w, int len) {
+            if (n == from.length) {
+                int c = (int) Math.min(Integer.MAX_VALUE - 8, 2L * n);
+                from = Arrays.copyOf(from, c);
+                to = Arrays.copyOf(to, c);
+                bandWidth = Arrays.copyOf(bandWidth, c);
+                length = Arrays.copyOf(length, c);
+                material = Arrays.copyOf(material, c);
+            }
+            from[n] = v;
+            to[n] = w;
+            length[n] = len;
+            material[n] = random.nextDouble() < copperFraction ? NetworkSnapshot.COPPER : NetworkSnapshot.OPTICAL;
+            bandWidth[n] = bandwidths[random.nextInt(bandwidths.length)];
+            n++;
+        }
+
+        /**
+         * Returns the number of switches.
+         *
+         * @return the number of switches
+         */
+        public int V() {
+            return V;
+        }
+
+        /**
+         * Returns the number of cables.
+         *
+         * @return the number of cables
+         */
+        public int cables() {
+            return n;
+        }
+
+        /**
+         * Returns the network, with every cable added in both directions.
+         *
+         * @return the network
+         */
+        public EdgeWeightedDigraph toDigraph() {
+            EdgeWeightedDigraph G = new EdgeWeightedDigraph(V);
+            for (int i = 0; i < n; i++) {
+                String m = material[i] == NetworkSnapshot.COPPER ? "copper" : "optical";
+                G.addEdge(new DirectedEdge(from[i], to[i], m, length[i], bandWidth[i]));
+                G.addEdge(new DirectedEdge(to[i], from[i], m, length[i], bandWidth[i]));
+            }
+            return G;
+        }
+
+        /**
+         * Writes the network in the text format.
+         *
+         * @param  out the output stream; it is flushed but not closed
+         * @throws IOException if the stream cannot be written
+         */
+        public void writeText(OutputStream out) throws IOException {
+            Buffer buf = new Buffer(out);
+            buf.putDecimal(V);
+            buf.put((byte) '\n');
+            for (int i = 0; i < n; i++) {
+                buf.putDecimal(from[i]);
+                buf.put((byte) ' ');
+                buf.putDecimal(to[i]);
+                buf.putAscii(material[i] == NetworkSnapshot.COPPER ? " copper " : " optical ");
+                buf.putDecimal(bandWidth[i]);
+                buf.put((byte) ' ');
+                buf.putDecimal(length[i]);
+                buf.put((byte) '\n');
+            }
+            buf.flush();
+        }
+
+        /**
+         * Writes the network as a {@link NetworkSnapshot}.
+         *
+         * @param  out the output stream; it is flushed but not closed
+         * @throws IOException if the stream cannot be written
+         */
+        public void writeBinary(OutputStream out) throws IOException {
+            Buffer buf = new Buffer(out);
+            buf.putInt(NetworkSnapshot.MAGIC);
+            buf.putInt(V);
+            buf.putInt(n);
+            for (int i = 0; i < n; i++) {
+                buf.putInt(from[i]);
+                buf.putInt(to[i]);
+                buf.put(material[i]);
+                buf.putInt(bandWidth[i]);
+                buf.putInt(length[i]);
+            }
+            buf.flush();
+        }
+    }
+
+    // byte buffer with big-endian ints and decimal formatting that does not allocate
+    private static class Buffer {
+        private final OutputStream out;
+        private final byte[] bytes = new byte[1 << 16];
+        private int n;
+
+        Buffer(OutputStream out) {
+            this.out = out;
+        }
+
+        void put(byte b) throws IOException {
+            if (n == bytes.length) drain();
+            bytes[n++] = b;
+        }
+
+        void putInt(int x) throws IOException {
+            if (n + 4 > bytes.length) drain();
+            bytes[n++] = (byte) (x >>> 24);
+            bytes[n++] = (byte) (x >>> 16);
+            bytes[n++] = (byte) (x >>> 8);
+            bytes[n++] = (byte) x;
+        }
+
+        void putAscii(String s) throws IOException {
+            for (int i = 0; i < s.length(); i++) put((byte) s.charAt(i));
+        }
+
+        void putDecimal(int x) throws IOException {
+            if (n + 11 > bytes.length) drain();
+            if (x < 0) {
+                bytes[n++] = '-';
+                x = -x;
+            }
+            int start = n;
+            do {
+                bytes[n++] = (byte) ('0' + x % 10);
+                x /= 10;
+            } while (x > 0);
+            for (int i = start, j = n - 1; i < j; i++, j--) {
+                byte t = bytes[i];
+                bytes[i] = bytes[j];
+                bytes[j] = t;
+            }
+        }
+
+        void drain() throws IOException {
+            out.write(bytes, 0, n);
+            n = 0;
+        }
+
+        void flush() throws IOException {
+            drain();
+            out.flush();
+        }
+    }
+
+    /**
+     * Generates a topology and writes it to standard output or a file.
+     *
+     * @param args the command-line arguments
+     * @throws IOException if the output cannot be written
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.err.println("usage: java TopologyGenerator fattree k | metro rings ringSize | wan V m [options]");
+            return;
+        }
+        String family = args[0];
+        int first = Integer.parseInt(args[1]);
+        int second = family.equals("fattree") ? 0 : Integer.parseInt(args[2]);
+        long seed = 1501;
+        double copper = 0.5;
+        int[] bandwidths = { 1000, 10000, 40000, 100000 };
+        int minLength = 1, maxLength = 100;
+        boolean logUniform = false, binary = false;
+        String file = null;
+        for (int i = family.equals("fattree") ? 2 : 3; i < args.length; i++) {
+            if      (args[i].equals("-seed"))       seed = Long.parseLong(args[++i]);
+            else if (args[i].equals("-copper"))     copper = Double.parseDouble(args[++i]);
+            else if (args[i].equals("-bandwidth"))  bandwidths = Arrays.stream(args[++i].split(",")).mapToInt(Integer::parseInt).toArray();
+            else if (args[i].equals("-length")) {
+                String[] range = args[++i].split(",");
+                minLength = Integer.parseInt(range[0]);
+                maxLength = Integer.parseInt(range[1]);
+            }
+            else if (args[i].equals("-loguniform")) logUniform = true;
+            else if (args[i].equals("-binary"))     binary = true;
+            else if (args[i].equals("-o"))          file = args[++i];
+            else throw new IllegalArgumentException("unknown option " + args[i]);
+        }
+
+        TopologyGenerator generator = new TopologyGenerator(seed, copper, bandwidths, minLength, maxLength, logUniform);
+        Topology t;
+        if      (family.equals("fattree")) t = generator.fatTree(first);
+        else if (family.equals("metro"))   t = generator.metroRings(first, second);
+        else if (family.equals("wan"))     t = generator.scaleFree(first, second);
+        else throw new IllegalArgumentException("unknown topology " + family);
+
+        OutputStream out = file == null ? new BufferedOutputStream(System.out) : new FileOutputStream(file);
+        if (binary) t.writeBinary(out);
+        else        t.writeText(out);
+        out.close();
+    }
+}
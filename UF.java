@@ -98,6 +98,7 @@ public class UF {
     private int[] parent;  // parent[i] = parent of i
     private byte[] rank;   // rank[i] = rank of subtree rooted at i (never more than 31)
     private int count;     // number of components
+    private long finds, findPath;   // finds and their total path length since the last publishMetrics()
 
     /**
      * Initializes an empty union–find data structure with {@code n} sites
@@ -127,13 +128,27 @@ public class UF {
      */
     public int find(int p) {
         validate(p);
+        int length = 0;
         while (p != parent[p]) {
             parent[p] = parent[parent[p]];    // path compression by halving
             p = parent[p];
+            length++;
+        }
+        if (NetworkMetrics.ENABLED) {
+            finds++;
+            findPath += length;
         }
         return p;
     }
 
+    // adds the finds counted so far to NetworkMetrics, once per run of the owner
+    void publishMetrics() {
+        if (!NetworkMetrics.ENABLED) return;
+        NetworkMetrics.Counter.UF_FINDS.add(finds);
+        NetworkMetrics.Counter.UF_FIND_PATH.add(findPath);
+        finds = findPath = 0;
+    }
+
     /**
      * Returns the number of components.
      *